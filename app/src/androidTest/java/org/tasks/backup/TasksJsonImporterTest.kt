@@ -6,16 +6,21 @@ import kotlinx.coroutines.runBlocking
 import org.junit.Assert.assertEquals
 import org.junit.Test
 import org.tasks.data.dao.CaldavDao
+import org.tasks.data.dao.TagDao
 import org.tasks.data.dao.TagDataDao
 import org.tasks.data.dao.TaskDao
+import org.tasks.data.dao.UserActivityDao
 import org.tasks.data.db.Database
+import org.tasks.data.db.DbUtils.MAX_SQLITE_ARGS
 import org.tasks.data.entity.CaldavAccount
 import org.tasks.data.entity.CaldavAccount.Companion.TYPE_CALDAV
 import org.tasks.data.entity.CaldavAccount.Companion.TYPE_MICROSOFT
 import org.tasks.data.entity.CaldavAccount.Companion.TYPE_TASKS
 import org.tasks.data.entity.CaldavCalendar
+import org.tasks.data.entity.Tag
 import org.tasks.data.entity.TagData
 import org.tasks.data.entity.Task
+import org.tasks.data.entity.UserActivity
 import org.tasks.injection.InjectingTestCase
 import org.tasks.makers.CaldavTaskMaker.CALENDAR
 import org.tasks.makers.CaldavTaskMaker.OBJECT
@@ -33,6 +38,8 @@ class TasksJsonImporterTest : InjectingTestCase() {
     @Inject lateinit var taskDao: TaskDao
     @Inject lateinit var caldavDao: CaldavDao
     @Inject lateinit var tagDataDao: TagDataDao
+    @Inject lateinit var tagDao: TagDao
+    @Inject lateinit var userActivityDao: UserActivityDao
     @Inject lateinit var database: Database
 
     private suspend fun export(): ByteArray {
@@ -254,4 +261,24 @@ class TasksJsonImporterTest : InjectingTestCase() {
         assertEquals(1, tagDataDao.getAll().size)
         assertEquals("important", tagDataDao.getAll()[0].name)
     }
+
+    @Test
+    fun backupAndRestoreAcrossPages() = runBlocking {
+        repeat(MAX_SQLITE_ARGS) { taskDao.createNew(Task(title = "task $it")) }
+        val last = Task(title = "last task")
+        taskDao.createNew(last)
+        tagDataDao.insert(TagData(name = "important", remoteId = "tag-1"))
+        tagDao.insert(Tag(task = last.id, taskUid = last.remoteId, name = "important", tagUid = "tag-1"))
+        userActivityDao.createNew(UserActivity(message = "comment", targetId = last.remoteId))
+
+        val backup = export()
+        database.clearAllTables()
+
+        val result = import(backup)
+
+        assertEquals(MAX_SQLITE_ARGS + 1, result.importCount)
+        val restored = taskDao.fetch(last.remoteId!!)!!
+        assertEquals(listOf("tag-1"), tagDao.getTagsForTask(restored.id).map { it.tagUid })
+        assertEquals(listOf("comment"), userActivityDao.getComments(restored.id).map { it.message })
+    }
 }
@@ -6,6 +6,7 @@ import dagger.hilt.android.testing.HiltAndroidTest
 import kotlinx.coroutines.runBlocking
 import okhttp3.mockwebserver.MockResponse
 import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
 import org.junit.Before
 import org.junit.Test
 import org.tasks.data.dao.DirtyDao
@@ -96,6 +97,35 @@ class CaldavSynchronizerTest : CaldavTest() {
         assertEquals("Test task", taskDao.fetch(caldavTask.task)!!.title)
     }
 
+    @Test
+    fun fetchChangesSinceSyncToken() = runBlocking {
+        val calendar = CaldavCalendar(
+            account = this@CaldavSynchronizerTest.account.uuid,
+            uuid = UUIDHelper.newUUID(),
+            ctag = "http://sabre.io/ns/sync/1",
+            syncToken = "http://sabre.io/ns/sync/1",
+            url = "${this@CaldavSynchronizerTest.account.url}test-shared/",
+        )
+        caldavDao.insert(calendar)
+        val removedTask = taskDao.insert(newTask())
+        dirtyDao.markSynced(caldavDao.insert(newCaldavTask(
+            with(TASK, removedTask),
+            with(OBJECT, "removed.ics"),
+            with(CALENDAR, calendar.uuid)
+        )))
+        enqueue(SYNC_COLLECTION_PROPFIND, SYNC_COLLECTION_REPORT, OC_SHARE_TASK)
+
+        sync()
+
+        val caldavTask = caldavDao.getTaskByRemoteId(calendar.uuid!!, TASK_UID)!!
+        assertEquals("Test task", taskDao.fetch(caldavTask.task)!!.title)
+        assertNull(taskDao.fetch(removedTask))
+        assertEquals(
+            "http://sabre.io/ns/sync/2",
+            caldavDao.getCalendarByUuid(calendar.uuid!!)!!.syncToken
+        )
+    }
+
     @Test
     fun addRemoteTagToExistingTask() = runBlocking {
         enqueueRemoteTagUpdate(initial = "Tag1", updated = "Tag1,Tag2")
@@ -264,6 +294,42 @@ class CaldavSynchronizerTest : CaldavTest() {
             </d:multistatus>
         """.trimIndent()
 
+        private val SYNC_COLLECTION_PROPFIND = OC_SHARE_PROPFIND
+            .replace("http://sabre.io/ns/sync/1", "http://sabre.io/ns/sync/2")
+            .replace(
+                "<d:sync-token>http://sabre.io/ns/sync/2</d:sync-token>",
+                """
+                <d:sync-token>http://sabre.io/ns/sync/2</d:sync-token>
+                <d:supported-report-set>
+                    <d:supported-report>
+                        <d:report>
+                            <d:sync-collection />
+                        </d:report>
+                    </d:supported-report>
+                </d:supported-report-set>
+                """.trimIndent()
+            )
+
+        private val SYNC_COLLECTION_REPORT = """
+            <?xml version="1.0"?>
+            <d:multistatus xmlns:d="DAV:">
+                <d:response>
+                    <d:href>/remote.php/dav/calendars/user1/test-shared/3164728546640386952.ics</d:href>
+                    <d:propstat>
+                        <d:prop>
+                            <d:getetag>&quot;43b3ffaac5131880e4dd07a79adba82a&quot;</d:getetag>
+                        </d:prop>
+                        <d:status>HTTP/1.1 200 OK</d:status>
+                    </d:propstat>
+                </d:response>
+                <d:response>
+                    <d:href>/remote.php/dav/calendars/user1/test-shared/removed.ics</d:href>
+                    <d:status>HTTP/1.1 404 Not Found</d:status>
+                </d:response>
+                <d:sync-token>http://sabre.io/ns/sync/2</d:sync-token>
+            </d:multistatus>
+        """.trimIndent()
+
         private val OC_SHARE_REPORT = """
             <?xml version="1.0"?>
             <d:multistatus xmlns:d="DAV:">
@@ -7,9 +7,16 @@ import net.fortuna.ical4j.model.property.XProperty
 import org.junit.Assert.assertEquals
 import org.junit.Test
 import org.tasks.caldav.iCalendar.Companion.fromVtodo
+import org.tasks.data.dao.CaldavDao
+import org.tasks.data.dao.DirtyDao
+import org.tasks.data.dao.TaskDao
 import org.tasks.data.entity.CaldavAccount
+import org.tasks.data.entity.CaldavCalendar
 import org.tasks.injection.InjectingTestCase
+import org.tasks.makers.CaldavTaskMaker.CALENDAR
+import org.tasks.makers.CaldavTaskMaker.OBJECT
 import org.tasks.makers.CaldavTaskMaker.REMOTE_ID
+import org.tasks.makers.CaldavTaskMaker.TASK
 import org.tasks.makers.CaldavTaskMaker.newCaldavTask
 import org.tasks.makers.TaskMaker.TITLE
 import org.tasks.makers.TaskMaker.newTask
@@ -19,6 +26,10 @@ import javax.inject.Inject
 class ICalendarMergeTest : InjectingTestCase() {
 
     @Inject lateinit var iCal: iCalendar
+    @Inject lateinit var caldavDao: CaldavDao
+    @Inject lateinit var dirtyDao: DirtyDao
+    @Inject lateinit var taskDao: TaskDao
+    @Inject lateinit var vtodoCache: VtodoCache
 
     @Test
     fun unknownPropertyIsNotClobberedWhenPushingLocalEdit() = runBlocking {
@@ -43,4 +54,50 @@ class ICalendarMergeTest : InjectingTestCase() {
             parsed.unknownProperties.find { it.name == "X-CUSTOM-PROP" }?.value
         )
     }
+
+    @Test
+    fun applyChunkOfRemoteChanges() = runBlocking {
+        val account = CaldavAccount(uuid = "account").let { it.copy(id = caldavDao.insert(it)) }
+        val calendar = CaldavCalendar(account = account.uuid, uuid = "calendar")
+        caldavDao.insert(calendar)
+        val existing = taskDao.insert(newTask(with(TITLE, "old title")))
+        dirtyDao.markSynced(
+            caldavDao.insert(
+                newCaldavTask(
+                    with(TASK, existing),
+                    with(CALENDAR, calendar.uuid),
+                    with(OBJECT, "1.ics"),
+                    with(REMOTE_ID, "1"),
+                )
+            )
+        )
+        val updated = vtodo(uid = "1", summary = "new title")
+        val created = vtodo(uid = "2", summary = "new task")
+
+        iCal.fromVtodos(
+            account,
+            calendar,
+            listOf(
+                iCalendar.RemoteVtodo("1.ics", "etag1", updated, fromVtodo(updated)!!),
+                iCalendar.RemoteVtodo("2.ics", "etag2", created, fromVtodo(created)!!),
+            ),
+        )
+
+        assertEquals("new title", taskDao.fetch(existing)!!.title)
+        val caldavTask = caldavDao.getTaskByRemoteId(calendar.uuid!!, "2")!!
+        assertEquals("new task", taskDao.fetch(caldavTask.task)!!.title)
+        assertEquals("etag2", caldavTask.etag)
+        assertEquals(created, vtodoCache.getVtodo(calendar, caldavTask))
+    }
+
+    private fun vtodo(uid: String, summary: String) = """
+        BEGIN:VCALENDAR
+        VERSION:2.0
+        PRODID:-//Tasks//Test//EN
+        BEGIN:VTODO
+        UID:$uid
+        SUMMARY:$summary
+        END:VTODO
+        END:VCALENDAR
+    """.trimIndent()
 }
@@ -11,6 +11,7 @@ import org.junit.Before
 import org.junit.Test
 import org.tasks.data.dao.CaldavDao
 import org.tasks.data.dao.GoogleTaskDao
+import org.tasks.data.dao.RemotePosition
 import org.tasks.data.entity.CaldavAccount
 import org.tasks.data.entity.CaldavAccount.Companion.TYPE_GOOGLE_TASKS
 import org.tasks.data.entity.CaldavCalendar
@@ -182,6 +183,58 @@ class GoogleTaskDaoTests : InjectingTestCase() {
         assertEquals("abcd", googleTaskDao.getByTaskId(1)!!.remoteParent)
     }
 
+    @Test
+    fun updatePositionsRepositionsList() = runBlocking {
+        insertBottom(newCaldavTask(with(REMOTE_ID, "1")))
+        insertBottom(newCaldavTask(with(REMOTE_ID, "2")))
+        insertBottom(newCaldavTask(with(REMOTE_ID, "3")))
+
+        googleTaskDao.updatePositions(
+            caldavDao,
+            "calendar",
+            listOf(
+                RemotePosition(id = "1", parent = null, position = "3"),
+                RemotePosition(id = "2", parent = null, position = "1"),
+                RemotePosition(id = "3", parent = null, position = "2"),
+            )
+        )
+
+        assertEquals(2L, getOrder("1"))
+        assertEquals(0L, getOrder("2"))
+        assertEquals(1L, getOrder("3"))
+    }
+
+    @Test
+    fun moveRenumbersSiblings() = runBlocking {
+        insertBottom(newCaldavTask(with(REMOTE_ID, "1")))
+        insertBottom(newCaldavTask(with(REMOTE_ID, "2")))
+        insertBottom(newCaldavTask(with(REMOTE_ID, "3")))
+        googleTaskDao.updatePositions(
+            caldavDao,
+            "calendar",
+            listOf(
+                RemotePosition(id = "1", parent = null, position = "0"),
+                RemotePosition(id = "2", parent = null, position = "1"),
+                RemotePosition(id = "3", parent = null, position = "2"),
+            )
+        )
+
+        // "3" was moved to the top, "1" and "2" were renumbered without being updated
+        googleTaskDao.updatePositions(
+            caldavDao,
+            "calendar",
+            listOf(
+                RemotePosition(id = "3", parent = null, position = "0"),
+                RemotePosition(id = "1", parent = null, position = "1"),
+                RemotePosition(id = "2", parent = null, position = "2"),
+            )
+        )
+
+        assertEquals(1L, getOrder("1"))
+        assertEquals(2L, getOrder("2"))
+        assertEquals(0L, getOrder("3"))
+    }
+
     @Test
     fun ignoreSelfParent() = runBlocking {
         insert(
@@ -42,6 +42,7 @@ class WearService(
         )
         return Tasks.newBuilder()
             .setTotalItems(result.totalItems)
+            .setVersion(result.version)
             .addAllItems(
                 result.items.map { item ->
                     when (item) {
@@ -418,6 +418,14 @@ class TaskListFragment : Fragment(), OnRefreshListener, Toolbar.OnMenuItemClickL
             resources.displayMetrics
         ).toInt()
         recyclerView.updatePadding(bottom = baseFooterHeight + additionalFabSpace)
+        recyclerView.addOnScrollListener(object : RecyclerView.OnScrollListener() {
+            // also called with dy = 0 when a layout changes the visible range
+            override fun onScrolled(recyclerView: RecyclerView, dx: Int, dy: Int) {
+                if (dy >= 0) {
+                    loadMore(recyclerView)
+                }
+            }
+        })
         lifecycleScope.launch {
             viewLifecycleOwner.repeatOnLifecycle(Lifecycle.State.RESUMED) {
                 viewHolderFactory.dateFormatter = DateFormatter.create(requireContext().is24HourFormat)
@@ -439,6 +447,10 @@ class TaskListFragment : Fragment(), OnRefreshListener, Toolbar.OnMenuItemClickL
                     val results = it.tasks
                     if (results is TasksResults.Results) {
                         submitList(results.tasks)
+                        if (it.hasMore) {
+                            // the page may not fill the screen, e.g. when groups are collapsed
+                            recyclerView.post { loadMore(recyclerView) }
+                        }
                         if (results.tasks.isEmpty()) {
                             swipeRefreshLayout.visibility = View.GONE
                             emptyRefreshLayout.visibility = View.VISIBLE
@@ -664,6 +676,14 @@ class TaskListFragment : Fragment(), OnRefreshListener, Toolbar.OnMenuItemClickL
         return binding.root
     }
 
+    private fun loadMore(recyclerView: RecyclerView) {
+        val layoutManager = recyclerView.layoutManager as? LinearLayoutManager ?: return
+        val position = layoutManager.findLastVisibleItemPosition()
+        if (position != RecyclerView.NO_POSITION) {
+            listViewModel.onScrolled(position)
+        }
+    }
+
     private fun submitList(tasks: SectionedDataSource) {
         if (recyclerAdapter !is DragAndDropRecyclerAdapter) {
             setAdapter(
@@ -9,9 +9,13 @@ import com.todoroo.astrid.api.AstridApiConstants
 import dagger.hilt.android.qualifiers.ApplicationContext
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.flow.MutableStateFlow
 import kotlinx.coroutines.flow.consumeAsFlow
+import kotlinx.coroutines.flow.getAndUpdate
 import kotlinx.coroutines.flow.launchIn
 import kotlinx.coroutines.flow.onEach
+import kotlinx.coroutines.flow.update
+import org.tasks.broadcast.ChangeSet
 import org.tasks.broadcast.ComposeRefreshBroadcaster
 import org.tasks.broadcast.RefreshBroadcaster
 import org.tasks.compose.throttleLatest
@@ -29,6 +33,7 @@ class LocalBroadcastManager @Inject constructor(
 ): RefreshBroadcaster {
     private val localBroadcastManager = LocalBroadcastManager.getInstance(context)
     private val refreshChannel = Channel<Unit>(Channel.CONFLATED)
+    private val pendingChanges = MutableStateFlow<ChangeSet?>(null)
 
     init {
         refreshChannel
@@ -36,7 +41,7 @@ class LocalBroadcastManager @Inject constructor(
             .throttleLatest(1000)
             .onEach {
                 localBroadcastManager.sendBroadcast(Intent(REFRESH))
-                appWidgetManager.updateWidgets()
+                appWidgetManager.updateWidgets(pendingChanges.getAndUpdate { null } ?: ChangeSet.ALL)
             }
             .launchIn(scope)
     }
@@ -66,9 +71,10 @@ class LocalBroadcastManager @Inject constructor(
         )
     }
 
-    override fun broadcastRefresh() {
+    override fun broadcastChanges(changes: ChangeSet) {
+        pendingChanges.update { it?.plus(changes) ?: changes }
         refreshChannel.trySend(Unit)
-        composeRefreshBroadcaster.broadcastRefresh()
+        composeRefreshBroadcaster.broadcastChanges(changes)
     }
 
     fun broadcastPreferenceRefresh() {
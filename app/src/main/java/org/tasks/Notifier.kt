@@ -89,15 +89,16 @@ class Notifier @Inject constructor(
     suspend fun triggerNotifications(entries: List<Notification>) {
         var ringFiveTimes = false
         var ringNonstop = false
+        val tasks = taskDao.fetch(entries.map { it.taskId }.distinct()).associateBy { it.id }
         val notifications = entries
                 .filter {
-                    taskDao.fetch(it.taskId)
+                    tasks[it.taskId]
                             ?.let { task ->
                                 if (it.type != Alarm.TYPE_RANDOM) {
                                     ringFiveTimes = ringFiveTimes or task.isNotifyModeFive
                                     ringNonstop = ringNonstop or task.isNotifyModeNonstop
                                 }
-                                notificationManager.getTaskNotification(it) != null
+                                notificationManager.getTaskNotification(it, task) != null
                             }
                             ?: false
                 }
@@ -116,7 +117,7 @@ class Notifier @Inject constructor(
                 && telephonyManager.callStateIdle()) {
             notifications
                     .mapNotNull {
-                        notificationManager.getTaskNotification(it)?.build()?.tickerText?.toString()
+                        notificationManager.getTaskNotification(it, tasks[it.taskId])?.build()?.tickerText?.toString()
                     }
                     .forEach {
                         delay(2000)
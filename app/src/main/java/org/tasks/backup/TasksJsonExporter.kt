@@ -10,8 +10,10 @@ import com.google.common.io.Files
 import com.todoroo.andlib.utility.DialogUtilities
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.withContext
+import kotlinx.serialization.ExperimentalSerializationApi
 import kotlinx.serialization.Serializable
 import kotlinx.serialization.json.Json
+import kotlinx.serialization.json.encodeToStream
 import org.tasks.BuildConfig
 import org.tasks.R
 import org.tasks.caldav.VtodoCache
@@ -27,6 +29,7 @@ import org.tasks.data.dao.DirtyDao
 import org.tasks.data.dao.TaskDao
 import org.tasks.data.dao.TaskListMetadataDao
 import org.tasks.data.dao.UserActivityDao
+import org.tasks.data.db.DbUtils.dbchunk
 import org.tasks.date.DateTimeUtils.newDateTime
 import org.tasks.extensions.Context.toast
 import org.tasks.files.FileHelper
@@ -37,7 +40,6 @@ import timber.log.Timber
 import java.io.File
 import java.io.IOException
 import java.io.OutputStream
-import java.io.Writer
 import java.util.Set
 import javax.inject.Inject
 
@@ -115,8 +117,8 @@ class TasksJsonExporter @Inject constructor(
     }
 
     suspend fun doSettingsExport(os: OutputStream?) = withContext(Dispatchers.IO) {
-        val writer = os!!.bufferedWriter(Charsets.UTF_8)
-        with (JsonWriter(writer)) {
+        val stream = os!!.buffered()
+        with (JsonWriter(stream)) {
             write("{")
             write("version", BuildConfig.VERSION_CODE)
             write("timestamp", currentTimeMillis())
@@ -125,55 +127,76 @@ class TasksJsonExporter @Inject constructor(
             write("}")
             write("}")
         }
-        writer.flush()
+        stream.flush()
     }
 
+    /**
+     * Loads tasks a page at a time, with one query per table for the whole page, and encodes them
+     * straight to [os]
+     */
     @Throws(IOException::class)
     internal suspend fun doTasksExport(os: OutputStream?, taskIds: List<Long>) = withContext(Dispatchers.IO) {
-        val writer = os!!.bufferedWriter(Charsets.UTF_8)
-        with (JsonWriter(writer)) {
+        val stream = os!!.buffered()
+        with (JsonWriter(stream)) {
             write("{")
             write("version", BuildConfig.VERSION_CODE)
             write("timestamp", currentTimeMillis())
             write("\"data\":{")
             write("\"tasks\":[")
-            val dirtyStates = dirtyDao.getDirtyStateByTaskIds(taskIds)
-            taskIds.forEachIndexed { index, id ->
-                setProgress(index, taskIds.size)
-                write("{")
-                write("task", taskDao.fetch(id)!!)
-                dirtyStates[id]?.let {
-                    write("dirtyVersion", it.dirtyVersion)
-                    write("syncedVersion", it.syncedVersion)
+            val calendars = caldavDao.getCalendars()
+            val calendarsByUuid = calendars.associateBy { it.uuid }
+            var count = 0
+            taskIds.dbchunk().forEach { page ->
+                setProgress(count, taskIds.size)
+                val tasks = taskDao.fetch(page).associateBy { it.id }
+                val dirtyStates = dirtyDao.getDirtyStateByTaskIds(page)
+                val alarms = alarmDao.getAlarms(page).groupBy { it.task }
+                val geofences = locationDao.getGeofencesForTasks(page).groupBy { it.task }
+                val tags = tagDao.getTagsForTasks(page).groupBy { it.task }
+                val comments = userActivityDao
+                    .getComments(tasks.values.mapNotNull { it.remoteId })
+                    .groupBy { it.targetId }
+                val attachments = taskAttachmentDao.getAttachmentsForTasks(page).groupBy { it.task }
+                val caldavTasks = caldavDao.getAllTasks(page).groupBy { it.task }
+                page.forEach { id ->
+                    val task = tasks[id] ?: return@forEach
+                    if (count++ > 0) write(",")
+                    write("{")
+                    write("task", task)
+                    dirtyStates[id]?.let {
+                        write("dirtyVersion", it.dirtyVersion)
+                        write("syncedVersion", it.syncedVersion)
+                    }
+                    write("alarms", alarms[id] ?: emptyList())
+                    write("geofences", geofences[id] ?: emptyList())
+                    write("tags", tags[id] ?: emptyList())
+                    write("comments", comments[task.remoteId] ?: emptyList())
+                    write("attachments", attachments[id] ?: emptyList())
+                    val caldav = caldavTasks[id] ?: emptyList()
+                    caldav
+                        .firstOrNull { !it.isDeleted() }
+                        ?.let { caldavTask ->
+                            calendarsByUuid[caldavTask.calendar]?.let { vtodoCache.getVtodo(it, caldavTask) }
+                        }
+                        ?.let { write("vtodo", it) }
+                    write("caldavTasks", caldav, lastItem = true)
+                    write("}")
                 }
-                write("alarms", alarmDao.getAlarms(id))
-                write("geofences", locationDao.getGeofencesForTask(id))
-                write("tags", tagDao.getTagsForTask(id))
-                write("comments", userActivityDao.getComments(id))
-                write("attachments", taskAttachmentDao.getAttachmentsForTask(id))
-                val caldavTasks = caldavDao.getTasks(id)
-                vtodoCache
-                    .getVtodo(caldavTasks.firstOrNull { !it.isDeleted() })
-                    ?.let { write("vtodo", it) }
-                write("caldavTasks", caldavTasks, lastItem = true)
-                write("}")
-                if (index < taskIds.size - 1) write(",")
             }
             write("],")
             write("places", locationDao.getPlaces())
             write("tags", tagDataDao.getAll())
             write("filters", filterDao.getFilters())
             write("caldavAccounts", caldavDao.getAccounts())
-            write("caldavCalendars", caldavDao.getCalendars())
+            write("caldavCalendars", calendars)
             write("taskListMetadata", taskListMetadataDao.getAll())
             write("taskAttachments", taskAttachmentDao.getAttachments())
             writePreferences()
             write("}")
             write("}")
+            exportCount = count
         }
-        writer.close()
-        os.close()
-        exportCount = taskIds.size
+        stream.close()
     }
 
     private fun JsonWriter.writePreferences() {
@@ -211,11 +234,15 @@ class TasksJsonExporter @Inject constructor(
         private val dateForExport: String
             get() = newDateTime().toString("yyyyMMdd'T'HHmm")
 
-        class JsonWriter(val writer: Writer, val json: Json = Json) {
-            fun write(data: String) = writer.write(data)
+        @OptIn(ExperimentalSerializationApi::class)
+        class JsonWriter(val stream: OutputStream, val json: Json = Json) {
+            fun write(data: String) = stream.write(data.toByteArray(Charsets.UTF_8))
 
-            inline fun <reified T> write(key: String, value: @Serializable T, lastItem: Boolean = false) where T : Any =
-                writer.write("\"$key\":${json.encodeToString(value)}${if (lastItem) "" else ","}")
+            inline fun <reified T> write(key: String, value: @Serializable T, lastItem: Boolean = false) where T : Any {
+                write("\"$key\":")
+                json.encodeToStream(value, stream)
+                if (!lastItem) write(",")
+            }
         }
     }
 }
\ No newline at end of file
@@ -59,12 +59,14 @@ import org.tasks.data.entity.Task
 import org.tasks.data.entity.TaskAttachment
 import org.tasks.data.entity.TaskDirtyVersion
 import org.tasks.data.entity.TaskListMetadata
+import org.tasks.data.entity.UserActivity
 import org.tasks.db.Migrations.repeatFrom
 import org.tasks.db.Migrations.withoutFrom
 import org.tasks.extensions.forEach
 import org.tasks.extensions.jsonString
 import org.tasks.filters.FilterCriteriaProvider
 import org.tasks.preferences.Preferences
+import org.tasks.time.DateTimeUtils2.currentTimeMillis
 import timber.log.Timber
 import java.io.IOException
 import java.io.InputStream
@@ -339,17 +341,30 @@ class TasksJsonImporter @Inject constructor(
                     while (reader.hasNext()) {
                         when (val element = reader.nextName()) {
                             "tasks" -> {
+                                val batch = TaskBatch(version, calendarUuidMap)
+                                val start = currentTimeMillis()
+                                val flush: suspend () -> Unit = {
+                                    importBatch(batch, result)
+                                    val elapsed = (currentTimeMillis() - start).coerceAtLeast(1)
+                                    onProgress?.invoke(
+                                        context.getString(
+                                            R.string.import_progress_rate,
+                                            context.getString(R.string.import_progress_read, result.taskCount),
+                                            result.taskCount * 1000L / elapsed,
+                                        )
+                                    )
+                                }
                                 reader.beginArray()
                                 while (reader.hasNext()) {
                                     val rawJson = reader.jsonString()
-                                    val backup = lenientJson.decodeFromString<TaskBackup>(rawJson)
+                                    batch.tasks.add(lenientJson.decodeFromString<TaskBackup>(rawJson) to rawJson)
                                     result.taskCount++
-                                    onProgress?.invoke(
-                                        context.getString(R.string.import_progress_read, result.taskCount)
-                                    )
-                                    importTask(backup, version, rawJson, result, calendarUuidMap)
+                                    if (batch.tasks.size >= BATCH_SIZE) {
+                                        flush()
+                                    }
                                 }
                                 reader.endArray()
+                                flush()
                             }
                             else -> {
                                 Timber.w("Skipping $element")
@@ -370,13 +385,31 @@ class TasksJsonImporter @Inject constructor(
         `is`.close()
     }
 
+    /**
+     * Imports the buffered tasks in one transaction, then inserts their alarms, tags and comments
+     * together
+     */
+    private suspend fun importBatch(batch: TaskBatch, result: ImportResult) {
+        if (batch.tasks.isEmpty()) {
+            return
+        }
+        taskDao.inTransaction {
+            batch.tasks.forEach { (backup, rawJson) -> importTask(backup, rawJson, result, batch) }
+            alarmDao.insert(batch.alarms)
+            tagDao.insert(batch.tags)
+            userActivityDao.createNew(batch.comments)
+        }
+        batch.clear()
+    }
+
     private suspend fun importTask(
         backup: TaskBackup,
-        version: Int,
         rawJson: String,
         result: ImportResult,
-        calendarUuidMap: Map<String, String>,
+        batch: TaskBatch,
     ) {
+        val version = batch.version
+        val calendarUuidMap = batch.calendarUuidMap
         val task = backup.task
         val perTaskDirty: Pair<Long, Long>? = when {
             backup.dirtyVersion != null && backup.syncedVersion != null ->
@@ -428,7 +461,7 @@ class TasksJsonImporter @Inject constructor(
         backup.alarms
             ?.map { it.copy(task = taskId) }
             ?.let { if (skipAllDayAlarms) emptyList() else it }
-            ?.let { alarmDao.insert(it) }
+            ?.let { batch.alarms.addAll(it) }
         if (version < V12_4) {
             val alarms = Upgrade_14_11.fromLegacyFlags(task.ringFlags, task.id)
                 .filter { alarm ->
@@ -463,7 +496,7 @@ class TasksJsonImporter @Inject constructor(
             if (version < V6_4) {
                 comment.convertPictureUri()
             }
-            userActivityDao.createNew(comment)
+            batch.comments.add(comment)
         }
         backup.google?.forEachIndexed { index, googleTask ->
             val id = caldavDao.insert(
@@ -502,8 +535,8 @@ class TasksJsonImporter @Inject constructor(
             )
         }
         backup.tags?.forEach tags@ { tag ->
-            val tagData = findTagData(tag) ?: return@tags
-            tagDao.insert(
+            val tagData = batch.findTagData(tag) ?: return@tags
+            batch.tags.add(
                 tag.copy(
                     task = taskId,
                     taskUid = task.remoteId,
@@ -539,7 +572,7 @@ class TasksJsonImporter @Inject constructor(
             val caldavTask =
                 backup.caldavTasks?.firstOrNull { t -> !t.isDeleted() } ?: return@let
             val remappedCalendar = calendarUuidMap[caldavTask.calendar] ?: caldavTask.calendar
-            val caldavCalendar = caldavDao.getCalendar(remappedCalendar!!) ?: return@let
+            val caldavCalendar = batch.getCalendar(remappedCalendar!!) ?: return@let
             vtodoCache.putVtodo(caldavCalendar, caldavTask.copy(calendar = remappedCalendar), it)
         }
         result.importCount++
@@ -561,11 +594,44 @@ class TasksJsonImporter @Inject constructor(
     private suspend fun findTagData(tagData: TagData) =
             findTagData(tagData.remoteId!!, tagData.name!!)
 
-    private suspend fun findTagData(tag: Tag) = findTagData(tag.tagUid!!, tag.name!!)
-
     private suspend fun findTagData(uid: String, name: String): TagData? =
             tagDataDao.getByUuid(uid) ?: tagDataDao.getTagByName(name)
 
+    private inner class TaskBatch(
+        val version: Int,
+        val calendarUuidMap: Map<String, String>,
+    ) {
+        val tasks = ArrayList<Pair<TaskBackup, String>>(BATCH_SIZE)
+        val alarms = ArrayList<Alarm>()
+        val tags = ArrayList<Tag>()
+        val comments = ArrayList<UserActivity>()
+        private val tagData = HashMap<Pair<String, String>, TagData?>()
+        private val calendars = HashMap<String, CaldavCalendar?>()
+
+        suspend fun findTagData(tag: Tag): TagData? {
+            val key = tag.tagUid!! to tag.name!!
+            return if (tagData.containsKey(key)) {
+                tagData[key]
+            } else {
+                findTagData(key.first, key.second).also { tagData[key] = it }
+            }
+        }
+
+        suspend fun getCalendar(uuid: String): CaldavCalendar? =
+            if (calendars.containsKey(uuid)) {
+                calendars[uuid]
+            } else {
+                caldavDao.getCalendar(uuid).also { calendars[uuid] = it }
+            }
+
+        fun clear() {
+            tasks.clear()
+            alarms.clear()
+            tags.clear()
+            comments.clear()
+        }
+    }
+
     private fun themeToColor(context: Context, version: Int, color: Int) =
             if (version < Upgrader.V8_2) getAndroidColor(context, color) else color
 
@@ -591,6 +657,7 @@ class TasksJsonImporter @Inject constructor(
 
     companion object {
         const val DIRTY_FLAG_VERSION = 150706
+        private const val BATCH_SIZE = 500
 
         private val ignorePrefs = intArrayOf(
                 R.string.p_current_version,
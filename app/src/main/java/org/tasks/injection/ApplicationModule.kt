@@ -1,5 +1,6 @@
 package org.tasks.injection
 
+import android.app.ActivityManager
 import android.app.NotificationManager
 import android.content.Context
 import androidx.appcompat.app.AppCompatDelegate
@@ -16,6 +17,8 @@ import kotlinx.coroutines.CoroutineDispatcher
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.SupervisorJob
 import kotlinx.coroutines.asCoroutineDispatcher
+import kotlinx.coroutines.flow.launchIn
+import kotlinx.coroutines.flow.onEach
 import org.tasks.LocalBroadcastManager
 import com.todoroo.astrid.gcal.GCalHelper
 import com.todoroo.astrid.repeats.RepeatTaskHelper
@@ -72,6 +75,7 @@ import org.tasks.data.db.Database
 import org.tasks.filters.FilterProvider
 import org.tasks.filters.PreferenceDrawerConfiguration
 import org.tasks.jobs.BackgroundWork
+import org.tasks.jobs.CoalescingScheduler
 import org.tasks.jobs.WorkManager
 import org.tasks.location.Geocoder
 import org.tasks.location.LocationService
@@ -93,6 +97,10 @@ import org.tasks.preferences.DefaultFilterProvider
 import org.tasks.themes.ColorProvider
 import org.tasks.compose.chips.ChipDataProvider
 import org.tasks.tasklist.HeaderFormatter
+import org.tasks.tasklist.SectionedDataSource
+import org.tasks.watch.SnapshotCache
+import org.tasks.watch.WatchTaskListKey
+import org.tasks.watch.WatchTaskSnapshots
 import org.tasks.watch.WatchServiceLogic
 import com.todoroo.astrid.service.TaskCreator
 import org.tasks.sync.microsoft.MicrosoftClientProvider
@@ -333,6 +341,8 @@ class ApplicationModule {
         filterProvider: FilterProvider,
         taskDao: TaskDao,
         caldavDao: CaldavDao,
+        tagDataDao: TagDataDao,
+        locationDao: LocationDao,
         tasksPreferences: TasksPreferences,
         purchaseState: PurchaseState,
         composeRefreshBroadcaster: ComposeRefreshBroadcaster,
@@ -340,9 +350,11 @@ class ApplicationModule {
         filterProvider = filterProvider,
         taskDao = taskDao,
         caldavDao = caldavDao,
+        tagDataDao = tagDataDao,
+        locationDao = locationDao,
         tasksPreferences = tasksPreferences,
         purchaseState = purchaseState,
-        refreshFlow = composeRefreshBroadcaster.refreshes,
+        changes = composeRefreshBroadcaster.changes,
     )
 
     @Provides
@@ -505,7 +517,16 @@ class ApplicationModule {
         timerPlugin: TimerPlugin,
         backgroundWork: BackgroundWork,
         caldavDao: CaldavDao,
-    ) = TaskSaver(taskDao, refreshBroadcaster, notifier, locationService, timerPlugin, backgroundWork, caldavDao)
+        scheduler: CoalescingScheduler,
+    ) = TaskSaver(taskDao, refreshBroadcaster, notifier, locationService, timerPlugin, backgroundWork, caldavDao, scheduler)
+
+    @Provides
+    @Singleton
+    fun providesCoalescingScheduler(
+        notifier: Notifier,
+        backgroundWork: BackgroundWork,
+        @DefaultDispatcher defaultDispatcher: CoroutineDispatcher,
+    ) = CoalescingScheduler(notifier, backgroundWork, defaultDispatcher)
 
     @Provides
     fun providesTimerPlugin(
@@ -526,9 +547,15 @@ class ApplicationModule {
         vtodoCache: VtodoCache,
         accountDataRepository: org.tasks.caldav.TasksAccountDataRepository,
         tagMetadataSync: org.tasks.caldav.metadata.TagMetadataSync,
+        @ApplicationContext context: Context,
     ) = org.tasks.caldav.CaldavSynchronizer(
         caldavDao, dirtyDao, refreshBroadcaster, taskDeleter, reporting,
         provider, iCal, principalDao, vtodoCache, accountDataRepository, tagMetadataSync,
+        calendarConcurrency = if (context.getSystemService(ActivityManager::class.java).isLowRamDevice) {
+            1
+        } else {
+            org.tasks.caldav.DEFAULT_CALENDAR_CONCURRENCY
+        },
     )
 
     @Provides
@@ -694,6 +721,7 @@ class ApplicationModule {
         defaultFilterProvider: DefaultFilterProvider,
         taskCreator: TaskCreator,
         @ApplicationContext context: Context,
+        snapshots: WatchTaskSnapshots,
     ) = WatchServiceLogic(
         taskDao = taskDao,
         taskSaver = taskSaver,
@@ -707,8 +735,20 @@ class ApplicationModule {
         defaultFilterProvider = defaultFilterProvider,
         taskCreator = taskCreator,
         context = context,
+        snapshots = snapshots,
     )
 
+    @Provides
+    @Singleton
+    fun providesWatchTaskSnapshots(
+        composeRefreshBroadcaster: ComposeRefreshBroadcaster,
+        @ApplicationScope scope: CoroutineScope,
+    ): WatchTaskSnapshots = SnapshotCache<WatchTaskListKey, SectionedDataSource>().also { snapshots ->
+        composeRefreshBroadcaster.changes
+            .onEach { snapshots.invalidate() }
+            .launchIn(scope)
+    }
+
     @Provides
     fun providesPebbleMessageHandler(
         watchServiceLogic: WatchServiceLogic,
@@ -16,6 +16,7 @@ import com.todoroo.astrid.utility.Constants
 import dagger.hilt.android.qualifiers.ApplicationContext
 import kotlinx.coroutines.coroutineScope
 import kotlinx.coroutines.launch
+import org.tasks.broadcast.ChangeSet
 import org.tasks.broadcast.RefreshBroadcaster
 import org.tasks.R
 import org.tasks.data.dao.LocationDao
@@ -23,6 +24,7 @@ import org.tasks.data.dao.NotificationDao
 import org.tasks.data.dao.TaskDao
 import org.tasks.data.entity.Alarm
 import org.tasks.data.entity.Notification
+import org.tasks.data.entity.Task
 import org.tasks.filters.NotificationsFilter
 import org.tasks.filters.TimerFilter
 import org.tasks.intents.TaskIntents
@@ -209,7 +211,7 @@ class NotificationManager @Inject constructor(
                 useGroupKey = false,
             )
         }
-        refreshBroadcaster.broadcastRefresh()
+        refreshBroadcaster.broadcastChanges(ChangeSet.tables(Notification.TABLE_NAME))
     }
 
     @SuppressLint("MissingPermission")
@@ -232,23 +234,32 @@ class NotificationManager @Inject constructor(
         }
         Timber.d("Posting notifications alert=$alert nonstop=$nonstop fiveTimes=$fiveTimes useGroupKey=$useGroupKey\n${notifications.joinToString("\n")}")
         var alert = alert
+        val tasks = taskDao.fetch(notifications.map { it.taskId }).associateBy { it.id }
+        val stale = ArrayList<Long>()
+        val lastNotified = HashMap<Long, Long>()
         for (notification in notifications) {
-            val builder = getTaskNotification(notification)
+            val builder = getTaskNotification(notification, tasks[notification.taskId])
             if (builder == null) {
                 Timber.d("Cancelling notification for ${notification.taskId} reason=${CancelReason.STALE}")
                 notificationManager.cancel(notification.taskId.toInt())
-                notificationDao.delete(notification.taskId)
+                stale.add(notification.taskId)
             } else {
                 builder
                         .setGroup(if (useGroupKey) GROUP_KEY else notification.taskId.toString())
                         .setGroupAlertBehavior(
                                 if (alert) NotificationCompat.GROUP_ALERT_CHILDREN else NotificationCompat.GROUP_ALERT_SUMMARY)
                 notify(notification.taskId, builder, alert, nonstop, fiveTimes, notification.type)
-                val reminderTime = DateTime(notification.timestamp).endOfMinute().millis
-                taskDao.setLastNotified(notification.taskId, reminderTime)
+                lastNotified[notification.taskId] =
+                    DateTime(notification.timestamp).endOfMinute().millis
                 alert = false
             }
         }
+        if (stale.isNotEmpty()) {
+            notificationDao.deleteAll(stale)
+        }
+        if (lastNotified.isNotEmpty()) {
+            taskDao.setLastNotified(lastNotified)
+        }
     }
 
     @SuppressLint("MissingPermission")
@@ -367,11 +378,16 @@ class NotificationManager @Inject constructor(
         notify(SUMMARY_NOTIFICATION_ID.toLong(), builder, notify, nonStop, fiveTimes)
     }
 
-    suspend fun getTaskNotification(notification: Notification): NotificationCompat.Builder? {
+    suspend fun getTaskNotification(notification: Notification): NotificationCompat.Builder? =
+        getTaskNotification(notification, taskDao.fetch(notification.taskId))
+
+    suspend fun getTaskNotification(
+        notification: Notification,
+        task: Task?,
+    ): NotificationCompat.Builder? {
         val id = notification.taskId
         val type = notification.type
         val `when` = notification.timestamp
-        val task = taskDao.fetch(id)
         if (task == null) {
             Timber.e("Could not find %s", id)
             return null
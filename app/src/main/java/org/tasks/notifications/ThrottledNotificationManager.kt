@@ -6,36 +6,59 @@ import androidx.annotation.RequiresPermission
 import androidx.core.app.NotificationManagerCompat
 import androidx.core.app.NotificationManagerCompat.InterruptionFilter
 import dagger.hilt.android.qualifiers.ApplicationContext
-import java.util.concurrent.Executors.newSingleThreadExecutor
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.launch
+import org.tasks.injection.ApplicationScope
+import timber.log.Timber
 import javax.inject.Inject
 
 class ThrottledNotificationManager @Inject constructor(
-        @ApplicationContext val context: Context
+        @ApplicationContext val context: Context,
+        @ApplicationScope scope: CoroutineScope,
 ) {
     private val notificationManagerCompat = NotificationManagerCompat.from(context)
-    private val executor = newSingleThreadExecutor()
-    private val throttle = Throttle(NOTIFICATIONS_PER_SECOND, executor = executor, tag = "NOTIFY")
+    private val bucket = TokenBucket(NOTIFICATIONS_PER_SECOND, 1000L / NOTIFICATIONS_PER_SECOND, tag = "NOTIFY")
+    private val operations = Channel<suspend () -> Unit>(Channel.UNLIMITED)
+
+    init {
+        scope.launch {
+            for (operation in operations) {
+                try {
+                    operation()
+                } catch (e: Exception) {
+                    Timber.e(e)
+                }
+            }
+        }
+    }
 
     @InterruptionFilter
     val currentInterruptionFilter: Int
         get() = notificationManagerCompat.currentInterruptionFilter
 
     fun cancel(id: Int) {
-        executor.execute {
+        operations.trySend {
             notificationManagerCompat.cancel(id)
         }
     }
 
     @RequiresPermission(android.Manifest.permission.POST_NOTIFICATIONS)
     fun notify(id: Int, notification: Notification) {
-        throttle.run {
+        operations.trySend {
+            bucket.acquire()
             notificationManagerCompat.notify(id, notification)
         }
     }
 
-    fun pause(millis: Long) = throttle.pause(millis)
+    fun pause(millis: Long) {
+        operations.trySend {
+            delay(millis)
+        }
+    }
 
     companion object {
         private const val NOTIFICATIONS_PER_SECOND = 4
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,45 @@
+package org.tasks.notifications
+
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+import org.tasks.time.DateTimeUtils2.currentTimeMillis
+import timber.log.Timber
+
+/**
+ * Allows bursts of up to [capacity] and then one more every [refillMillis]. Callers suspend while
+ * the bucket is empty instead of sleeping a thread
+ */
+internal class TokenBucket(
+        private val capacity: Int,
+        private val refillMillis: Long,
+        private val tag: String = "",
+        private val now: () -> Long = { currentTimeMillis() },
+) {
+    private val mutex = Mutex()
+    private var tokens = capacity
+    private var refilled = now()
+
+    suspend fun acquire() = mutex.withLock {
+        refill()
+        while (tokens == 0) {
+            val wait = refillMillis - (now() - refilled)
+            Timber.v("$tag: Throttled for ${wait}ms")
+            delay(wait)
+            refill()
+        }
+        tokens--
+    }
+
+    private fun refill() {
+        val time = now()
+        val added = (time - refilled) / refillMillis
+        if (tokens + added >= capacity) {
+            tokens = capacity
+            refilled = time
+        } else if (added > 0) {
+            tokens += added.toInt()
+            refilled += added * refillMillis
+        }
+    }
+}
@@ -194,6 +194,15 @@ class DefaultFilterProvider @Inject constructor(
         @Deprecated("use TYPE_CALDAV") const val TYPE_GOOGLE_TASKS = 3
         const val TYPE_CALDAV = 4
         private const val TYPE_LOCATION = 5
+
+        /** List uuid from a filter preference value, or null if it isn't a list filter */
+        fun getListUuid(preferenceValue: String?): String? {
+            val split = preferenceValue?.split(":")?.takeIf { it.size == 2 } ?: return null
+            return when (split[0].toIntOrNull()) {
+                TYPE_GOOGLE_TASKS, TYPE_CALDAV -> split[1]
+                else -> null
+            }
+        }
         private const val FILTER_MY_TASKS = 0
         private const val FILTER_TODAY = 1
         @Suppress("unused") private const val FILTER_UNCATEGORIZED = 2
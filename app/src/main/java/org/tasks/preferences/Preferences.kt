@@ -75,6 +75,10 @@ class Preferences @JvmOverloads constructor(
     override suspend fun defaultDueTime(): Int =
         getInt(R.string.p_rmd_time, notificationDefaults.defaultReminderTime)
 
+    override suspend fun alarmSchedule(): String? = getStringValue(R.string.p_alarm_schedule)
+
+    override suspend fun setAlarmSchedule(value: String) = setString(R.string.p_alarm_schedule, value)
+
     private val quietHoursStart: Int
         get() = getMillisOfDayPref(R.string.p_rmd_quietStart, notificationDefaults.quietHoursStart)
 
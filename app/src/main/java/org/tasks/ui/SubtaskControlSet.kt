@@ -45,7 +45,7 @@ class SubtaskControlSet : TaskEditControlFragment() {
         val viewState = viewModel.viewState.collectAsStateWithLifecycle().value
         LaunchedEffect(viewState.task) {
             if (viewState.task.id > 0) {
-                listViewModel.setFilter(SubtaskFilter(viewState.task.id))
+                listViewModel.setFilter(SubtaskFilter(viewState.task.id), limit = null)
             }
         }
         val originalState = viewModel.originalState.collectAsStateWithLifecycle().value
@@ -85,7 +85,7 @@ class TaskListViewModel @Inject constructor(
     createSearchFilter = { query ->
         SearchFilter(applicationContext.getString(R.string.FLA_search_filter, query), query)
     },
-    refreshFlow = composeRefreshBroadcaster.refreshes,
+    changes = composeRefreshBroadcaster.changes,
 ) {
     private val _banner = MutableStateFlow<Banner?>(null)
     val banner = _banner.asStateFlow()
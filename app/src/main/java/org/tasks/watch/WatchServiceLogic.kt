@@ -13,10 +13,8 @@ import org.tasks.data.count
 import org.tasks.data.countCompletedSql
 import org.tasks.data.countSql
 import org.tasks.data.dao.TaskDao
-import org.tasks.data.fetchTasks
 import org.tasks.data.isHidden
 import org.tasks.db.QueryUtils
-import org.tasks.filters.AstridOrderingFilter
 import org.tasks.filters.Filter
 import org.tasks.filters.FilterListItem
 import org.tasks.filters.FilterProvider
@@ -29,7 +27,6 @@ import org.tasks.preferences.DefaultFilterProvider
 import org.tasks.preferences.QueryPreferences
 import org.tasks.service.TaskCompleter
 import org.tasks.tasklist.HeaderFormatter
-import org.tasks.tasklist.SectionedDataSource
 import org.tasks.tasklist.UiItem
 import org.tasks.themes.ColorProvider
 import org.tasks.time.DateTimeUtils2.currentTimeMillis
@@ -48,6 +45,7 @@ class WatchServiceLogic(
     private val defaultFilterProvider: DefaultFilterProvider,
     private val taskCreator: TaskCreator,
     private val context: Context,
+    private val snapshots: WatchTaskSnapshots,
 ) : WatchService {
     private val is24HourTime: Boolean
         get() = DateFormat.is24HourFormat(context)
@@ -77,20 +75,17 @@ class WatchServiceLogic(
             overrideSortMode = sortMode,
             overrideGroupMode = groupMode,
         )
-        val payload = SectionedDataSource(
-            tasks = taskDao.fetchTasks(preferences, filter),
-            disableHeaders = filter.disableHeaders()
-                    || (filter.supportsManualSort() && preferences.isManualSort)
-                    || (filter is AstridOrderingFilter && preferences.isAstridSort),
-            groupMode = preferences.groupMode,
-            subtaskMode = preferences.subtaskMode,
-            completedAtBottom = preferences.completedTasksAtBottom,
-            collapsed = collapsed,
-        )
+        val snapshot = snapshots.getTaskList(taskDao, preferences, filter, collapsed)
+        val payload = snapshot.value
+        val start = position.coerceIn(0, payload.size)
+        val end = (start.toLong() + effectiveLimit)
+            .coerceAtMost(payload.size.toLong())
+            .toInt()
         return WatchTaskList(
             totalItems = payload.size,
+            version = snapshot.version,
             items = payload
-                .subList(position, (position + effectiveLimit).coerceAtMost(payload.size))
+                .subList(start, end)
                 .map { item ->
                     when (item) {
                         is UiItem.Header ->
@@ -5,11 +5,15 @@ import android.content.ComponentName
 import android.content.Context
 import android.content.Intent
 import dagger.hilt.android.qualifiers.ApplicationContext
+import org.tasks.broadcast.ChangeSet
+import org.tasks.preferences.DefaultFilterProvider
+import org.tasks.preferences.Preferences
 import timber.log.Timber
 import javax.inject.Inject
 
 class AppWidgetManager @Inject constructor(
     @param:ApplicationContext private val context: Context,
+    private val preferences: Preferences,
 ) {
     private val appWidgetManager: AppWidgetManager? by lazy {
         AppWidgetManager.getInstance(context)
@@ -35,5 +39,20 @@ class AppWidgetManager @Inject constructor(
         rebuildWidgets(*widgetIds)
     }
 
+    /** Skip widgets showing a list that isn't part of [changes] */
+    fun updateWidgets(changes: ChangeSet) {
+        if (changes.lists.isEmpty()) {
+            updateWidgets()
+            return
+        }
+        val affected = widgetIds.filter { id ->
+            DefaultFilterProvider
+                .getListUuid(WidgetPreferences(context, preferences, id).filterId)
+                ?.let { changes.affectsList(it) }
+                ?: true
+        }
+        rebuildWidgets(*affected.toIntArray())
+    }
+
     fun exists(id: Int) = appWidgetManager?.getAppWidgetInfo(id) != null
 }
@@ -13,8 +13,10 @@ import com.todoroo.astrid.subtasks.SubtasksHelper
 import org.tasks.BuildConfig
 import org.tasks.R
 import org.tasks.data.TaskContainer
-import org.tasks.data.TaskListQuery.getQuery
+import org.tasks.data.TaskListQuery
+import org.tasks.data.TaskListQuery.getParameterizedQuery
 import org.tasks.data.dao.TaskDao
+import org.tasks.data.fetchTasks
 import org.tasks.data.hasNotes
 import org.tasks.data.isHidden
 import org.tasks.data.isOverdue
@@ -233,9 +235,9 @@ internal class TasksWidgetBuilder(
         }
     }
 
-    private suspend fun getQuery(filter: Filter): String {
+    private suspend fun getQuery(filter: Filter): TaskListQuery.BoundQuery {
         subtasksHelper.applySubtasksToWidgetFilter(filter, widgetPreferences)
-        return getQuery(widgetPreferences, filter, MAX_ITEMS)
+        return getParameterizedQuery(widgetPreferences, filter, MAX_ITEMS)
     }
 
     private fun formatDueDate(
@@ -0,0 +1,62 @@
+package org.tasks.notifications
+
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.test.TestScope
+import kotlinx.coroutines.test.advanceTimeBy
+import kotlinx.coroutines.test.currentTime
+import kotlinx.coroutines.test.runTest
+import org.junit.Assert.assertEquals
+import org.junit.Test
+
+@ExperimentalCoroutinesApi
+class TokenBucketTest {
+    @Test
+    fun burstUpToCapacity() = runTest {
+        val bucket = bucket()
+
+        repeat(3) { bucket.acquire() }
+
+        assertEquals(0L, currentTime)
+    }
+
+    @Test
+    fun waitForRefill() = runTest {
+        val bucket = bucket()
+
+        repeat(4) { bucket.acquire() }
+
+        assertEquals(250L, currentTime)
+    }
+
+    @Test
+    fun steadyRateAfterBurst() = runTest {
+        val bucket = bucket()
+
+        repeat(7) { bucket.acquire() }
+
+        assertEquals(1000L, currentTime)
+    }
+
+    @Test
+    fun refillWhileIdle() = runTest {
+        val bucket = bucket()
+        repeat(3) { bucket.acquire() }
+
+        advanceTimeBy(500)
+        repeat(2) { bucket.acquire() }
+
+        assertEquals(500L, currentTime)
+    }
+
+    @Test
+    fun dontRefillPastCapacity() = runTest {
+        val bucket = bucket()
+
+        advanceTimeBy(10_000)
+        repeat(4) { bucket.acquire() }
+
+        assertEquals(10_250L, currentTime)
+    }
+
+    private fun TestScope.bucket() = TokenBucket(3, 250, now = { currentTime })
+}
@@ -130,9 +130,11 @@ import com.mikepenz.markdown.m3.markdownColor
 import com.mikepenz.markdown.m3.markdownTypography
 import com.mikepenz.markdown.model.markdownAnimations
 import com.todoroo.astrid.core.SortHelper
+import kotlinx.coroutines.flow.combine
 import kotlinx.coroutines.flow.distinctUntilChanged
 import kotlinx.coroutines.flow.drop
 import kotlinx.coroutines.flow.first
+import kotlinx.coroutines.flow.map
 import kotlinx.coroutines.launch
 import kotlinx.serialization.Serializable
 import kotlinx.serialization.modules.SerializersModule
@@ -1949,6 +1951,20 @@ private fun TaskListPane(
     modifier: Modifier = Modifier,
 ) {
     val listState = rememberLazyListState()
+    LaunchedEffect(listState, viewModel) {
+        // a page can render fewer rows than fit on screen, e.g. when groups are collapsed, so
+        // check again whenever another page becomes available, not only after scrolling
+        combine(
+            snapshotFlow { listState.layoutInfo.visibleItemsInfo.lastOrNull()?.index },
+            viewModel.state.map { it.hasMore },
+        ) { position, hasMore -> position to hasMore }
+            .distinctUntilChanged()
+            .collect { (position, hasMore) ->
+                if (hasMore && position != null) {
+                    viewModel.onScrolled(position)
+                }
+            }
+    }
     val floatingToolbarScrollBehavior = FloatingToolbarDefaults.exitAlwaysScrollBehavior(
         exitDirection = androidx.compose.material3.FloatingToolbarExitDirection.Bottom,
     )
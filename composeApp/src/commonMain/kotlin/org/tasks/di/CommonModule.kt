@@ -23,6 +23,7 @@ import org.tasks.broadcast.ComposeRefreshBroadcaster
 import org.tasks.broadcast.RefreshBroadcaster
 import org.tasks.caldav.CaldavClientProvider
 import org.tasks.caldav.CaldavSynchronizer
+import org.tasks.caldav.DEFAULT_CALENDAR_CONCURRENCY
 import org.tasks.caldav.TasksAccountDataRepository
 import org.tasks.caldav.iCalendar
 import org.tasks.calendars.CalendarHelper
@@ -50,6 +51,7 @@ import org.tasks.googleapis.DefaultListProvider
 import org.tasks.googleapis.DesktopGoogleTasksSynchronizer
 import org.tasks.sync.microsoft.MicrosoftSynchronizer
 import org.tasks.jobs.BackgroundWork
+import org.tasks.jobs.CoalescingScheduler
 import org.tasks.location.Geocoder
 import org.tasks.location.LocationService
 import org.tasks.location.MapPosition
@@ -192,6 +194,10 @@ val commonModule = module {
                     TasksPreferences.defaultReminderTime,
                     notificationDefaults.defaultReminderTime
                 )
+            override suspend fun alarmSchedule() =
+                tasksPreferences.get(TasksPreferences.alarmSchedule, "").orNull()
+            override suspend fun setAlarmSchedule(value: String) =
+                tasksPreferences.set(TasksPreferences.alarmSchedule, value)
             override suspend fun defaultPriority() =
                 tasksPreferences.get(
                     TasksPreferences.defaultPriority,
@@ -413,6 +419,7 @@ val commonModule = module {
         }
     }
     single { SyncAdapters(get(), get(), get(), { false }, get(), get(), Dispatchers.IO) }
+    single { CoalescingScheduler(get(), get(), Dispatchers.Default) }
     singleOf(::TasksAccountDataRepository)
 
     // Stateless factories
@@ -435,7 +442,12 @@ val commonModule = module {
     factoryOf(::TaskSaver)
     factoryOf(::TaskMover)
     factoryOf(::iCalendar)
-    factoryOf(::CaldavSynchronizer)
+    factory {
+        CaldavSynchronizer(
+            get(), get(), get(), get(), get(), get(), get(), get(), get(), get(), get(),
+            calendarConcurrency = DEFAULT_CALENDAR_CONCURRENCY,
+        )
+    }
     single {
         org.tasks.caldav.metadata.TagMetadataSync(
             caldavDao = get(),
@@ -495,9 +507,11 @@ val commonModule = module {
             filterProvider = get(),
             taskDao = get(),
             caldavDao = get(),
+            tagDataDao = get(),
+            locationDao = get(),
             tasksPreferences = get(),
             purchaseState = get(),
-            refreshFlow = get<ComposeRefreshBroadcaster>().refreshes,
+            changes = get<ComposeRefreshBroadcaster>().changes,
         )
     }
     viewModel { params ->
@@ -522,7 +536,7 @@ val commonModule = module {
             tasksPreferences = get(),
             headerFormatter = get(),
             queryPreferences = get(),
-            refreshFlow = get<ComposeRefreshBroadcaster>().refreshes,
+            changes = get<ComposeRefreshBroadcaster>().changes,
         )
     }
     viewModel { params ->
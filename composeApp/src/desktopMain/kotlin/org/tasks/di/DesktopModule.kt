@@ -136,7 +136,7 @@ actual fun platformModule(): Module = module {
     }
     single { DesktopUserDecisionRegistry() }
     single<CertStore> { DesktopCertStore(dataDir = dataDir, userDecisionRegistry = get()) }
-    factory<OkHttpClientFactory> {
+    single<OkHttpClientFactory> {
         DesktopOkHttpClientFactory(
             certStore = get(),
             encryption = get(),
@@ -0,0 +1,8 @@
+package org.tasks.data
+
+data class CaldavObject(
+    val obj: String,
+    val etag: String?,
+    val deleted: Boolean,
+    val synced: Boolean,
+)
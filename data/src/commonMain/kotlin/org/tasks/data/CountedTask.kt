@@ -0,0 +1,7 @@
+package org.tasks.data
+
+/** A task that is counted for a list, tag or place, identified by its uuid or uid */
+data class CountedTask(
+    val owner: String,
+    val task: Long,
+)
@@ -3,10 +3,14 @@ package org.tasks.data.dao
 import androidx.room.Dao
 import androidx.room.Delete
 import androidx.room.Insert
+import androidx.room.OnConflictStrategy
 import androidx.room.Query
 import kotlinx.coroutines.flow.Flow
+import org.tasks.data.db.SuspendDbUtils.chunkedMap
 import org.tasks.data.entity.Alarm
 import org.tasks.data.entity.Alarm.Companion.TYPE_SNOOZE
+import org.tasks.data.entity.AlarmTimeline
+import org.tasks.data.entity.Notification
 import org.tasks.data.entity.Task
 
 @Dao
@@ -30,9 +34,78 @@ WHERE tasks._id = :taskId
 """)
     suspend fun getActiveAlarms(taskId: Long): List<Alarm>
 
+    @Query("""
+SELECT alarms.*
+FROM alarms
+         INNER JOIN tasks ON tasks._id = alarms.task
+         LEFT JOIN alarm_timeline ON alarm_timeline.alarm = alarms._id
+WHERE tasks.completed = 0
+  AND tasks.deleted = 0
+  AND alarm_timeline.alarm IS NULL
+""")
+    suspend fun getUnscheduledAlarms(): List<Alarm>
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    suspend fun schedule(timeline: List<AlarmTimeline>)
+
+    @Query("DELETE FROM alarm_timeline")
+    suspend fun clearSchedule()
+
+    /**
+     * The first alarm of each task that fires before [before], skipping tasks snoozed past [before]
+     */
+    @Query("""
+SELECT 0 AS uid, alarm_timeline.task AS task, next_fire AS timestamp, type, NULL AS location
+FROM alarm_timeline
+WHERE next_fire > 0
+  AND next_fire < :before
+  AND alarm = (
+    SELECT MIN(first.alarm)
+    FROM alarm_timeline AS first
+    WHERE first.task = alarm_timeline.task
+      AND first.next_fire > 0
+      AND first.next_fire < :before
+  )
+  AND NOT EXISTS (
+    SELECT 1
+    FROM alarm_timeline AS snooze
+    WHERE snooze.task = alarm_timeline.task
+      AND snooze.type = $TYPE_SNOOZE
+      AND snooze.next_fire >= :before
+  )
+""")
+    suspend fun getScheduled(before: Long): List<Notification>
+
+    /**
+     * The earliest alarm at or after [after]. A task snoozed past [after] only counts its latest
+     * snooze
+     */
+    @Query("""
+SELECT next_fire
+FROM alarm_timeline
+WHERE next_fire >= :after
+  AND NOT EXISTS (
+    SELECT 1
+    FROM alarm_timeline AS snooze
+    WHERE snooze.task = alarm_timeline.task
+      AND snooze.type = $TYPE_SNOOZE
+      AND snooze.next_fire >= :after
+      AND (alarm_timeline.type != $TYPE_SNOOZE OR snooze.next_fire > alarm_timeline.next_fire)
+  )
+ORDER BY next_fire
+LIMIT 1
+""")
+    suspend fun getNextScheduled(after: Long): Long?
+
     @Query("SELECT * FROM alarms WHERE task = :taskId")
     suspend fun getAlarms(taskId: Long): List<Alarm>
 
+    suspend fun getAlarms(taskIds: List<Long>): List<Alarm> =
+        taskIds.chunkedMap { getAlarmsInternal(it) }
+
+    @Query("SELECT * FROM alarms WHERE task IN (:taskIds)")
+    suspend fun getAlarmsInternal(taskIds: List<Long>): List<Alarm>
+
     @Query("SELECT * FROM alarms WHERE task = :taskId")
     fun watchAlarms(taskId: Long): Flow<List<Alarm>>
 
@@ -10,6 +10,8 @@ import androidx.room.Update
 import co.touchlab.kermit.Logger
 import kotlinx.coroutines.flow.Flow
 import org.tasks.data.CaldavFilters
+import org.tasks.data.CountedTask
+import org.tasks.data.CaldavObject
 import org.tasks.data.CaldavTaskContainer
 import org.tasks.data.NO_ORDER
 import org.tasks.data.TaskContainer
@@ -299,6 +301,9 @@ WHERE cd_calendar = :calendar
     @Query("SELECT * FROM caldav_tasks WHERE cd_task = :taskId")
     abstract suspend fun getTasks(taskId: Long): List<CaldavTask>
 
+    @Query("SELECT * FROM caldav_tasks WHERE cd_task IN (:taskIds)")
+    abstract suspend fun getAllTasks(taskIds: List<Long>): List<CaldavTask>
+
     @Query("""
 SELECT cda_account_type
 FROM caldav_tasks
@@ -331,8 +336,16 @@ SELECT EXISTS(SELECT 1
     @Query("SELECT * FROM caldav_lists WHERE cdl_uuid = :uuid LIMIT 1")
     abstract suspend fun getCalendar(uuid: String): CaldavCalendar?
 
-    @Query("SELECT cd_object FROM caldav_tasks INNER JOIN task_dirty ON cd_id = task_dirty.caldav_task_id WHERE cd_calendar = :calendar AND cd_deleted = 0 AND task_dirty.synced_version > 0")
-    abstract suspend fun getRemoteObjects(calendar: String): List<String>
+    @Query("""
+        SELECT cd_object AS obj,
+               cd_etag AS etag,
+               cd_deleted > 0 AS deleted,
+               COALESCE(task_dirty.synced_version, 0) > 0 AS synced
+        FROM caldav_tasks
+        LEFT JOIN task_dirty ON cd_id = task_dirty.caldav_task_id
+        WHERE cd_calendar = :calendar AND cd_object IS NOT NULL
+    """)
+    abstract suspend fun getObjects(calendar: String): List<CaldavObject>
 
     @Query("SELECT cd_remote_id FROM caldav_tasks INNER JOIN task_dirty ON cd_id = task_dirty.caldav_task_id WHERE cd_calendar = :calendar AND cd_deleted = 0 AND task_dirty.synced_version > 0")
     abstract suspend fun getRemoteIds(calendar: String): List<String>
@@ -386,6 +399,35 @@ GROUP BY caldav_lists.cdl_uuid
     """)
     abstract suspend fun getCaldavFilters(uuid: String, now: Long = currentTimeMillis()): List<CaldavFilters>
 
+    /** The tasks that [getCaldavFilters] counts for each list in an account */
+    @Query("""
+SELECT cd_calendar AS owner, cd_task AS task
+FROM caldav_tasks
+         INNER JOIN caldav_lists ON caldav_lists.cdl_uuid = caldav_tasks.cd_calendar
+         INNER JOIN tasks ON caldav_tasks.cd_task = tasks._id
+WHERE caldav_lists.cdl_account = :uuid
+  AND cd_deleted = 0
+  AND tasks.deleted = 0
+  AND tasks.completed = 0
+  AND tasks.hideUntil < :now
+    """)
+    abstract suspend fun getCountedTasks(uuid: String, now: Long = currentTimeMillis()): List<CountedTask>
+
+    suspend fun getCountedTasks(tasks: List<Long>, now: Long = currentTimeMillis()): List<CountedTask> =
+        tasks.chunkedMap { getCountedTasksInternal(it, now) }
+
+    @Query("""
+SELECT cd_calendar AS owner, cd_task AS task
+FROM caldav_tasks
+         INNER JOIN tasks ON caldav_tasks.cd_task = tasks._id
+WHERE cd_task IN (:tasks)
+  AND cd_deleted = 0
+  AND tasks.deleted = 0
+  AND tasks.completed = 0
+  AND tasks.hideUntil < :now
+    """)
+    internal abstract suspend fun getCountedTasksInternal(tasks: List<Long>, now: Long): List<CountedTask>
+
     suspend fun updateParents(calendar: String? = null, force: Boolean = false) {
         if (calendar == null) {
             updateAllParents(force)
@@ -466,7 +508,7 @@ ORDER BY primary_sort
     @Query("UPDATE tasks SET `order` = :order WHERE _id = :id")
     abstract suspend fun setTaskOrder(id: Long, order: Long?)
 
-    @Query("UPDATE caldav_lists SET cdl_last_sync = 0, cdl_ctag = NULL WHERE cdl_account = :account")
+    @Query("UPDATE caldav_lists SET cdl_last_sync = 0, cdl_ctag = NULL, cdl_sync_token = NULL WHERE cdl_account = :account")
     abstract suspend fun resetLastSync(account: String)
 
     @Insert(onConflict = OnConflictStrategy.REPLACE)
@@ -20,25 +20,13 @@ abstract class DeletionDao(private val database: Database) {
             ids.chunkedMap { internalHasRecurringAncestors(it) }
 
     @Query("""
-WITH RECURSIVE recursive_tasks (descendent, parent, recurring) AS (
-    SELECT _id, parent, 0
-    FROM tasks
-    WHERE _id IN (:ids)
-      AND parent > 0
-    UNION ALL
-    SELECT recursive_tasks.descendent,
-           tasks.parent,
-           CASE
-               WHEN recursive_tasks.recurring THEN 1
-               WHEN recurrence IS NOT NULL AND recurrence != '' AND completed = 0 THEN 1
-               ELSE 0
-               END
-    FROM tasks
-             INNER JOIN recursive_tasks ON recursive_tasks.parent = _id
-)
-SELECT DISTINCT(descendent)
-FROM recursive_tasks
-WHERE recurring = 1
+SELECT DISTINCT(task_hierarchy.descendant)
+FROM task_hierarchy
+         INNER JOIN tasks ON tasks._id = task_hierarchy.ancestor
+WHERE task_hierarchy.descendant IN (:ids)
+  AND tasks.recurrence IS NOT NULL
+  AND tasks.recurrence != ''
+  AND tasks.completed = 0
     """)
     abstract suspend fun internalHasRecurringAncestors(ids: List<Long>): List<Long>
 
@@ -153,6 +153,12 @@ abstract class DirtyDao {
     @Query("SELECT dirty_version > synced_version FROM task_dirty WHERE caldav_task_id = :caldavTaskId")
     abstract suspend fun isDirty(caldavTaskId: Long): Boolean?
 
+    suspend fun getDirty(caldavTaskIds: List<Long>): Set<Long> =
+        caldavTaskIds.chunkedMap { getDirtyInternal(it) }.toSet()
+
+    @Query("SELECT caldav_task_id FROM task_dirty WHERE caldav_task_id IN (:caldavTaskIds) AND dirty_version > synced_version")
+    internal abstract suspend fun getDirtyInternal(caldavTaskIds: List<Long>): List<Long>
+
     @Query("""
         SELECT tasks.*, task_dirty.caldav_task_id, task_dirty.dirty_version, task_dirty.synced_version
         FROM tasks
@@ -13,6 +13,12 @@ import org.tasks.data.entity.CaldavAccount.Companion.TYPE_GOOGLE_TASKS
 import org.tasks.data.entity.CaldavTask
 import org.tasks.data.entity.Task
 
+data class RemotePosition(
+    val id: String,
+    val parent: String?,
+    val position: String,
+)
+
 @Dao
 abstract class GoogleTaskDao(private val database: Database) {
     @Insert
@@ -186,6 +192,13 @@ WHERE cd_remote_id = :id
     """)
     abstract suspend fun updatePosition(id: String, parent: String?, position: String)
 
+    @Transaction
+    open suspend fun updatePositions(caldavDao: CaldavDao, listId: String, positions: List<RemotePosition>) {
+        Logger.d("GoogleTaskDao") { "updatePositions listId=$listId count=${positions.size}" }
+        positions.forEach { updatePosition(it.id, it.parent, it.position) }
+        reposition(caldavDao, listId)
+    }
+
     suspend fun reposition(caldavDao: CaldavDao, listId: String) {
         Logger.d("GoogleTaskDao") { "reposition listId=$listId" }
         caldavDao.updateParents(listId)
@@ -6,11 +6,13 @@ import androidx.room.Insert
 import androidx.room.OnConflictStrategy
 import androidx.room.Query
 import androidx.room.Update
+import org.tasks.data.CountedTask
 import org.tasks.data.Location
 import org.tasks.data.LocationFilters
 import org.tasks.data.MergedGeofence
 import org.tasks.data.NO_ORDER
 import org.tasks.data.PlaceUsage
+import org.tasks.data.db.SuspendDbUtils.chunkedMap
 import org.tasks.data.entity.Alarm.Companion.TYPE_SNOOZE
 import org.tasks.data.entity.Geofence
 import org.tasks.data.entity.Place
@@ -60,6 +62,14 @@ interface LocationDao {
             + " WHERE task = :taskId ORDER BY name ASC LIMIT 1")
     suspend fun getGeofences(taskId: Long): Location?
 
+    suspend fun getGeofences(taskIds: List<Long>): List<Location> =
+        taskIds.chunkedMap { getGeofencesInternal(it) }
+
+    @Query("SELECT * FROM geofences"
+            + " INNER JOIN places ON geofences.place = places.uid"
+            + " WHERE task IN (:taskIds) ORDER BY name ASC")
+    suspend fun getGeofencesInternal(taskIds: List<Long>): List<Location>
+
     @Query("SELECT geofences.*, places.* FROM geofences INNER JOIN places ON geofences.place = places.uid INNER JOIN tasks ON tasks._id = geofences.task WHERE tasks._id = :taskId AND tasks.deleted = 0 AND tasks.completed = 0")
     suspend fun getActiveGeofences(taskId: Long): List<Location>
 
@@ -105,6 +115,9 @@ interface LocationDao {
     @Query("SELECT * FROM geofences WHERE task = :taskId")
     suspend fun getGeofencesForTask(taskId: Long): List<Geofence>
 
+    @Query("SELECT * FROM geofences WHERE task IN (:taskIds)")
+    suspend fun getGeofencesForTasks(taskIds: List<Long>): List<Geofence>
+
     @Query("SELECT * FROM places")
     suspend fun getPlaces(): List<Place>
 
@@ -127,6 +140,20 @@ interface LocationDao {
             + " ORDER BY name COLLATE NOCASE ASC")
     suspend fun getPlaceFilters(now: Long = currentTimeMillis()): List<LocationFilters>
 
+    /** The tasks that [getPlaceFilters] counts for each place */
+    @Query("SELECT geofences.place AS owner, geofences.task AS task FROM geofences"
+            + " INNER JOIN tasks ON geofences.task = tasks._id AND tasks.completed = 0 AND tasks.deleted = 0 AND tasks.hideUntil < :now"
+            + " WHERE geofences.place IS NOT NULL")
+    suspend fun getCountedTasks(now: Long = currentTimeMillis()): List<CountedTask>
+
+    suspend fun getCountedTasks(tasks: List<Long>, now: Long = currentTimeMillis()): List<CountedTask> =
+        tasks.chunkedMap { getCountedTasksInternal(it, now) }
+
+    @Query("SELECT geofences.place AS owner, geofences.task AS task FROM geofences"
+            + " INNER JOIN tasks ON geofences.task = tasks._id AND tasks.completed = 0 AND tasks.deleted = 0 AND tasks.hideUntil < :now"
+            + " WHERE geofences.place IS NOT NULL AND geofences.task IN (:tasks)")
+    suspend fun getCountedTasksInternal(tasks: List<Long>, now: Long): List<CountedTask>
+
     @Query("UPDATE places SET place_order = $NO_ORDER")
     suspend fun resetOrders()
 
@@ -31,6 +31,9 @@ abstract class TagDao(private val database: Database) {
     @Query("SELECT * FROM tags WHERE task = :taskId")
     abstract suspend fun getTagsForTask(taskId: Long): List<Tag>
 
+    @Query("SELECT * FROM tags WHERE task IN (:taskIds)")
+    abstract suspend fun getTagsForTasks(taskIds: List<Long>): List<Tag>
+
     @Query("SELECT * FROM tags WHERE task = :taskId AND tag_uid = :tagUid")
     abstract suspend fun getTagByTaskAndTagUid(taskId: Long, tagUid: String): Tag?
 
@@ -1,5 +1,6 @@
 package org.tasks.data.dao
 
+import androidx.room.ColumnInfo
 import androidx.room.Dao
 import androidx.room.Delete
 import androidx.room.Embedded
@@ -10,10 +11,12 @@ import androidx.room.Transaction
 import androidx.room.Update
 import co.touchlab.kermit.Logger
 import kotlinx.coroutines.flow.Flow
+import org.tasks.data.CountedTask
 import org.tasks.data.NO_ORDER
 import org.tasks.data.TagFilters
 import org.tasks.data.db.Database
 import org.tasks.data.db.DbUtils
+import org.tasks.data.db.SuspendDbUtils.chunkedMap
 import org.tasks.data.db.SuspendDbUtils.eachChunk
 import org.tasks.data.entity.MetadataTombstone
 import org.tasks.data.entity.Tag
@@ -37,6 +40,11 @@ data class TagWithState(
     val dirtyVersion: Long = 0,
 )
 
+data class TaskTagData(
+    @ColumnInfo(name = "task") val task: Long,
+    @Embedded val tagData: TagData,
+)
+
 fun orderedNormalizedNames(tags: List<TagWithState>): List<String> =
     tags.filter { it.tag.isSyncable() && !it.reaped && it.tag.order != NO_ORDER }
         .sortedBy { it.tag.order }
@@ -318,6 +326,15 @@ abstract class TagDataDao(private val database: Database) {
             + "ORDER BY UPPER(tagdata.name) ASC")
     abstract suspend fun getTagDataForTask(id: Long): List<TagData>
 
+    suspend fun getTagDataForTasks(ids: List<Long>): List<TaskTagData> =
+        ids.chunkedMap { getTagDataForTasksInternal(it) }
+
+    @Query("SELECT tags.task, tagdata.* FROM tagdata "
+            + "INNER JOIN tags ON tags.tag_uid = tagdata.remoteId "
+            + "WHERE tags.task IN (:ids) "
+            + "ORDER BY UPPER(tagdata.name) ASC")
+    internal abstract suspend fun getTagDataForTasksInternal(ids: List<Long>): List<TaskTagData>
+
     @Update
     abstract suspend fun update(tagData: TagData)
 
@@ -341,6 +358,20 @@ abstract class TagDataDao(private val database: Database) {
             + " GROUP BY tagdata.remoteId")
     abstract suspend fun getTagFilters(now: Long = currentTimeMillis()): List<TagFilters>
 
+    /** The tasks that [getTagFilters] counts for each tag */
+    @Query("SELECT tags.tag_uid AS owner, tags.task AS task FROM tags"
+            + " INNER JOIN tasks ON tags.task = tasks._id AND tasks.deleted = 0 AND tasks.completed = 0 AND tasks.hideUntil < :now"
+            + " WHERE tags.tag_uid IS NOT NULL")
+    abstract suspend fun getCountedTasks(now: Long = currentTimeMillis()): List<CountedTask>
+
+    suspend fun getCountedTasks(tasks: List<Long>, now: Long = currentTimeMillis()): List<CountedTask> =
+        tasks.chunkedMap { getCountedTasksInternal(it, now) }
+
+    @Query("SELECT tags.tag_uid AS owner, tags.task AS task FROM tags"
+            + " INNER JOIN tasks ON tags.task = tasks._id AND tasks.deleted = 0 AND tasks.completed = 0 AND tasks.hideUntil < :now"
+            + " WHERE tags.tag_uid IS NOT NULL AND tags.task IN (:tasks)")
+    internal abstract suspend fun getCountedTasksInternal(tasks: List<Long>, now: Long): List<CountedTask>
+
     @Query("UPDATE tagdata SET td_order = $NO_ORDER")
     abstract suspend fun resetOrders()
 
@@ -14,6 +14,9 @@ interface TaskAttachmentDao {
     @Query("SELECT * FROM attachment WHERE task = :task")
     suspend fun getAttachmentsForTask(task: Long): List<Attachment>
 
+    @Query("SELECT * FROM attachment WHERE task IN (:tasks)")
+    suspend fun getAttachmentsForTasks(tasks: List<Long>): List<Attachment>
+
     @Query("SELECT attachment_file.* FROM attachment_file INNER JOIN attachment ON attachment_file.file_uuid = attachment.file_uuid WHERE task = :task")
     suspend fun getAttachments(task: Long): List<TaskAttachment>
 
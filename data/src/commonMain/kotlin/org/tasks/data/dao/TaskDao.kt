@@ -108,28 +108,62 @@ FROM (
             + "WHERE completed > 0 AND calendarUri IS NOT NULL AND calendarUri != ''")
     abstract suspend fun clearCompletedCalendarEvents(): Int
 
-    suspend fun fetchTasks(query: String): List<TaskContainer> {
+    suspend fun fetchTasks(query: String): List<TaskContainer> = fetchTasks(query, emptyMap())
+
+    /**
+     * @param args values for numbered bind parameters (`?n`) in [query]. Binding values instead of
+     * inlining them keeps the query text stable, so SQLite can reuse the prepared statement
+     */
+    suspend fun fetchTasks(query: String, args: Map<Int, Any?>): List<TaskContainer> {
         val start = DateTimeUtils2.currentTimeMillis()
-        val result = fetchRaw(RoomRawQuery(query))
+        val result = fetchRaw(rawQuery(query, args))
         val end = DateTimeUtils2.currentTimeMillis()
-        Logger.v("TaskDao") { "${end - start}ms: ${query.replace(WHITESPACE, " ").trim()}" }
+        Logger.v("TaskDao") { "${end - start}ms: ${query.replace(WHITESPACE, " ").trim()} $args" }
         return result
     }
 
     @RawQuery
     internal abstract suspend fun fetchRaw(query: RoomRawQuery): List<TaskContainer>
 
-    suspend fun count(query: String): Int {
+    suspend fun count(query: String): Int = count(query, emptyMap())
+
+    suspend fun count(query: String, args: Map<Int, Any?>): Int {
         val start = DateTimeUtils2.currentTimeMillis()
-        val result = countRaw(RoomRawQuery(query))
+        val result = countRaw(rawQuery(query, args))
         val end = DateTimeUtils2.currentTimeMillis()
-        Logger.v("TaskDao") { "${end - start}ms: ${query.replace(WHITESPACE, " ").trim()}" }
+        Logger.v("TaskDao") { "${end - start}ms: ${query.replace(WHITESPACE, " ").trim()} $args" }
         return result
     }
 
+    private fun rawQuery(query: String, args: Map<Int, Any?>) = if (args.isEmpty()) {
+        RoomRawQuery(query)
+    } else {
+        RoomRawQuery(query) { statement ->
+            args.forEach { (index, value) ->
+                when (value) {
+                    null -> statement.bindNull(index)
+                    is Long -> statement.bindLong(index, value)
+                    is Int -> statement.bindLong(index, value.toLong())
+                    else -> statement.bindText(index, value.toString())
+                }
+            }
+        }
+    }
+
     @RawQuery
     internal abstract suspend fun countRaw(query: RoomRawQuery): Int
 
+    suspend fun fetchIds(query: String, args: Map<Int, Any?>): List<Long> {
+        val start = DateTimeUtils2.currentTimeMillis()
+        val result = fetchIdsRaw(rawQuery(query, args))
+        val end = DateTimeUtils2.currentTimeMillis()
+        Logger.v("TaskDao") { "${end - start}ms: ${query.replace(WHITESPACE, " ").trim()} $args" }
+        return result
+    }
+
+    @RawQuery
+    internal abstract suspend fun fetchIdsRaw(query: RoomRawQuery): List<Long>
+
     suspend fun touch(ids: List<Long>) =
         ids.eachChunk { touchInternal(it) }
 
@@ -148,34 +182,53 @@ FROM (
     @Query("UPDATE tasks SET lastNotified = :timestamp WHERE _id = :id")
     abstract suspend fun setLastNotified(id: Long, timestamp: Long)
 
+    /** Sets lastNotified for every task id in [timestamps], one update per distinct timestamp */
+    @Transaction
+    open suspend fun setLastNotified(timestamps: Map<Long, Long>) {
+        timestamps.entries
+            .groupBy({ it.value }, { it.key })
+            .forEach { (timestamp, ids) -> ids.eachChunk { setLastNotifiedInternal(it, timestamp) } }
+    }
+
+    @Query("UPDATE tasks SET lastNotified = :timestamp WHERE _id IN (:ids)")
+    internal abstract suspend fun setLastNotifiedInternal(ids: List<Long>, timestamp: Long)
+
     suspend fun getChildren(id: Long): List<Long> = getChildren(listOf(id))
 
     @Query("""
-WITH RECURSIVE recursive_tasks (task) AS (
-    SELECT _id
-    FROM tasks
-    WHERE parent IN (:ids)
-    AND deleted = 0
-    UNION ALL
-    SELECT _id
-    FROM tasks
-             INNER JOIN recursive_tasks ON recursive_tasks.task = tasks.parent
-    WHERE tasks.deleted = 0)
-SELECT task
-FROM recursive_tasks
+SELECT task_hierarchy.descendant
+FROM task_hierarchy
+         INNER JOIN tasks ON tasks._id = task_hierarchy.descendant
+WHERE task_hierarchy.ancestor IN (:ids)
+  AND tasks.deleted = 0
+  AND NOT EXISTS (
+    SELECT 1
+    FROM task_hierarchy path
+             INNER JOIN tasks parents ON parents._id = path.ancestor
+    WHERE path.descendant = task_hierarchy.descendant
+      AND path.depth < task_hierarchy.depth
+      AND parents.deleted > 0)
+ORDER BY task_hierarchy.depth
     """)
     abstract suspend fun getChildren(ids: List<Long>): List<Long>
 
     @Query("""
-WITH RECURSIVE recursive_tasks (task, parent) AS (
-    SELECT _id, parent FROM tasks WHERE _id = :parent
-    UNION ALL
-    SELECT _id, tasks.parent FROM tasks
-        INNER JOIN recursive_tasks ON recursive_tasks.parent = tasks._id
-    WHERE tasks.deleted = 0
-)
-SELECT task
-FROM recursive_tasks
+SELECT _id FROM tasks WHERE _id = :parent
+UNION ALL
+SELECT ancestor
+FROM (SELECT task_hierarchy.ancestor
+      FROM task_hierarchy
+               INNER JOIN tasks ON tasks._id = task_hierarchy.ancestor
+      WHERE task_hierarchy.descendant = :parent
+        AND tasks.deleted = 0
+        AND NOT EXISTS (
+          SELECT 1
+          FROM task_hierarchy path
+                   INNER JOIN tasks parents ON parents._id = path.ancestor
+          WHERE path.descendant = :parent
+            AND path.depth < task_hierarchy.depth
+            AND parents.deleted > 0)
+      ORDER BY task_hierarchy.depth)
 """)
     abstract suspend fun getParents(parent: Long): List<Long>
 
@@ -28,16 +28,29 @@ abstract class UserActivityDao {
     @Query("SELECT userActivity.* FROM userActivity INNER JOIN tasks ON tasks._id = :task WHERE target_id = tasks.remoteId")
     abstract suspend fun getComments(task: Long): List<UserActivity>
 
+    @Query("SELECT * FROM userActivity WHERE target_id IN (:taskUuids)")
+    abstract suspend fun getComments(taskUuids: List<String>): List<UserActivity>
+
     @Query("SELECT * FROM userActivity")
     abstract suspend fun getComments(): List<UserActivity>
 
+    @Insert
+    internal abstract suspend fun insert(userActivities: List<UserActivity>)
+
     suspend fun createNew(item: UserActivity) {
-        if (item.created == null || item.created == 0L) {
-            item.created = currentTimeMillis()
+        insert(item.withDefaults())
+    }
+
+    suspend fun createNew(items: List<UserActivity>) {
+        insert(items.map { it.withDefaults() })
+    }
+
+    private fun UserActivity.withDefaults() = apply {
+        if (created == null || created == 0L) {
+            created = currentTimeMillis()
         }
-        if (Task.isUuidEmpty(item.remoteId)) {
-            item.remoteId = UUIDHelper.newUUID()
+        if (Task.isUuidEmpty(remoteId)) {
+            remoteId = UUIDHelper.newUUID()
         }
-        insert(item)
     }
 }
\ No newline at end of file
@@ -0,0 +1,49 @@
+package org.tasks.data.db
+
+import androidx.sqlite.SQLiteConnection
+import androidx.sqlite.execSQL
+import org.tasks.data.entity.Alarm
+import org.tasks.data.entity.AlarmTimeline
+
+/**
+ * Drops alarm_timeline rows when anything they were calculated from changes - the alarm itself, or
+ * the task's dates, completion, deletion, recurrence or last notification
+ */
+object AlarmSchedule {
+    private const val TABLE_NAME = AlarmTimeline.TABLE_NAME
+
+    private fun trigger(name: String, event: String, body: String) = name to """
+        CREATE TRIGGER IF NOT EXISTS `$name`
+        AFTER $event
+        BEGIN
+        $body
+        END
+    """.trimIndent()
+
+    private val TRIGGERS = mapOf(
+        trigger(
+            "alarm_timeline_task_update",
+            "UPDATE OF `dueDate`, `hideUntil`, `created`, `modified`, `completed`, `deleted`, `lastNotified`, `recurrence` ON `tasks`",
+            "DELETE FROM `$TABLE_NAME` WHERE `task` = NEW.`_id`;",
+        ),
+        trigger(
+            "alarm_timeline_task_delete",
+            "DELETE ON `tasks`",
+            "DELETE FROM `$TABLE_NAME` WHERE `task` = OLD.`_id`;",
+        ),
+        trigger(
+            "alarm_timeline_alarm_update",
+            "UPDATE ON `${Alarm.TABLE_NAME}`",
+            "DELETE FROM `$TABLE_NAME` WHERE `alarm` = OLD.`_id`;",
+        ),
+        trigger(
+            "alarm_timeline_alarm_delete",
+            "DELETE ON `${Alarm.TABLE_NAME}`",
+            "DELETE FROM `$TABLE_NAME` WHERE `alarm` = OLD.`_id`;",
+        ),
+    )
+
+    fun create(connection: SQLiteConnection) {
+        TRIGGERS.values.forEach { connection.execSQL(it) }
+    }
+}
@@ -121,9 +121,57 @@ object CommonMigrations {
         }
     }
 
+    val MIGRATION_97_98 = object : Migration(97, 98) {
+        override fun migrate(connection: SQLiteConnection) {
+            TaskSearch.create(connection)
+            TaskSearch.backfill(connection)
+        }
+    }
+
+    val MIGRATION_98_99 = object : Migration(98, 99) {
+        override fun migrate(connection: SQLiteConnection) {
+            connection.execSQL("CREATE TABLE IF NOT EXISTS `task_hierarchy` (`ancestor` INTEGER NOT NULL, `descendant` INTEGER NOT NULL, `depth` INTEGER NOT NULL, PRIMARY KEY(`ancestor`, `descendant`))")
+            connection.execSQL("CREATE INDEX IF NOT EXISTS `index_task_hierarchy_descendant_depth` ON `task_hierarchy` (`descendant`, `depth`)")
+            TaskTree.backfill(connection)
+        }
+    }
+
+    val MIGRATION_99_100 = object : Migration(99, 100) {
+        override fun migrate(connection: SQLiteConnection) {
+            connection.execSQL("CREATE TABLE IF NOT EXISTS `task_rollup` (`task` INTEGER NOT NULL, `child_count` INTEGER NOT NULL, `completed_child_count` INTEGER NOT NULL, `max_hide_until` INTEGER NOT NULL, PRIMARY KEY(`task`))")
+            TaskTree.drop(connection)
+            TaskTree.backfillRollup(connection)
+            TaskTree.create(connection)
+        }
+    }
+
+    val MIGRATION_100_101 = object : Migration(100, 101) {
+        override fun migrate(connection: SQLiteConnection) {
+            connection.execSQL("CREATE INDEX IF NOT EXISTS `index_tasks_dueDate` ON `tasks` (`dueDate`)")
+            connection.execSQL("CREATE INDEX IF NOT EXISTS `index_tasks_modified` ON `tasks` (`modified`)")
+            connection.execSQL("CREATE INDEX IF NOT EXISTS `index_geofences_place` ON `geofences` (`place`)")
+            connection.execSQL("CREATE INDEX IF NOT EXISTS `index_caldav_lists_cdl_uuid` ON `caldav_lists` (`cdl_uuid`)")
+            connection.execSQL("CREATE INDEX IF NOT EXISTS `index_caldav_accounts_cda_uuid` ON `caldav_accounts` (`cda_uuid`)")
+            connection.execSQL("CREATE INDEX IF NOT EXISTS `index_userActivity_target_id` ON `userActivity` (`target_id`)")
+        }
+    }
+
+    val MIGRATION_101_102 = object : Migration(101, 102) {
+        override fun migrate(connection: SQLiteConnection) {
+            connection.execSQL("CREATE TABLE IF NOT EXISTS `alarm_timeline` (`alarm` INTEGER NOT NULL, `task` INTEGER NOT NULL, `type` INTEGER NOT NULL, `next_fire` INTEGER NOT NULL, PRIMARY KEY(`alarm`))")
+            connection.execSQL("CREATE INDEX IF NOT EXISTS `index_alarm_timeline_task` ON `alarm_timeline` (`task`)")
+            connection.execSQL("CREATE INDEX IF NOT EXISTS `index_alarm_timeline_next_fire` ON `alarm_timeline` (`next_fire`)")
+        }
+    }
+
     val all: Array<Migration> = arrayOf(
         MIGRATION_92_93,
         MIGRATION_94_95,
         MIGRATION_95_96,
+        MIGRATION_97_98,
+        MIGRATION_98_99,
+        MIGRATION_99_100,
+        MIGRATION_100_101,
+        MIGRATION_101_102,
     )
 }
@@ -26,6 +26,7 @@ import org.tasks.data.dao.TaskListMetadataDao
 import org.tasks.data.dao.UpgraderDao
 import org.tasks.data.dao.UserActivityDao
 import org.tasks.data.entity.Alarm
+import org.tasks.data.entity.AlarmTimeline
 import org.tasks.data.entity.Attachment
 import org.tasks.data.entity.CaldavAccount
 import org.tasks.data.entity.CaldavCalendar
@@ -43,6 +44,8 @@ import org.tasks.data.entity.TagData
 import org.tasks.data.entity.Task
 import org.tasks.data.entity.TaskAttachment
 import org.tasks.data.entity.TaskDirtyVersion
+import org.tasks.data.entity.TaskHierarchy
+import org.tasks.data.entity.TaskRollup
 import org.tasks.data.entity.TaskListMetadata
 import org.tasks.data.entity.UserActivity
 
@@ -68,14 +71,18 @@ import org.tasks.data.entity.UserActivity
         PrincipalAccess::class,
         Attachment::class,
         TaskDirtyVersion::class,
+        TaskHierarchy::class,
+        TaskRollup::class,
+        AlarmTimeline::class,
     ],
     autoMigrations = [
         AutoMigration(from = 83, to = 84, spec = AutoMigrate83to84::class),
         AutoMigration(from = 88, to = 89, spec = AutoMigrate88to89::class),
         AutoMigration(from = 91, to = 92),
         AutoMigration(from = 93, to = 94, spec = AutoMigrate93to94::class),
+        AutoMigration(from = 96, to = 97),
     ],
-    version = 96
+    version = 102
 )
 abstract class Database : RoomDatabase() {
     abstract fun notificationDao(): NotificationDao
@@ -137,6 +144,9 @@ abstract class Database : RoomDatabase() {
             override fun onOpen(connection: SQLiteConnection) {
                 connection.execSQL(TASK_DIRTY_TRIGGER)
                 connection.execSQL(TAG_METADATA_STATE_CLEANUP_TRIGGER)
+                TaskSearch.create(connection)
+                TaskTree.create(connection)
+                AlarmSchedule.create(connection)
             }
         }
     }
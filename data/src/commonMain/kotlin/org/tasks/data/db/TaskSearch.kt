@@ -0,0 +1,162 @@
+package org.tasks.data.db
+
+import androidx.sqlite.SQLiteConnection
+import androidx.sqlite.execSQL
+
+/**
+ * Full-text index of the text a task can be found by - title, notes, tags, comments, places and
+ * list names. Each row's docid is the task id, and triggers rebuild a task's row whenever any of
+ * that text changes.
+ *
+ * FTS4 rather than FTS5 because the platform SQLite used on Android R+ isn't built with FTS5
+ */
+object TaskSearch {
+    const val TABLE_NAME = "task_search"
+    val TABLE = Table(TABLE_NAME)
+    val DOCID = TABLE.column("docid")
+
+    private val CREATE_TABLE = """
+        CREATE VIRTUAL TABLE IF NOT EXISTS `$TABLE_NAME`
+        USING fts4(`title`, `notes`, `tags`, `comments`, `places`, `lists`, tokenize=unicode61)
+    """.trimIndent()
+
+    private fun insert(tasks: String) = """
+        INSERT INTO `$TABLE_NAME` (`docid`, `title`, `notes`, `tags`, `comments`, `places`, `lists`)
+        SELECT `tasks`.`_id`, `tasks`.`title`, `tasks`.`notes`,
+          (SELECT group_concat(`name`, ' ') FROM `tags` WHERE `tags`.`task` = `tasks`.`_id`),
+          (SELECT group_concat(`message`, ' ') FROM `userActivity` WHERE `target_id` = `tasks`.`remoteId`),
+          (SELECT group_concat(ifnull(`places`.`name`, '') || ' ' || ifnull(`places`.`address`, ''), ' ')
+             FROM `geofences` INNER JOIN `places` ON `places`.`uid` = `geofences`.`place`
+             WHERE `geofences`.`task` = `tasks`.`_id`),
+          (SELECT group_concat(`cdl_name`, ' ')
+             FROM `caldav_tasks` INNER JOIN `caldav_lists` ON `cdl_uuid` = `cd_calendar`
+             WHERE `cd_task` = `tasks`.`_id`)
+        FROM `tasks` WHERE `tasks`.`_id` IN ($tasks)
+    """.trimIndent()
+
+    private fun reindex(tasks: String) = """
+        DELETE FROM `$TABLE_NAME` WHERE `docid` IN ($tasks);
+        ${insert(tasks)};
+    """.trimIndent()
+
+    private fun trigger(name: String, event: String, body: String, `when`: String? = null) = """
+        CREATE TRIGGER IF NOT EXISTS `task_search_$name`
+        AFTER $event
+        ${`when`?.let { "WHEN $it" } ?: ""}
+        BEGIN
+        $body
+        END
+    """.trimIndent()
+
+    private fun byComment(uuids: String) = "SELECT `_id` FROM `tasks` WHERE `remoteId` IN ($uuids)"
+
+    private fun byPlace(uids: String) = "SELECT `task` FROM `geofences` WHERE `place` IN ($uids)"
+
+    private fun byList(uuids: String) =
+        "SELECT `cd_task` FROM `caldav_tasks` WHERE `cd_calendar` IN ($uuids)"
+
+    private val TRIGGERS = listOf(
+        trigger("task_insert", "INSERT ON `tasks`", reindex("NEW.`_id`")),
+        trigger(
+            "task_update",
+            "UPDATE OF `title`, `notes`, `remoteId` ON `tasks`",
+            reindex("NEW.`_id`"),
+            "OLD.`title` IS NOT NEW.`title` OR OLD.`notes` IS NOT NEW.`notes` OR OLD.`remoteId` IS NOT NEW.`remoteId`",
+        ),
+        trigger("task_delete", "DELETE ON `tasks`", "DELETE FROM `$TABLE_NAME` WHERE `docid` = OLD.`_id`;"),
+        trigger("tag_insert", "INSERT ON `tags`", reindex("NEW.`task`")),
+        trigger(
+            "tag_update",
+            "UPDATE OF `name`, `task` ON `tags`",
+            reindex("OLD.`task`, NEW.`task`"),
+            "OLD.`name` IS NOT NEW.`name` OR OLD.`task` IS NOT NEW.`task`",
+        ),
+        trigger("tag_delete", "DELETE ON `tags`", reindex("OLD.`task`")),
+        trigger(
+            "comment_insert",
+            "INSERT ON `userActivity`",
+            reindex(byComment("NEW.`target_id`")),
+        ),
+        trigger(
+            "comment_update",
+            "UPDATE OF `message`, `target_id` ON `userActivity`",
+            reindex(byComment("OLD.`target_id`, NEW.`target_id`")),
+            "OLD.`message` IS NOT NEW.`message` OR OLD.`target_id` IS NOT NEW.`target_id`",
+        ),
+        trigger(
+            "comment_delete",
+            "DELETE ON `userActivity`",
+            reindex(byComment("OLD.`target_id`")),
+        ),
+        trigger("geofence_insert", "INSERT ON `geofences`", reindex("NEW.`task`")),
+        trigger(
+            "geofence_update",
+            "UPDATE OF `place`, `task` ON `geofences`",
+            reindex("OLD.`task`, NEW.`task`"),
+            "OLD.`place` IS NOT NEW.`place` OR OLD.`task` IS NOT NEW.`task`",
+        ),
+        trigger("geofence_delete", "DELETE ON `geofences`", reindex("OLD.`task`")),
+        trigger(
+            "place_update",
+            "UPDATE OF `name`, `address`, `uid` ON `places`",
+            reindex(byPlace("OLD.`uid`, NEW.`uid`")),
+            "OLD.`name` IS NOT NEW.`name` OR OLD.`address` IS NOT NEW.`address` OR OLD.`uid` IS NOT NEW.`uid`",
+        ),
+        trigger("place_delete", "DELETE ON `places`", reindex(byPlace("OLD.`uid`"))),
+        trigger("caldav_task_insert", "INSERT ON `caldav_tasks`", reindex("NEW.`cd_task`")),
+        trigger(
+            "caldav_task_update",
+            "UPDATE OF `cd_calendar`, `cd_task` ON `caldav_tasks`",
+            reindex("OLD.`cd_task`, NEW.`cd_task`"),
+            "OLD.`cd_calendar` IS NOT NEW.`cd_calendar` OR OLD.`cd_task` IS NOT NEW.`cd_task`",
+        ),
+        trigger("caldav_task_delete", "DELETE ON `caldav_tasks`", reindex("OLD.`cd_task`")),
+        trigger(
+            "list_update",
+            "UPDATE OF `cdl_name`, `cdl_uuid` ON `caldav_lists`",
+            reindex(byList("OLD.`cdl_uuid`, NEW.`cdl_uuid`")),
+            "OLD.`cdl_name` IS NOT NEW.`cdl_name` OR OLD.`cdl_uuid` IS NOT NEW.`cdl_uuid`",
+        ),
+        trigger(
+            "list_delete",
+            "DELETE ON `caldav_lists`",
+            reindex(byList("OLD.`cdl_uuid`")),
+        ),
+    )
+
+    fun create(connection: SQLiteConnection) {
+        connection.execSQL(CREATE_TABLE)
+        TRIGGERS.forEach { connection.execSQL(it) }
+    }
+
+    fun backfill(connection: SQLiteConnection) {
+        connection.execSQL("DELETE FROM `$TABLE_NAME`")
+        connection.execSQL(insert("SELECT `_id` FROM `tasks`"))
+    }
+
+    /**
+     * A MATCH expression that finds words starting with each word of [query], or null if the
+     * query has no words. Punctuation is dropped - the tokenizer splits on it anyway, and it
+     * keeps FTS operators and quotes out of the expression.
+     */
+    fun matchQuery(query: String): String? =
+        words(query)
+            .takeIf { it.isNotEmpty() }
+            ?.joinToString(" ") { "\"$it*\"" }
+
+    /**
+     * True when everything [query] matches is also matched by [previous] - each word of the
+     * previous query has been extended, and new words may have been added after them
+     */
+    fun isRefinement(previous: String, query: String): Boolean {
+        val before = words(previous)
+        val after = words(query)
+        return before.isNotEmpty() &&
+                before.size <= after.size &&
+                before.indices.all { after[it].startsWith(before[it], ignoreCase = true) }
+    }
+
+    private fun words(query: String) = query.split(WORD_SEPARATOR).filter { it.isNotEmpty() }
+
+    private val WORD_SEPARATOR = Regex("[^\\p{L}\\p{N}]+")
+}
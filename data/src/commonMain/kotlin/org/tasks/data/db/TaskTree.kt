@@ -0,0 +1,158 @@
+package org.tasks.data.db
+
+import androidx.sqlite.SQLiteConnection
+import androidx.sqlite.execSQL
+import org.tasks.data.entity.TaskHierarchy
+import org.tasks.data.entity.TaskRollup
+
+/**
+ * Keeps the task_hierarchy closure table in step with `tasks.parent`, so subtask queries can look
+ * up every ancestor or descendant of a task without walking the tree. The task_rollup totals of a
+ * task's ancestors are recounted whenever it moves, or is completed, deleted or hidden.
+ *
+ * A parent that would make a task its own ancestor isn't linked, so the closure stays acyclic even
+ * when `tasks.parent` isn't
+ */
+object TaskTree {
+    private const val TABLE_NAME = TaskHierarchy.TABLE_NAME
+    private const val ROLLUP = TaskRollup.TABLE_NAME
+
+    private fun link(task: String, parent: String) = """
+        INSERT OR REPLACE INTO `$TABLE_NAME` (`ancestor`, `descendant`, `depth`)
+        SELECT `up`.`ancestor`, `down`.`descendant`, `up`.`depth` + `down`.`depth` + 1
+        FROM (
+          SELECT $parent AS `ancestor`, 0 AS `depth`
+          UNION ALL
+          SELECT `ancestor`, `depth` FROM `$TABLE_NAME` WHERE `descendant` = $parent
+        ) AS `up`, (
+          SELECT $task AS `descendant`, 0 AS `depth`
+          UNION ALL
+          SELECT `descendant`, `depth` FROM `$TABLE_NAME` WHERE `ancestor` = $task
+        ) AS `down`
+        WHERE $parent > 0
+          AND $parent != $task
+          AND $parent NOT IN (SELECT `descendant` FROM `$TABLE_NAME` WHERE `ancestor` = $task);
+    """.trimIndent()
+
+    private fun unlink(task: String) = """
+        DELETE FROM `$TABLE_NAME`
+        WHERE `ancestor` IN (SELECT `ancestor` FROM `$TABLE_NAME` WHERE `descendant` = $task)
+          AND (`descendant` = $task OR `descendant` IN (SELECT `descendant` FROM `$TABLE_NAME` WHERE `ancestor` = $task));
+    """.trimIndent()
+
+    private fun ancestors(task: String) =
+        "SELECT `ancestor` FROM `$TABLE_NAME` WHERE `descendant` = $task"
+
+    private fun recount(tasks: String) = """
+        INSERT INTO `$ROLLUP` (`task`, `child_count`, `completed_child_count`, `max_hide_until`)
+        SELECT `$TABLE_NAME`.`ancestor`,
+          COUNT(*),
+          COUNT(CASE WHEN `tasks`.`completed` > 0 THEN 1 END),
+          MAX(`tasks`.`hideUntil`)
+        FROM `$TABLE_NAME`
+        INNER JOIN `tasks` ON `tasks`.`_id` = `$TABLE_NAME`.`descendant`
+        WHERE `$TABLE_NAME`.`ancestor` IN ($tasks)
+          AND `tasks`.`deleted` = 0
+          AND NOT EXISTS (
+            SELECT 1 FROM `$TABLE_NAME` AS `path`
+            INNER JOIN `tasks` AS `parents` ON `parents`.`_id` = `path`.`ancestor`
+            WHERE `path`.`descendant` = `$TABLE_NAME`.`descendant`
+              AND `path`.`depth` < `$TABLE_NAME`.`depth`
+              AND `parents`.`deleted` > 0
+          )
+        GROUP BY `$TABLE_NAME`.`ancestor`
+    """.trimIndent()
+
+    private fun rollup(tasks: String) = """
+        DELETE FROM `$ROLLUP` WHERE `task` IN ($tasks);
+        ${recount(tasks)};
+    """.trimIndent()
+
+    private fun trigger(name: String, event: String, body: String, `when`: String? = null) = name to """
+        CREATE TRIGGER IF NOT EXISTS `$name`
+        AFTER $event
+        ${`when`?.let { "WHEN $it" } ?: ""}
+        BEGIN
+        $body
+        END
+    """.trimIndent()
+
+    private val TRIGGERS = mapOf(
+        trigger(
+            "task_hierarchy_insert",
+            "INSERT ON `tasks`",
+            link("NEW.`_id`", "NEW.`parent`") + "\n" + rollup(ancestors("NEW.`_id`")),
+            "NEW.`parent` > 0",
+        ),
+        trigger(
+            "task_hierarchy_update",
+            "UPDATE OF `parent` ON `tasks`",
+            listOf(
+                unlink("NEW.`_id`"),
+                link("NEW.`_id`", "NEW.`parent`"),
+                rollup("SELECT OLD.`parent` UNION ${ancestors("OLD.`parent`")} UNION ${ancestors("NEW.`_id`")}"),
+            ).joinToString("\n"),
+            "OLD.`parent` IS NOT NEW.`parent`",
+        ),
+        trigger(
+            "task_hierarchy_delete",
+            "DELETE ON `tasks`",
+            listOf(
+                unlink("OLD.`_id`"),
+                "DELETE FROM `$TABLE_NAME` WHERE `ancestor` = OLD.`_id` OR `descendant` = OLD.`_id`;",
+                "DELETE FROM `$ROLLUP` WHERE `task` = OLD.`_id`;",
+                rollup("SELECT OLD.`parent` UNION ${ancestors("OLD.`parent`")}"),
+            ).joinToString("\n"),
+        ),
+        trigger(
+            "task_rollup_update",
+            "UPDATE OF `completed`, `deleted`, `hideUntil` ON `tasks`",
+            rollup(ancestors("NEW.`_id`")),
+            "OLD.`completed` IS NOT NEW.`completed` OR OLD.`deleted` IS NOT NEW.`deleted` OR OLD.`hideUntil` IS NOT NEW.`hideUntil`",
+        ),
+    )
+
+    /**
+     * Walks down from every task that isn't a subtask, so tasks caught in a parent cycle - and
+     * their subtasks - are left out like the triggers would leave them
+     */
+    private val BACKFILL = """
+        INSERT OR REPLACE INTO `$TABLE_NAME` (`ancestor`, `descendant`, `depth`)
+        WITH RECURSIVE `tree` (`task`) AS (
+          SELECT `_id` FROM `tasks`
+          WHERE `parent` = 0 OR `parent` = `_id` OR `parent` NOT IN (SELECT `_id` FROM `tasks`)
+          UNION ALL
+          SELECT `tasks`.`_id` FROM `tasks`
+          INNER JOIN `tree` ON `tasks`.`parent` = `tree`.`task`
+          WHERE `tasks`.`parent` != `tasks`.`_id`
+        ), `closure` (`ancestor`, `descendant`, `depth`) AS (
+          SELECT `task`, `task`, 0 FROM `tree`
+          UNION ALL
+          SELECT `parent`, `_id`, 1 FROM `tasks`
+          WHERE `parent` > 0 AND `parent` != `_id` AND `parent` NOT IN (SELECT `_id` FROM `tasks`)
+          UNION ALL
+          SELECT `closure`.`ancestor`, `tasks`.`_id`, `closure`.`depth` + 1 FROM `tasks`
+          INNER JOIN `closure` ON `tasks`.`parent` = `closure`.`descendant`
+          WHERE `tasks`.`parent` != `tasks`.`_id`
+        )
+        SELECT `ancestor`, `descendant`, `depth` FROM `closure` WHERE `depth` > 0
+    """.trimIndent()
+
+    fun create(connection: SQLiteConnection) {
+        TRIGGERS.values.forEach { connection.execSQL(it) }
+    }
+
+    fun drop(connection: SQLiteConnection) {
+        TRIGGERS.keys.forEach { connection.execSQL("DROP TRIGGER IF EXISTS `$it`") }
+    }
+
+    fun backfill(connection: SQLiteConnection) {
+        connection.execSQL("DELETE FROM `$TABLE_NAME`")
+        connection.execSQL(BACKFILL)
+    }
+
+    fun backfillRollup(connection: SQLiteConnection) {
+        connection.execSQL("DELETE FROM `$ROLLUP`")
+        connection.execSQL(recount("SELECT DISTINCT `ancestor` FROM `$TABLE_NAME`"))
+    }
+}
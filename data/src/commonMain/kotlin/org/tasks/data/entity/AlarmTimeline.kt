@@ -0,0 +1,32 @@
+package org.tasks.data.entity
+
+import androidx.room.ColumnInfo
+import androidx.room.Entity
+import androidx.room.PrimaryKey
+import org.tasks.data.db.Table
+
+/**
+ * When each alarm of an active task fires next, or 0 if it won't. Rows are dropped by triggers
+ * whenever the alarm or its task changes, see [org.tasks.data.db.AlarmSchedule], and an alarm
+ * without a row is recalculated before alarms are triggered
+ */
+@Entity(tableName = "alarm_timeline")
+data class AlarmTimeline(
+    @PrimaryKey
+    @ColumnInfo(name = "alarm")
+    val alarm: Long,
+    @ColumnInfo(name = "task", index = true)
+    val task: Long,
+    @ColumnInfo(name = "type")
+    val type: Int,
+    @ColumnInfo(name = "next_fire", index = true)
+    val nextFire: Long,
+) {
+    companion object {
+        const val TABLE_NAME = "alarm_timeline"
+        val TABLE = Table(TABLE_NAME)
+        val ALARM = TABLE.column("alarm")
+        val TASK = TABLE.column("task")
+        val NEXT_FIRE = TABLE.column("next_fire")
+    }
+}
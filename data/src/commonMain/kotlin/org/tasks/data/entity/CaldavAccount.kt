@@ -18,7 +18,7 @@ data class CaldavAccount(
     @ColumnInfo(name = "cda_id")
     @Transient
     val id: Long = 0,
-    @ColumnInfo(name = "cda_uuid")
+    @ColumnInfo(name = "cda_uuid", index = true)
     val uuid: String? = Task.NO_UUID,
     @Redacted
     @ColumnInfo(name = "cda_name")
@@ -19,7 +19,7 @@ data class CaldavCalendar(
     @Transient
     @ColumnInfo(name = "cdl_id") var id: Long = 0,
     @ColumnInfo(name = "cdl_account") val account: String? = Task.NO_UUID,
-    @ColumnInfo(name = "cdl_uuid") var uuid: String? = Task.NO_UUID,
+    @ColumnInfo(name = "cdl_uuid", index = true) var uuid: String? = Task.NO_UUID,
     @Redacted
     @ColumnInfo(name = "cdl_name") var name: String? = "",
     @ColumnInfo(name = "cdl_color") var color: Int = 0,
@@ -30,6 +30,7 @@ data class CaldavCalendar(
     @ColumnInfo(name = "cdl_order") val order: Int = NO_ORDER,
     @ColumnInfo(name = "cdl_access") var access: Int = ACCESS_OWNER,
     @ColumnInfo(name = "cdl_last_sync") val lastSync: Long = 0,
+    @ColumnInfo(name = "cdl_sync_token") var syncToken: String? = null,
 ) : CommonParcelable {
     companion object {
         const val ACCESS_UNKNOWN = -1
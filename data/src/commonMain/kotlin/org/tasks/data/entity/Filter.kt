@@ -12,7 +12,7 @@ import org.tasks.data.Redacted
 
 @Serializable
 @CommonParcelize
-@Entity(tableName = "filters")
+@Entity(tableName = Filter.TABLE_NAME)
 data class Filter(
     @PrimaryKey(autoGenerate = true)
     @ColumnInfo(name = "_id")
@@ -36,4 +36,8 @@ data class Filter(
     val icon: String? = null,
     @ColumnInfo(name = "f_order")
     val order: Int = NO_ORDER,
-) : CommonParcelable
+) : CommonParcelable {
+    companion object {
+        const val TABLE_NAME = "filters"
+    }
+}
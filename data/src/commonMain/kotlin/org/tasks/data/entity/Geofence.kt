@@ -31,7 +31,7 @@ data class Geofence(
     @ColumnInfo(name = "task", index = true)
     @Transient
     val task: Long = 0,
-    @ColumnInfo(name = "place")
+    @ColumnInfo(name = "place", index = true)
     val place: String? = null,
     @ColumnInfo(name = "arrival")
     val isArrival: Boolean = false,
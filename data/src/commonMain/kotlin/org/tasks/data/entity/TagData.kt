@@ -16,7 +16,7 @@ import org.tasks.data.UUIDHelper
 @CommonParcelize
 @Serializable
 @Entity(
-    tableName = "tagdata",
+    tableName = TagData.TABLE_NAME,
     indices = [Index(value = ["normalized_name"], unique = true)],
 )
 data class TagData(
@@ -45,6 +45,8 @@ data class TagData(
         internal set
 
     companion object {
+        const val TABLE_NAME = "tagdata"
+
         /** Locale-invariant fold used everywhere the normalized name is computed. */
         fun normalize(name: String?): String = (name ?: "").trim().lowercase()
     }
@@ -32,6 +32,8 @@ const val SYNC_ALARMS = "sync_alarms"
             Index(name = "t_rid", value = ["remoteId"], unique = true),
             Index(name = "active_and_visible", value = ["completed", "deleted", "hideUntil"]),
             Index(value = ["parent"]),
+            Index(value = ["dueDate"]),
+            Index(value = ["modified"]),
         ])
 data class Task @OptIn(ExperimentalSerializationApi::class) constructor(
     @PrimaryKey(autoGenerate = true)
@@ -0,0 +1,29 @@
+package org.tasks.data.entity
+
+import androidx.room.ColumnInfo
+import androidx.room.Entity
+import androidx.room.Index
+import org.tasks.data.db.Table
+
+/**
+ * One row for every ancestor of every subtask, [depth] levels up. Maintained by triggers on
+ * `tasks.parent`, see [org.tasks.data.db.TaskTree]
+ */
+@Entity(
+    tableName = "task_hierarchy",
+    primaryKeys = ["ancestor", "descendant"],
+    indices = [Index(value = ["descendant", "depth"])],
+)
+data class TaskHierarchy(
+    @ColumnInfo(name = "ancestor") val ancestor: Long,
+    @ColumnInfo(name = "descendant") val descendant: Long,
+    @ColumnInfo(name = "depth") val depth: Int,
+) {
+    companion object {
+        const val TABLE_NAME = "task_hierarchy"
+        val TABLE = Table(TABLE_NAME)
+        val ANCESTOR = TABLE.column("ancestor")
+        val DESCENDANT = TABLE.column("descendant")
+        val DEPTH = TABLE.column("depth")
+    }
+}
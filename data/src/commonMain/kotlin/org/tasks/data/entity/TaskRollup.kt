@@ -0,0 +1,32 @@
+package org.tasks.data.entity
+
+import androidx.room.ColumnInfo
+import androidx.room.Entity
+import androidx.room.PrimaryKey
+import org.tasks.data.db.Table
+
+/**
+ * Subtask totals for every task that has subtasks, counting descendants that aren't deleted or
+ * below a deleted task. Maintained by triggers, see [org.tasks.data.db.TaskTree]
+ */
+@Entity(tableName = "task_rollup")
+data class TaskRollup(
+    @PrimaryKey
+    @ColumnInfo(name = "task")
+    val task: Long,
+    @ColumnInfo(name = "child_count")
+    val childCount: Int,
+    @ColumnInfo(name = "completed_child_count")
+    val completedChildCount: Int,
+    @ColumnInfo(name = "max_hide_until")
+    val maxHideUntil: Long,
+) {
+    companion object {
+        const val TABLE_NAME = "task_rollup"
+        val TABLE = Table(TABLE_NAME)
+        val TASK = TABLE.column("task")
+        val CHILD_COUNT = TABLE.column("child_count")
+        val COMPLETED_CHILD_COUNT = TABLE.column("completed_child_count")
+        val MAX_HIDE_UNTIL = TABLE.column("max_hide_until")
+    }
+}
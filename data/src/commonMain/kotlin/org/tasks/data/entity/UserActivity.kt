@@ -25,7 +25,7 @@ data class UserActivity(
     var message: String? = "",
     @ColumnInfo(name = "picture")
     var picture: String? = "",
-    @ColumnInfo(name = "target_id")
+    @ColumnInfo(name = "target_id", index = true)
     @Transient
     var targetId: String? = Task.NO_UUID,
     @ColumnInfo(name = "created_at")
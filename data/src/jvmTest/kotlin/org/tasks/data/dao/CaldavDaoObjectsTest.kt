@@ -0,0 +1,95 @@
+package org.tasks.data.dao
+
+import androidx.room.Room
+import androidx.sqlite.driver.bundled.BundledSQLiteDriver
+import kotlinx.coroutines.runBlocking
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Before
+import org.junit.Test
+import org.tasks.data.CaldavObject
+import org.tasks.data.db.Database
+import org.tasks.data.entity.CaldavTask
+import org.tasks.data.entity.Task
+
+class CaldavDaoObjectsTest {
+    private lateinit var db: Database
+    private lateinit var taskDao: TaskDao
+    private lateinit var caldavDao: CaldavDao
+    private lateinit var dirtyDao: DirtyDao
+
+    @Before
+    fun setUp() {
+        db = Room.inMemoryDatabaseBuilder<Database>()
+            .setDriver(BundledSQLiteDriver())
+            .addCallback(Database.CALLBACK)
+            .build()
+        taskDao = db.taskDao()
+        caldavDao = db.caldavDao()
+        dirtyDao = db.dirtyDao()
+    }
+
+    @After
+    fun tearDown() {
+        db.close()
+    }
+
+    private suspend fun insertCaldavTask(
+        remoteId: String,
+        etag: String? = null,
+        synced: Boolean = true,
+        deleted: Long = 0L,
+        calendar: String = CALENDAR,
+    ) {
+        val task = Task()
+        taskDao.createNew(task)
+        val ctId = caldavDao.insert(
+            CaldavTask(
+                task = task.id,
+                calendar = calendar,
+                remoteId = remoteId,
+                etag = etag,
+                deleted = deleted,
+            )
+        )
+        if (synced) {
+            dirtyDao.markSynced(ctId)
+        }
+    }
+
+    @Test
+    fun returnsObjectAndEtag() = runBlocking {
+        insertCaldavTask(remoteId = "task-1", etag = "etag-1")
+
+        assertEquals(
+            listOf(CaldavObject(obj = "task-1.ics", etag = "etag-1", deleted = false, synced = true)),
+            caldavDao.getObjects(CALENDAR)
+        )
+    }
+
+    @Test
+    fun includesUnsyncedAndDeleted() = runBlocking {
+        insertCaldavTask(remoteId = "unsynced", synced = false)
+        insertCaldavTask(remoteId = "deleted", deleted = 1L)
+
+        assertEquals(
+            setOf(
+                CaldavObject(obj = "unsynced.ics", etag = null, deleted = false, synced = false),
+                CaldavObject(obj = "deleted.ics", etag = null, deleted = true, synced = true),
+            ),
+            caldavDao.getObjects(CALENDAR).toSet()
+        )
+    }
+
+    @Test
+    fun filtersPerCalendar() = runBlocking {
+        insertCaldavTask(remoteId = "a-1", calendar = "calendar-a")
+        insertCaldavTask(remoteId = "b-1", calendar = "calendar-b")
+
+        assertEquals(listOf("a-1.ics"), caldavDao.getObjects("calendar-a").map { it.obj })
+    }
+
+    companion object {
+        private const val CALENDAR = "test-calendar"
+    }
+}
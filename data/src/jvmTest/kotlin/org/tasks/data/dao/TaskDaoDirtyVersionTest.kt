@@ -61,6 +61,22 @@ class TaskDaoDirtyVersionTest {
         assertEquals(true, dirtyDao.isDirty(ctId))
     }
 
+    @Test
+    fun getDirtyExcludesSynced() = runBlocking {
+        val (_, dirty) = createTaskWithCaldavTask()
+        val (_, synced) = createTaskWithCaldavTask()
+        dirtyDao.markSynced(synced)
+
+        assertEquals(setOf(dirty), dirtyDao.getDirty(listOf(dirty, synced)))
+    }
+
+    @Test
+    fun getDirtyIgnoresMissingRows() = runBlocking {
+        val (_, local) = createTaskWithCaldavTask(accountType = TYPE_LOCAL)
+
+        assertEquals(emptySet<Long>(), dirtyDao.getDirty(listOf(local)))
+    }
+
     @Test
     fun triggerSkipsLocalAccount() = runBlocking {
         val (_, ctId) = createTaskWithCaldavTask(accountType = TYPE_LOCAL)
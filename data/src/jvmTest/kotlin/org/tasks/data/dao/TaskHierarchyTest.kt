@@ -0,0 +1,105 @@
+package org.tasks.data.dao
+
+import androidx.room.Room
+import androidx.sqlite.driver.bundled.BundledSQLiteDriver
+import kotlinx.coroutines.runBlocking
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Before
+import org.junit.Test
+import org.tasks.data.db.Database
+import org.tasks.data.entity.Task
+
+class TaskHierarchyTest {
+    private lateinit var db: Database
+    private lateinit var taskDao: TaskDao
+    private lateinit var deletionDao: DeletionDao
+
+    @Before
+    fun setUp() {
+        db = Room.inMemoryDatabaseBuilder<Database>()
+            .setDriver(BundledSQLiteDriver())
+            .addCallback(Database.CALLBACK)
+            .build()
+        taskDao = db.taskDao()
+        deletionDao = db.deletionDao()
+    }
+
+    @After
+    fun tearDown() {
+        db.close()
+    }
+
+    private suspend fun newTask(parent: Long = 0, recurrence: String? = null) =
+        taskDao.createNew(Task(parent = parent, recurrence = recurrence))
+
+    @Test
+    fun childrenAndParents() = runBlocking {
+        val a = newTask()
+        val b = newTask(parent = a)
+        val c = newTask(parent = b)
+
+        assertEquals(listOf(b, c), taskDao.getChildren(a))
+        assertEquals(listOf(c, b, a), taskDao.getParents(c))
+    }
+
+    @Test
+    fun reparentMovesSubtree() = runBlocking {
+        val a = newTask()
+        val b = newTask(parent = a)
+        val c = newTask(parent = b)
+        val d = newTask()
+
+        taskDao.setParent(d, listOf(b))
+
+        assertEquals(emptyList<Long>(), taskDao.getChildren(a))
+        assertEquals(listOf(b, c), taskDao.getChildren(d))
+        assertEquals(listOf(c, b, d), taskDao.getParents(c))
+    }
+
+    @Test
+    fun cycleIsNotLinked() = runBlocking {
+        val a = newTask()
+        val b = newTask(parent = a)
+
+        taskDao.setParent(b, listOf(a))
+
+        assertEquals(listOf(b), taskDao.getChildren(a))
+        assertEquals(emptyList<Long>(), taskDao.getChildren(b))
+    }
+
+    @Test
+    fun deleteDropsTask() = runBlocking {
+        val a = newTask()
+        val b = newTask(parent = a)
+        val c = newTask(parent = b)
+
+        deletionDao.delete(listOf(b)) {}
+
+        assertEquals(emptyList<Long>(), taskDao.getChildren(a))
+        assertEquals(listOf(c), taskDao.getParents(c))
+    }
+
+    @Test
+    fun skipSubtasksOfDeletedTasks() = runBlocking {
+        val a = newTask()
+        val b = newTask(parent = a)
+        val c = newTask(parent = b)
+
+        deletionDao.markDeleted(listOf(b)) {}
+
+        assertEquals(emptyList<Long>(), taskDao.getChildren(a))
+        assertEquals(listOf(c), taskDao.getChildren(b))
+        assertEquals(listOf(c), taskDao.getParents(c))
+    }
+
+    @Test
+    fun recurringAncestor() = runBlocking {
+        val a = newTask(recurrence = "FREQ=DAILY")
+        val b = newTask(parent = a)
+        val c = newTask(parent = b)
+        val d = newTask()
+
+        assertEquals(listOf(b, c), deletionDao.hasRecurringAncestors(listOf(b, c, d)).sorted())
+    }
+}
@@ -190,13 +190,75 @@ class CommonMigrationsTest {
         }
     }
 
-    private fun SQLiteConnection.insertTask(id: Long, modified: Long = 0) {
+    @Test
+    fun backfillsTaskSearch() {
+        migrate(97, 98, CommonMigrations.MIGRATION_97_98) {
+            insertTask(100)
+            insertTask(200)
+            execSQL("UPDATE `tasks` SET `title` = 'Buy groceries' WHERE `_id` = 100")
+            insertJoin(1, task = 200, tagUid = "uuid-1", name = "Errands")
+        }.use { db ->
+            assertEquals(listOf(100L), db.search("groc*"))
+            assertEquals(listOf(200L), db.search("errand*"))
+        }
+    }
+
+    private fun SQLiteConnection.insertTask(id: Long, modified: Long = 0, parent: Long = 0) {
         execSQL(
             "INSERT INTO `tasks` (`_id`, `importance`, `dueDate`, `hideUntil`, `created`, `modified`, `completed`, `deleted`, `estimatedSeconds`, `elapsedSeconds`, `timerStart`, `notificationFlags`, `lastNotified`, `collapsed`, `parent`) " +
-                "VALUES ($id, 0, 0, 0, 0, $modified, 0, 0, 0, 0, 0, 0, 0, 0, 0)"
+                "VALUES ($id, 0, 0, 0, 0, $modified, 0, 0, 0, 0, 0, 0, 0, 0, $parent)"
         )
     }
 
+    @Test
+    fun backfillsTaskHierarchy() {
+        migrate(98, 99, CommonMigrations.MIGRATION_98_99) {
+            insertTask(1)
+            insertTask(2, parent = 1)
+            insertTask(3, parent = 2)
+            insertTask(4, parent = 5)
+            insertTask(5, parent = 4)
+        }.use { db ->
+            assertEquals(
+                listOf(Triple(1L, 2L, 1L), Triple(1L, 3L, 2L), Triple(2L, 3L, 1L)),
+                db.hierarchyRows(),
+            )
+        }
+    }
+
+    @Test
+    fun backfillsTaskRollup() {
+        migrate(99, 100, CommonMigrations.MIGRATION_99_100) {
+            insertTask(1)
+            insertTask(2, parent = 1)
+            insertTask(3, parent = 2)
+            execSQL("INSERT INTO `task_hierarchy` VALUES (1, 2, 1), (1, 3, 2), (2, 3, 1)")
+        }.use { db ->
+            assertEquals(listOf(1L to 2L, 2L to 1L), db.rollupRows())
+            db.execSQL("UPDATE `tasks` SET `parent` = 0 WHERE `_id` = 2")
+            assertEquals(listOf(Triple(2L, 3L, 1L)), db.hierarchyRows())
+            assertEquals(listOf(2L to 1L), db.rollupRows())
+        }
+    }
+
+    @Test
+    fun createsListQueryIndexes() {
+        migrate(100, 101, CommonMigrations.MIGRATION_100_101) {
+            insertTask(1)
+        }.use { db ->
+            assertEquals(1, db.rowCount("tasks"))
+        }
+    }
+
+    @Test
+    fun createsEmptyAlarmTimeline() {
+        migrate(101, 102, CommonMigrations.MIGRATION_101_102) {
+            insertTask(1)
+        }.use { db ->
+            assertEquals(0, db.rowCount("alarm_timeline"))
+        }
+    }
+
     private fun SQLiteConnection.insertAccount(id: Long, uuid: String, type: Int) {
         prepare("INSERT INTO `caldav_accounts` (`cda_id`, `cda_uuid`, `cda_account_type`, `cda_collapsed`, `cda_server_type`) VALUES (?, ?, ?, 0, 0)")
             .use {
@@ -243,6 +305,31 @@ class CommonMigrationsTest {
         }
     }
 
+    private fun SQLiteConnection.hierarchyRows(): List<Triple<Long, Long, Long>> = buildList {
+        prepare("SELECT `ancestor`, `descendant`, `depth` FROM `task_hierarchy` ORDER BY `ancestor`, `descendant`").use {
+            while (it.step()) {
+                add(Triple(it.getLong(0), it.getLong(1), it.getLong(2)))
+            }
+        }
+    }
+
+    private fun SQLiteConnection.rollupRows(): List<Pair<Long, Long>> = buildList {
+        prepare("SELECT `task`, `child_count` FROM `task_rollup` ORDER BY `task`").use {
+            while (it.step()) {
+                add(it.getLong(0) to it.getLong(1))
+            }
+        }
+    }
+
+    private fun SQLiteConnection.search(match: String): List<Long> = buildList {
+        prepare("SELECT `docid` FROM `task_search` WHERE `task_search` MATCH ? ORDER BY `docid`").use {
+            it.bindText(1, match)
+            while (it.step()) {
+                add(it.getLong(0))
+            }
+        }
+    }
+
     private fun SQLiteConnection.rowCount(table: String): Int {
         prepare("SELECT COUNT(*) FROM `$table`").use { return if (it.step()) it.getLong(0).toInt() else 0 }
     }
@@ -0,0 +1,42 @@
+package org.tasks.data.db
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class TaskSearchTest {
+    @Test
+    fun matchWordPrefixes() {
+        assertEquals("\"buy*\" \"milk*\"", TaskSearch.matchQuery("buy milk"))
+    }
+
+    @Test
+    fun dropOperatorsAndQuotes() {
+        assertEquals("\"a*\" \"b*\"", TaskSearch.matchQuery("\"a\" -b*"))
+    }
+
+    @Test
+    fun noWords() {
+        assertNull(TaskSearch.matchQuery("#!"))
+    }
+
+    @Test
+    fun extendedWordIsRefinement() {
+        assertTrue(TaskSearch.isRefinement("meet", "meeti"))
+        assertTrue(TaskSearch.isRefinement("Meet", "meeting notes"))
+    }
+
+    @Test
+    fun changedWordIsNotRefinement() {
+        assertFalse(TaskSearch.isRefinement("meeti", "meet"))
+        assertFalse(TaskSearch.isRefinement("meet", "greet"))
+        assertFalse(TaskSearch.isRefinement("me et", "meet"))
+    }
+
+    @Test
+    fun substringSearchIsNotRefined() {
+        assertFalse(TaskSearch.isRefinement("#", "#1"))
+    }
+}
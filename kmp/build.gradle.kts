@@ -62,6 +62,7 @@ kotlin {
             dependencies {
                 implementation(libs.junit)
                 implementation(libs.kotlinx.coroutines.test)
+                implementation(libs.ktor.client.mock)
                 implementation(libs.mockito.kotlin)
                 implementation(libs.androidx.room)
                 implementation(libs.androidx.sqlite)
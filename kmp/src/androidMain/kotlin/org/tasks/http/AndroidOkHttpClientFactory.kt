@@ -10,35 +10,33 @@ import kotlinx.coroutines.withContext
 import okhttp3.OkHttpClient
 import okhttp3.internal.tls.OkHostnameVerifier
 import org.tasks.caldav.TasksCookieJar
+import java.util.concurrent.ConcurrentHashMap
 import javax.net.ssl.SSLContext
+import javax.net.ssl.SSLSocketFactory
 
 open class AndroidOkHttpClientFactory(
     protected val context: Context,
     private val userAgent: String,
+    private val sharedClient: SharedOkHttpClient = SharedOkHttpClient.default,
 ) : OkHttpClientFactory {
 
+    companion object {
+        // pooled connections are only reused when the socket factory and verifier are the same
+        // instances, so share them across factories
+        private val tlsConfigs = ConcurrentHashMap<Boolean, TlsConfig>()
+    }
+
     override suspend fun newClient(
         foreground: Boolean,
         cookieKey: String?,
         block: (OkHttpClient.Builder) -> Unit,
     ): OkHttpClient {
-        val customCertManager = withContext(Dispatchers.Default) {
-            CustomCertManager(
-                certStore = CustomCertStore.getInstance(context),
-                settings = object : SettingsProvider {
-                    override val appInForeground = foreground
-                    override val trustSystemCerts = true
-                }
-            )
+        val tls = tlsConfigs[foreground] ?: withContext(Dispatchers.Default) {
+            tlsConfigs.getOrPut(foreground) { TlsConfig(context, foreground) }
         }
-        val hostnameVerifier = customCertManager.HostnameVerifier(OkHostnameVerifier)
-        val sslContext = SSLContext.getInstance("TLS")
-        sslContext.init(null, arrayOf(customCertManager), null)
-        val builder = OkHttpClient.Builder()
-            .followRedirects(false)
-            .followSslRedirects(true)
-            .sslSocketFactory(sslContext.socketFactory, customCertManager)
-            .hostnameVerifier(hostnameVerifier)
+        val builder = sharedClient.base.newBuilder()
+            .sslSocketFactory(tls.sslSocketFactory, tls.certManager)
+            .hostnameVerifier(tls.hostnameVerifier)
             .addInterceptor(UserAgentInterceptor(userAgent))
             .cookieJar(TasksCookieJar(persistor = cookiePersistor(cookieKey)))
 
@@ -47,6 +45,20 @@ open class AndroidOkHttpClientFactory(
         return builder.build()
     }
 
+    private class TlsConfig(context: Context, foreground: Boolean) {
+        val certManager = CustomCertManager(
+            certStore = CustomCertStore.getInstance(context),
+            settings = object : SettingsProvider {
+                override val appInForeground = foreground
+                override val trustSystemCerts = true
+            }
+        )
+        val hostnameVerifier = certManager.HostnameVerifier(OkHostnameVerifier)
+        val sslSocketFactory: SSLSocketFactory = SSLContext.getInstance("TLS")
+            .apply { init(null, arrayOf(certManager), null) }
+            .socketFactory
+    }
+
     private fun cookiePersistor(key: String?) = SharedPrefsCookiePersistor(
         context.getSharedPreferences(
             "CookiePersistence${key?.let { "_$it" } ?: ""}",
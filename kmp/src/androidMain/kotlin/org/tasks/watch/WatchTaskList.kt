@@ -3,4 +3,5 @@ package org.tasks.watch
 data class WatchTaskList(
     val totalItems: Int,
     val items: List<WatchUiItem>,
+    val version: Long = 0,
 )
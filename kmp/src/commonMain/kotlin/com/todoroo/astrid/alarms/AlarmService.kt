@@ -6,6 +6,8 @@
 package com.todoroo.astrid.alarms
 
 import co.touchlab.kermit.Logger
+import kotlinx.datetime.TimeZone
+import org.tasks.broadcast.ChangeSet
 import org.tasks.broadcast.RefreshBroadcaster
 import org.tasks.data.dao.AlarmDao
 import org.tasks.data.dao.DirtyDao
@@ -13,6 +15,7 @@ import org.tasks.data.dao.TaskDao
 import org.tasks.data.db.DbUtils
 import org.tasks.data.entity.Alarm
 import org.tasks.data.entity.Alarm.Companion.TYPE_SNOOZE
+import org.tasks.data.entity.AlarmTimeline
 import org.tasks.data.entity.CaldavAccount.Companion.TYPES_ALARMS
 import org.tasks.data.entity.Notification
 import org.tasks.notifications.CancelReason
@@ -37,7 +40,15 @@ class AlarmService(
      *
      * @return true if data was changed
      */
-    suspend fun synchronizeAlarms(taskId: Long, alarms: MutableSet<Alarm>): Boolean {
+    suspend fun synchronizeAlarms(taskId: Long, alarms: MutableSet<Alarm>): Boolean =
+        saveAlarms(taskId, alarms).also { afterSaveAlarms(it) }.changed
+
+    /**
+     * Same as [synchronizeAlarms] without cancelling notifications or broadcasting the change,
+     * for callers that are inside a transaction. Pass the result to [afterSaveAlarms] once the
+     * transaction has committed
+     */
+    suspend fun saveAlarms(taskId: Long, alarms: MutableSet<Alarm>): SavedAlarms {
         var changed = false
         for (existing in alarmDao.getAlarms(taskId)) {
             if (!alarms.removeIf { it.same(existing)}) {
@@ -51,13 +62,18 @@ class AlarmService(
         if (alarms.isNotEmpty()) {
             changed = true
         }
-        if (snoozedInFuture) {
-            notifier.cancel(listOf(taskId), CancelReason.SNOOZE)
+        return SavedAlarms(taskId, changed, snoozedInFuture)
+    }
+
+    suspend fun afterSaveAlarms(saved: SavedAlarms) {
+        if (saved.snoozedInFuture) {
+            notifier.cancel(listOf(saved.taskId), CancelReason.SNOOZE)
         }
-        if (changed) {
-            refreshBroadcaster.broadcastRefresh()
+        if (saved.changed) {
+            refreshBroadcaster.broadcastChanges(
+                ChangeSet(tasks = setOf(saved.taskId), tables = setOf(Alarm.TABLE_NAME))
+            )
         }
-        return changed
     }
 
     suspend fun snooze(time: Long, taskIds: List<Long>) {
@@ -89,43 +105,68 @@ class AlarmService(
             .map { it.copy(timestamp = currentTimeMillis()) }
             .let { trigger(it) }
         val alreadyTriggered = overdue.map { it.taskId }.toSet()
-        val (moreOverdue, future) = getAlarms()
+        val (moreOverdue, next) = getAlarms()
         return moreOverdue
             .filterNot { it.type == Alarm.TYPE_RANDOM || alreadyTriggered.contains(it.taskId) }
-            .plus(future)
-            .minOfOrNull { it.timestamp }
+            .map { it.timestamp }
+            .plus(listOfNotNull(next))
+            .minOrNull()
             ?: 0
     }
 
-    internal suspend fun getAlarms(): Pair<List<Notification>, List<Notification>> {
+    /**
+     * @return the first overdue alarm of each task, and when the next alarm after that fires
+     */
+    internal suspend fun getAlarms(): Pair<List<Notification>, Long?> {
         val start = currentTimeMillis()
-        val overdue = ArrayList<Notification>()
-        val future = ArrayList<Notification>()
+        val scheduled = schedule()
         val nextMinute = currentTimeMillis().startOfMinute() + 60_000
+        val overdue = alarmDao.getScheduled(before = nextMinute)
+        val next = alarmDao.getNextScheduled(after = nextMinute)
+        Logger.d("AlarmService") { "took ${currentTimeMillis() - start}ms scheduled=$scheduled overdue=${overdue.size} next=$next" }
+        return overdue to next
+    }
+
+    /**
+     * Calculates when alarms fire for every alarm that isn't in the timeline yet. Everything is
+     * recalculated when the default due time or the time zone changes. The schedule is only
+     * recorded after the timeline commits, so an interrupted rebuild is repeated
+     */
+    private suspend fun schedule(): Int {
         val defaultDueTime = preferences.defaultDueTime()
-        alarmDao.getActiveAlarms()
-            .groupBy { it.task }
-            .forEach { (taskId, alarms) ->
-                val task = taskDao.fetch(taskId) ?: return@forEach
-                val alarmEntries = alarms.mapNotNull {
-                    alarmCalculator.toAlarmEntry(task, it, defaultDueTime)
-                }
-                val (now, later) = alarmEntries.partition {
-                    it.timestamp < nextMinute
+        val schedule = "$defaultDueTime ${TimeZone.currentSystemDefault().id}"
+        val rebuild = schedule != preferences.alarmSchedule()
+        return taskDao
+            .inTransaction {
+                if (rebuild) {
+                    alarmDao.clearSchedule()
                 }
-                later
-                    .filter { it.type == TYPE_SNOOZE }
-                    .maxByOrNull { it.timestamp }
-                    ?.let { future.add(it) }
-                    ?: run {
-                        now.firstOrNull()?.let { overdue.add(it) }
-                        later.minByOrNull { it.timestamp }?.let { future.add(it) }
+                val alarms = alarmDao.getUnscheduledAlarms()
+                val tasks = taskDao.fetch(alarms.map { it.task }.distinct()).associateBy { it.id }
+                alarms
+                    .mapNotNull { alarm ->
+                        val task = tasks[alarm.task] ?: return@mapNotNull null
+                        AlarmTimeline(
+                            alarm = alarm.id,
+                            task = alarm.task,
+                            type = alarm.type,
+                            nextFire = alarmCalculator.toAlarmEntry(task, alarm, defaultDueTime)
+                                ?.timestamp
+                                ?: NO_ALARM,
+                        )
                     }
+                    .also { alarmDao.schedule(it) }
+                    .size
+            }
+            .also {
+                if (rebuild) {
+                    preferences.setAlarmSchedule(schedule)
+                }
             }
-        Logger.d("AlarmService") { "took ${currentTimeMillis() - start}ms overdue=${overdue.size} future=${future.size}" }
-        return overdue to future
     }
 
+    class SavedAlarms(val taskId: Long, val changed: Boolean, val snoozedInFuture: Boolean)
+
     companion object {
         internal const val NO_ALARM = 0L
     }
@@ -57,6 +57,73 @@ object PermaSql {
     /** value to be replaced by approximate noon next month as long  */
     private const val VALUE_NOON_NEXT_MONTH = "NOONM()" // $NON-NLS-1$
 
+    /**
+     * Placeholders in the order of their bind parameter numbers. [parameterize] replaces
+     * placeholder n with `?n`, so the query text stays the same from one day to the next
+     */
+    private val PLACEHOLDERS = listOf(
+        VALUE_NOW,
+        VALUE_EOD,
+        VALUE_EOD_YESTERDAY,
+        VALUE_EOD_TOMORROW,
+        VALUE_EOD_DAY_AFTER,
+        VALUE_EOD_NEXT_WEEK,
+        VALUE_EOD_NEXT_MONTH,
+        VALUE_NOON,
+        VALUE_NOON_YESTERDAY,
+        VALUE_NOON_TOMORROW,
+        VALUE_NOON_DAY_AFTER,
+        VALUE_NOON_NEXT_WEEK,
+        VALUE_NOON_NEXT_MONTH,
+    )
+
+    /** First bind parameter number that is not used by a placeholder */
+    val FIRST_FREE_PARAMETER = PLACEHOLDERS.size + 1
+
+    /**
+     * Replace placeholder strings with numbered bind parameters, see [bindArgs]. Quoted
+     * placeholders lose their quotes, otherwise the parameter would be part of a string literal
+     */
+    fun parameterize(value: String): ParameterizedSql {
+        var sql = value
+        val parameters = ArrayList<Int>()
+        PLACEHOLDERS.forEachIndexed { index, placeholder ->
+            if (sql.contains(placeholder)) {
+                sql = sql
+                    .replace("'$placeholder'", "?${index + 1}")
+                    .replace(placeholder, "?${index + 1}")
+                parameters.add(index + 1)
+            }
+        }
+        return ParameterizedSql(sql, parameters)
+    }
+
+    /** Current values for the placeholder parameters of a [ParameterizedSql] */
+    fun bindArgs(query: ParameterizedSql, now: Long = currentTimeMillis()): Map<Int, Any?> {
+        if (query.parameters.isEmpty()) {
+            return emptyMap()
+        }
+        val eod = now.endOfDay()
+        val noon = now.noon()
+        return query.parameters.associateWith { parameter ->
+            when (PLACEHOLDERS[parameter - 1]) {
+                VALUE_NOW -> now
+                VALUE_EOD -> eod
+                VALUE_EOD_YESTERDAY -> eod - ONE_DAY
+                VALUE_EOD_TOMORROW -> eod + ONE_DAY
+                VALUE_EOD_DAY_AFTER -> eod + 2 * ONE_DAY
+                VALUE_EOD_NEXT_WEEK -> eod + 7 * ONE_DAY
+                VALUE_EOD_NEXT_MONTH -> eod + 30 * ONE_DAY
+                VALUE_NOON -> noon
+                VALUE_NOON_YESTERDAY -> noon - ONE_DAY
+                VALUE_NOON_TOMORROW -> noon + ONE_DAY
+                VALUE_NOON_DAY_AFTER -> noon + 2 * ONE_DAY
+                VALUE_NOON_NEXT_WEEK -> noon + 7 * ONE_DAY
+                else -> noon + 30 * ONE_DAY
+            }
+        }
+    }
+
     /** Replace placeholder strings with actual  */
     fun replacePlaceholdersForQuery(value: String): String {
         var value = value
@@ -136,3 +203,11 @@ object PermaSql {
         return value
     }
 }
+
+/**
+ * A query whose [PermaSql] placeholders were replaced with the numbered bind [parameters]
+ */
+data class ParameterizedSql(
+    val sql: String,
+    val parameters: List<Int>,
+)
@@ -0,0 +1,33 @@
+package org.tasks.broadcast
+
+/**
+ * Describes a database change so that observers can skip refreshes that can't affect them.
+ * Empty [tasks] and [lists] mean the change isn't limited to particular tasks or lists, and empty
+ * [tables] means that any table may have changed.
+ */
+data class ChangeSet(
+    val tasks: Set<Long> = emptySet(),
+    val lists: Set<String> = emptySet(),
+    val tables: Set<String> = emptySet(),
+) {
+    val isGlobal: Boolean
+        get() = lists.isEmpty() && tables.isEmpty()
+
+    fun affectsList(uuid: String) = lists.isEmpty() || lists.contains(uuid)
+
+    fun affectsTables(names: Set<String>) = tables.isEmpty() || tables.any { names.contains(it) }
+
+    operator fun plus(other: ChangeSet) = ChangeSet(
+        tasks = if (tasks.isEmpty() || other.tasks.isEmpty()) emptySet() else tasks + other.tasks,
+        lists = if (lists.isEmpty() || other.lists.isEmpty()) emptySet() else lists + other.lists,
+        tables = if (tables.isEmpty() || other.tables.isEmpty()) emptySet() else tables + other.tables,
+    )
+
+    companion object {
+        val ALL = ChangeSet()
+
+        fun lists(vararg uuids: String?) = ChangeSet(lists = uuids.filterNotNull().toSet())
+
+        fun tables(vararg names: String) = ChangeSet(tables = names.toSet())
+    }
+}
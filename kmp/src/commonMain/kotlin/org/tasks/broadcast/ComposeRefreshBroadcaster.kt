@@ -1,13 +1,43 @@
 package org.tasks.broadcast
 
-import kotlinx.coroutines.flow.MutableSharedFlow
-import kotlinx.coroutines.flow.SharedFlow
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.flow.getAndUpdate
+import kotlinx.coroutines.flow.map
+import kotlinx.coroutines.flow.update
 
 class ComposeRefreshBroadcaster : RefreshBroadcaster {
-    private val _refreshes = MutableSharedFlow<Unit>(extraBufferCapacity = 1)
-    val refreshes: SharedFlow<Unit> = _refreshes
+    private class Subscriber {
+        val pending = MutableStateFlow<ChangeSet?>(null)
+        val signal = Channel<Unit>(Channel.CONFLATED)
+    }
+
+    private val subscribers = MutableStateFlow<List<Subscriber>>(emptyList())
+
+    /**
+     * Each collector gets its own pending [ChangeSet]. Changes that arrive while the collector is
+     * busy are merged, so a slow collector sees one combined change instead of losing any
+     */
+    val changes: Flow<ChangeSet> = flow {
+        val subscriber = Subscriber()
+        subscribers.update { it + subscriber }
+        try {
+            for (signal in subscriber.signal) {
+                subscriber.pending.getAndUpdate { null }?.let { changes -> emit(changes) }
+            }
+        } finally {
+            subscribers.update { it - subscriber }
+        }
+    }
+
+    val refreshes: Flow<Unit> = changes.map { }
 
-    override fun broadcastRefresh() {
-        _refreshes.tryEmit(Unit)
+    override fun broadcastChanges(changes: ChangeSet) {
+        subscribers.value.forEach { subscriber ->
+            subscriber.pending.update { it?.plus(changes) ?: changes }
+            subscriber.signal.trySend(Unit)
+        }
     }
 }
@@ -1,6 +1,7 @@
 package org.tasks.broadcast
 
 interface RefreshBroadcaster {
-    fun broadcastRefresh()
+    fun broadcastRefresh() = broadcastChanges(ChangeSet.ALL)
+    fun broadcastChanges(changes: ChangeSet)
     fun broadcastTaskCompleted(ids: List<Long>, oldDueDate: Long = 0L) {}
 }
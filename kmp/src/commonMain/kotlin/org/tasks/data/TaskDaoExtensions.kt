@@ -1,5 +1,6 @@
 package org.tasks.data
 
+import com.todoroo.astrid.api.ParameterizedSql
 import com.todoroo.astrid.api.PermaSql
 import org.tasks.data.dao.TaskDao
 import org.tasks.data.db.SuspendDbUtils.eachChunk
@@ -10,7 +11,10 @@ import org.tasks.filters.Filter
 import org.tasks.preferences.QueryPreferences
 
 suspend fun TaskDao.fetchTasks(preferences: QueryPreferences, filter: Filter): List<TaskContainer> =
-    fetchTasks(TaskListQuery.getQuery(preferences, filter))
+    fetchTasks(TaskListQuery.getParameterizedQuery(preferences, filter))
+
+suspend fun TaskDao.fetchTasks(query: TaskListQuery.BoundQuery): List<TaskContainer> =
+    fetchTasks(query.sql, query.args)
 
 suspend fun TaskDao.setCollapsed(preferences: QueryPreferences, filter: Filter, collapsed: Boolean) {
     fetchTasks(preferences, filter)
@@ -19,18 +23,37 @@ suspend fun TaskDao.setCollapsed(preferences: QueryPreferences, filter: Filter,
         .eachChunk { setCollapsed(it, collapsed) }
 }
 
-suspend fun TaskDao.fetchFiltered(filter: Filter): List<Task> = fetchFiltered(filter.sql!!)
+suspend fun TaskDao.fetchFiltered(filter: Filter): List<Task> {
+    val query = getQuery(filter.sql!!, Task.FIELDS)
+    val tasks = fetchTasks(query.sql, PermaSql.bindArgs(query) + filter.args)
+    return tasks.map(TaskContainer::task)
+}
 
 suspend fun TaskDao.fetchFiltered(queryTemplate: String): List<Task> {
     val query = getQuery(queryTemplate, Task.FIELDS)
-    val tasks = fetchTasks(query)
+    val tasks = fetchTasks(query.sql, PermaSql.bindArgs(query))
     return tasks.map(TaskContainer::task)
 }
 
-suspend fun TaskDao.count(filter: Filter): Int = countSql(filter.sql!!)
+/** @param limit stop after this many ids, or null to fetch every match */
+suspend fun TaskDao.fetchFilteredIds(filter: Filter, limit: Int? = null): List<Long> {
+    val query = getQuery(
+        limit?.let { "${filter.sql!!} LIMIT $it" } ?: filter.sql!!,
+        Task.ID,
+    )
+    return fetchIds(query.sql, PermaSql.bindArgs(query) + filter.args)
+}
+
+suspend fun TaskDao.count(filter: Filter): Int {
+    val query = getQuery(filter.sql!!, Field.COUNT)
+    return count(query.sql, PermaSql.bindArgs(query) + filter.args)
+}
 
 suspend fun TaskDao.countSql(sql: String): Int = count(getQuery(sql, Field.COUNT))
 
+private suspend fun TaskDao.count(query: ParameterizedSql): Int =
+    count(query.sql, PermaSql.bindArgs(query))
+
 suspend fun TaskDao.countCompletedSql(sql: String): Int {
     val completedSql = sql.replace("tasks.completed<=0", "tasks.completed>0")
     return if (completedSql != sql) {
@@ -40,8 +63,10 @@ suspend fun TaskDao.countCompletedSql(sql: String): Int {
     }
 }
 
-private fun getQuery(queryTemplate: String, vararg fields: Field): String =
-    Query.select(*fields)
-        .withQueryTemplate(PermaSql.replacePlaceholdersForQuery(queryTemplate))
-        .from(Task.TABLE)
-        .toString()
+private fun getQuery(queryTemplate: String, vararg fields: Field): ParameterizedSql =
+    PermaSql.parameterize(
+        Query.select(*fields)
+            .withQueryTemplate(queryTemplate)
+            .from(Task.TABLE)
+            .toString()
+    )
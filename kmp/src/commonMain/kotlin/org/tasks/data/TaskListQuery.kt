@@ -1,6 +1,8 @@
 package org.tasks.data
 
 import co.touchlab.kermit.Logger
+import com.todoroo.astrid.api.ParameterizedSql
+import com.todoroo.astrid.api.PermaSql
 import org.tasks.data.TaskListQueryNonRecursive.getNonRecursiveQuery
 import org.tasks.data.TaskListQueryRecursive.getRecursiveQuery
 import org.tasks.data.entity.CaldavAccount
@@ -13,9 +15,12 @@ import org.tasks.data.sql.Criterion
 import org.tasks.data.sql.Field.Companion.field
 import org.tasks.data.sql.Join
 import org.tasks.filters.AstridOrderingFilter
+import org.tasks.filters.CaldavFilter
 import org.tasks.filters.Filter
 import org.tasks.preferences.QueryPreferences
 import org.tasks.time.DateTimeUtils2.currentTimeMillis
+import kotlin.concurrent.Volatile
+import kotlin.reflect.KClass
 
 object TaskListQuery {
     private const val CALDAV_METADATA_JOIN = "for_caldav"
@@ -36,24 +41,172 @@ object TaskListQuery {
             field("geofences.*"),
             field("places.*"))
 
+    private const val CACHE_SIZE = 16
+    private val LIST_PARAMETER = PermaSql.FIRST_FREE_PARAMETER
+    private val AFTER_PARAMETER = PermaSql.FIRST_FREE_PARAMETER + 1
+    private val LIMIT_PARAMETER = PermaSql.FIRST_FREE_PARAMETER + 2
+    private val OFFSET_PARAMETER = PermaSql.FIRST_FREE_PARAMETER + 3
+
+    /** First bind parameter that a filter can use for its own [Filter.args] */
+    val FILTER_PARAMETER = PermaSql.FIRST_FREE_PARAMETER + 4
+
+    @Volatile
+    private var cache: Map<QueryShape, ParameterizedSql> = emptyMap()
+
+    /**
+     * Everything that [getParameterizedQuery] reads from the filter and preferences. Two calls
+     * with the same shape produce the same SQL text, so SQLite can reuse the prepared statement
+     */
+    private data class QueryShape(
+        val filter: KClass<out Filter>,
+        val sql: String?,
+        val googleTasks: Boolean,
+        val recursive: Boolean,
+        val preferences: List<Any>,
+        val limit: Int?,
+        val paged: Boolean,
+    )
+
+    /** A task list query with its bind arguments, see [org.tasks.data.dao.TaskDao.fetchTasks] */
+    class BoundQuery(val sql: String, val args: Map<Int, Any?>)
+
+    /**
+     * A page of [size] tasks. Recursive queries continue after the [TaskContainer.sequence] of the
+     * last loaded task, other queries skip [offset] rows.
+     *
+     * This only saves reading and materialising the rows before the page. The sequence is a
+     * ROW_NUMBER over the finished recursive CTE, so SQLite still walks every task in the list for
+     * each page, the same as an OFFSET would. Seeking instead would need a key made of the sort
+     * columns of each root task and its ancestors, which the recursive ordering doesn't expose.
+     */
+    data class Page(
+        val size: Int,
+        val after: TaskContainer? = null,
+        val offset: Int = 0,
+    )
+
     @JvmStatic
     fun getQuery(
         preferences: QueryPreferences,
         filter: Filter,
         limit: Int? = null,
-    ): String {
-        val start = currentTimeMillis()
-        return when {
-            filter.supportsManualSort() && preferences.isManualSort ->
-                getRecursiveQuery(filter, preferences, limit)
+    ): String = PermaSql.replacePlaceholdersForQuery(buildQuery(preferences, filter, limit))
+
+    /**
+     * Same query as [getQuery], but with date placeholders and the list uuid as bind parameters.
+     * The SQL text is cached per [QueryShape] and only the arguments change between refreshes
+     */
+    fun getParameterizedQuery(
+        preferences: QueryPreferences,
+        filter: Filter,
+        limit: Int? = null,
+    ): BoundQuery = bind(preferences, filter, limit, null)
 
-            filter is AstridOrderingFilter && preferences.isAstridSort ->
-                getNonRecursiveQuery(filter, preferences, limit)
+    /** Same as [getParameterizedQuery], limited to one [page] */
+    fun getPagedQuery(
+        preferences: QueryPreferences,
+        filter: Filter,
+        page: Page,
+    ): BoundQuery = bind(preferences, filter, null, page)
+
+    private fun bind(
+        preferences: QueryPreferences,
+        filter: Filter,
+        limit: Int?,
+        page: Page?,
+    ): BoundQuery {
+        val recursive = isRecursive(preferences, filter)
+        val bindList = recursive && filter is CaldavFilter
+        val shape = QueryShape(
+            filter = filter::class,
+            sql = when {
+                bindList -> null
+                filter is AstridOrderingFilter -> filter.getSqlQuery()
+                else -> filter.sql
+            },
+            googleTasks = (filter as? CaldavFilter)?.isGoogleTasks == true,
+            recursive = recursive,
+            preferences = preferences.snapshot(),
+            limit = limit,
+            paged = page != null,
+        )
+        val query = cache[shape] ?: PermaSql
+            .parameterize(
+                buildQuery(
+                    preferences,
+                    filter,
+                    limit = if (page != null) "?$LIMIT_PARAMETER" else limit,
+                    list = if (bindList) field("?$LIST_PARAMETER") else null,
+                    after = if (page != null) "?$AFTER_PARAMETER" else null,
+                    offset = if (page != null) "?$OFFSET_PARAMETER" else null,
+                )
+            )
+            .also { query ->
+                val current = cache
+                cache = if (current.size >= CACHE_SIZE) {
+                    current.entries.drop(1).associate { it.key to it.value }
+                } else {
+                    current
+                }.plus(shape to query)
+            }
+        val args = PermaSql.bindArgs(query).toMutableMap()
+        args.putAll(filter.args)
+        if (bindList) {
+            args[LIST_PARAMETER] = (filter as CaldavFilter).uuid
+        }
+        if (page != null) {
+            args[LIMIT_PARAMETER] = page.size
+            if (recursive) {
+                args[AFTER_PARAMETER] = page.after?.sequence ?: 0L
+            } else {
+                args[OFFSET_PARAMETER] = page.offset
+            }
+        }
+        return BoundQuery(sql = query.sql, args = args)
+    }
 
-            filter.supportsSorting() ->
-                getRecursiveQuery(filter, preferences, limit)
+    private fun isRecursive(preferences: QueryPreferences, filter: Filter) = when {
+        filter.supportsManualSort() && preferences.isManualSort -> true
+        filter is AstridOrderingFilter && preferences.isAstridSort -> false
+        filter.supportsSorting() -> true
+        else -> false
+    }
 
-            else -> getNonRecursiveQuery(filter, preferences, limit)
+    private fun buildQuery(
+        preferences: QueryPreferences,
+        filter: Filter,
+        limit: Any?,
+        list: Any? = null,
+        after: Any? = null,
+        offset: Any? = null,
+    ): String {
+        val start = currentTimeMillis()
+        return if (isRecursive(preferences, filter)) {
+            getRecursiveQuery(
+                filter = filter,
+                preferences = preferences,
+                limit = limit,
+                list = list ?: (filter as? CaldavFilter)?.uuid,
+                after = after,
+            )
+        } else {
+            getNonRecursiveQuery(filter, preferences, limit, offset)
         }.also { Logger.v("TaskListQuery") { "Building query took ${currentTimeMillis() - start}ms" } }
     }
+
+    private fun QueryPreferences.snapshot(): List<Any> = listOf(
+        sortMode,
+        groupMode,
+        completedMode,
+        subtaskMode,
+        isManualSort,
+        isAstridSort,
+        sortAscending,
+        groupAscending,
+        completedAscending,
+        subtaskAscending,
+        showHidden,
+        showCompleted,
+        completedTasksAtBottom,
+    )
 }
@@ -1,6 +1,5 @@
 package org.tasks.data
 
-import com.todoroo.astrid.api.PermaSql
 import com.todoroo.astrid.core.SortHelper
 import org.tasks.data.entity.Tag
 import org.tasks.data.entity.Task
@@ -29,7 +28,12 @@ internal object TaskListQueryNonRecursive {
             field("tasks.completed > 0").`as`("parentComplete")
         )).toTypedArray()
 
-    fun getNonRecursiveQuery(filter: Filter, preferences: QueryPreferences, limit: Int? = null): String {
+    fun getNonRecursiveQuery(
+        filter: Filter,
+        preferences: QueryPreferences,
+        limit: Any? = null,
+        offset: Any? = null,
+    ): String {
         val joinedQuery = JOINS + if (filter is AstridOrderingFilter) filter.getSqlQuery() else filter.sql!!
         val sortMode = preferences.sortMode
         val groupMode = preferences.groupMode
@@ -43,8 +47,9 @@ internal object TaskListQueryNonRecursive {
             }
         val orderBy = "$completeAtBottom $completionSort"
         val groupedQuery = when {
+            // grouping by modified as well lets SQLite range search index_tasks_modified
             filter is RecentlyModifiedFilter ->
-                query.replace("ORDER BY", "GROUP BY ${Task.ID} ORDER BY")
+                query.replace("ORDER BY", "GROUP BY ${Task.MODIFICATION_DATE}, ${Task.ID} ORDER BY")
             query.contains("ORDER BY") ->
                 query.replace("ORDER BY", "GROUP BY ${Task.ID} ORDER BY $orderBy")
             preferences.completedTasksAtBottom ->
@@ -53,9 +58,13 @@ internal object TaskListQueryNonRecursive {
                 "$query GROUP BY ${Task.ID}"
         }
         val result = Query.select(*FIELDS.plus(sortGroup))
-            .withQueryTemplate(PermaSql.replacePlaceholdersForQuery(groupedQuery))
+            .withQueryTemplate(groupedQuery)
             .from(Task.TABLE)
             .toString()
-        return if (limit != null) "$result LIMIT $limit" else result
+        return when {
+            limit == null -> result
+            offset == null -> "$result LIMIT $limit"
+            else -> "$result LIMIT $limit OFFSET $offset"
+        }
     }
 }
@@ -1,12 +1,12 @@
 package org.tasks.data
 
-import com.todoroo.astrid.api.PermaSql
 import com.todoroo.astrid.core.SortHelper
 import org.tasks.data.dao.TaskDao.TaskCriteria.activeAndVisible
 import org.tasks.data.db.Table
 import org.tasks.data.entity.CaldavTask
 import org.tasks.data.entity.Task
 import org.tasks.data.sql.Criterion
+import org.tasks.data.sql.Functions
 import org.tasks.data.sql.Join
 import org.tasks.data.sql.QueryTemplate
 import org.tasks.filters.CaldavFilter
@@ -16,14 +16,20 @@ import org.tasks.preferences.QueryPreferences
 internal object TaskListQueryRecursive {
     private val RECURSIVE = Table("recursive_tasks")
 
+    /**
+     * @param after only return tasks after this sequence number. Every task in the list is still
+     * visited by the recursive CTE, see [TaskListQuery.Page]
+     */
     fun getRecursiveQuery(
         filter: Filter,
         preferences: QueryPreferences,
-        limit: Int? = null,
+        limit: Any? = null,
+        list: Any? = (filter as? CaldavFilter)?.uuid,
+        after: Any? = null,
     ): String {
         val parentQuery = when (filter) {
-            is CaldavFilter -> newCaldavQuery(filter.uuid)
-            else -> PermaSql.replacePlaceholdersForQuery(filter.sql!!)
+            is CaldavFilter -> newCaldavQuery(list!!)
+            else -> filter.sql!!
         }
         val manualSort = preferences.isManualSort
         val groupPreference = preferences.groupMode
@@ -52,11 +58,25 @@ internal object TaskListQueryRecursive {
             preferences.subtaskAscending && subtaskMode != SortHelper.SORT_GTASKS && subtaskMode != SortHelper.SORT_CALDAV
         val completedAtBottom = preferences.completedTasksAtBottom
         val parentCompleted = if (completedAtBottom) "tasks.completed > 0" else "0"
+        // the stored rollup matches what the list shows unless some subtasks are filtered out
+        val rollupExact = listOfNotNull(
+            if (preferences.showHidden) null else "task_rollup.max_hide_until <= ${Functions.now()}",
+            if (preferences.showCompleted) null else "task_rollup.completed_child_count = 0",
+        )
+            .joinToString(" AND ")
+            .ifEmpty { "1" }
+        val rollupUncompleted = if (completedAtBottom) {
+            "task_rollup.child_count - task_rollup.completed_child_count"
+        } else {
+            "task_rollup.child_count"
+        }
         val completionSort = if (completedAtBottom) {
             "(CASE WHEN tasks.completed > 0 THEN ${SortHelper.orderSelectForSortTypeRecursive(completedMode, false)} ELSE 0 END)"
         } else {
             "0"
         }
+        // CROSS JOIN keeps SQLite from reordering the joins: start from the listed tasks and look
+        // up everything else by key, rather than scanning tasks or task_hierarchy
         val query = """
             WITH RECURSIVE recursive_tasks AS (
                 SELECT 
@@ -71,8 +91,7 @@ internal object TaskListQueryRecursive {
                     ${SortHelper.orderSelectForSortTypeRecursive(groupMode, true)} AS primary_group,
                     ${SortHelper.orderSelectForSortTypeRecursive(sortMode, false)} AS primary_sort,
                     NULL as secondary_sort,
-                    ${SortHelper.getSortGroup(groupMode)} AS sort_group,
-                    '/' || tasks._id || '/' as recursive_path
+                    ${SortHelper.getSortGroup(groupMode)} AS sort_group
                 FROM tasks
                 ${
                     if (groupMode == SortHelper.SORT_LIST) {
@@ -100,13 +119,13 @@ internal object TaskListQueryRecursive {
                     recursive_tasks.primary_group AS primary_group,
                     recursive_tasks.primary_sort AS primary_sort,
                     ${SortHelper.orderSelectForSortTypeRecursive(subtaskMode, false)} AS secondary_sort,
-                    recursive_tasks.sort_group AS sort_group,
-                    recursive_tasks.recursive_path || tasks._id || '/' AS recursive_path
-                FROM tasks
-                INNER JOIN recursive_tasks ON tasks.parent = recursive_tasks.task
-                WHERE
-                    ${activeAndVisible()}
-                    AND recursive_tasks.recursive_path NOT LIKE '%/' || tasks._id || '/%'
+                    recursive_tasks.sort_group AS sort_group
+                FROM task_hierarchy
+                INNER JOIN recursive_tasks
+                    ON task_hierarchy.ancestor = recursive_tasks.task
+                    AND task_hierarchy.depth = 1
+                INNER JOIN tasks ON tasks._id = task_hierarchy.descendant
+                WHERE ${activeAndVisible()}
                 ORDER BY
                     parent_complete,
                     indent DESC,
@@ -121,28 +140,24 @@ internal object TaskListQueryRecursive {
                     ROW_NUMBER() OVER () AS sequence
                 FROM recursive_tasks
             ),
-            descendants_recursive AS (
-                SELECT
-                    parent,
-                    task as descendant,
-                    parent_complete as completed
-                FROM recursive_tasks
-                WHERE parent > 0
-                UNION
-                SELECT
-                    d.parent,
-                    r.task as descendant,
-                    r.parent_complete as completed
-                FROM recursive_tasks r
-                    JOIN descendants_recursive d ON r.parent = d.descendant
-            ),
             descendants AS (
                 SELECT
-                    parent,
-                    COUNT(DISTINCT CASE WHEN completed > 0 THEN descendant ELSE NULL END) as completed_children,
-                    COUNT(DISTINCT CASE WHEN completed = 0 THEN descendant ELSE NULL END) as uncompleted_children
-                FROM descendants_recursive
-                GROUP BY parent
+                    task_hierarchy.ancestor AS parent,
+                    COUNT(DISTINCT CASE WHEN recursive_tasks.parent_complete > 0 THEN task_hierarchy.descendant ELSE NULL END) as completed_children,
+                    COUNT(DISTINCT CASE WHEN recursive_tasks.parent_complete = 0 THEN task_hierarchy.descendant ELSE NULL END) as uncompleted_children
+                FROM recursive_tasks
+                    CROSS JOIN task_hierarchy ON task_hierarchy.descendant = recursive_tasks.task
+                    CROSS JOIN task_rollup ON task_rollup.task = task_hierarchy.ancestor
+                WHERE recursive_tasks.parent > 0
+                AND NOT ($rollupExact)
+                AND NOT EXISTS (
+                    SELECT 1
+                    FROM task_hierarchy path
+                    WHERE path.descendant = task_hierarchy.descendant
+                        AND path.depth < task_hierarchy.depth
+                        AND path.ancestor NOT IN (SELECT task FROM recursive_tasks WHERE parent > 0)
+                )
+                GROUP BY task_hierarchy.ancestor
             )
             SELECT
                 ${TaskListQuery.FIELDS.joinToString(",\n") { it.toStringInSelect() }},
@@ -150,20 +165,29 @@ internal object TaskListQueryRecursive {
                 indent,
                 sort_group,
                 CASE
-                    WHEN parent_complete > 0 THEN completed_children
-                    ELSE uncompleted_children
+                    WHEN task_rollup.task IS NULL THEN 0
+                    WHEN $rollupExact THEN
+                        CASE
+                            WHEN parent_complete > 0 THEN task_rollup.completed_child_count
+                            ELSE $rollupUncompleted
+                        END
+                    WHEN parent_complete > 0 THEN IFNULL(completed_children, 0)
+                    ELSE IFNULL(uncompleted_children, 0)
                 END as children,
                 primary_sort,
                 secondary_sort,
-                parent_complete
-            FROM tasks
-                INNER JOIN max_indent
+                parent_complete,
+                sequence
+            FROM max_indent
+                CROSS JOIN tasks
                     ON tasks._id = max_indent.task
                     AND indent = max_indent
                     AND hidden = 0
+                LEFT JOIN task_rollup ON task_rollup.task = tasks._id
                 LEFT JOIN descendants ON descendants.parent = tasks._id
                 LEFT JOIN tags ON tags.task = tasks._id
                 ${TaskListQuery.JOINS}
+            ${after?.let { "WHERE sequence > $it" } ?: ""}
             GROUP BY tasks._id
             ORDER BY sequence
             ${limit?.let { "LIMIT $it" } ?: ""}
@@ -172,7 +196,7 @@ internal object TaskListQueryRecursive {
         return SortHelper.adjustQueryForFlags(preferences, query)
     }
 
-    private fun newCaldavQuery(list: String) =
+    private fun newCaldavQuery(list: Any) =
             QueryTemplate()
                     .join(
                         Join.inner(
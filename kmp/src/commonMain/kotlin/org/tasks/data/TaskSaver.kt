@@ -2,6 +2,7 @@ package org.tasks.data
 
 import co.touchlab.kermit.Logger
 import com.todoroo.astrid.timers.TimerPlugin
+import org.tasks.broadcast.ChangeSet
 import org.tasks.broadcast.RefreshBroadcaster
 import org.tasks.data.dao.CaldavDao
 import org.tasks.data.dao.TaskDao
@@ -19,6 +20,7 @@ import org.tasks.data.entity.Task
 import org.tasks.filters.Filter
 import org.tasks.preferences.QueryPreferences
 import org.tasks.jobs.BackgroundWork
+import org.tasks.jobs.CoalescingScheduler
 import org.tasks.location.LocationService
 import org.tasks.notifications.CancelReason
 import org.tasks.notifications.Notifier
@@ -32,15 +34,28 @@ class TaskSaver(
     private val timerPlugin: TimerPlugin,
     private val backgroundWork: BackgroundWork,
     private val caldavDao: CaldavDao,
+    private val scheduler: CoalescingScheduler,
 ) {
     suspend fun save(task: Task, original: Task?, dirty: Boolean = true) {
-        val markDirty = dirty && needsSync(task, original)
-        if (taskDao.update(task, original, updateTimestamp = dirty, markDirty)) {
-            Logger.d("TaskSaver") { "Saved $task" }
+        if (update(task, original, dirty)) {
             afterSave(task, original)
         }
     }
 
+    /**
+     * Writes the task without running [afterSave], for callers that are inside a transaction
+     *
+     * @return true if the task was changed
+     */
+    suspend fun update(task: Task, original: Task?, dirty: Boolean = true): Boolean {
+        val markDirty = dirty && needsSync(task, original)
+        return taskDao.update(task, original, updateTimestamp = dirty, markDirty).also { saved ->
+            if (saved) {
+                Logger.d("TaskSaver") { "Saved $task" }
+            }
+        }
+    }
+
     private suspend fun needsSync(task: Task, original: Task?): Boolean {
         if (task.checkTransitory(SUPPRESS_SYNC)) {
             return false
@@ -85,19 +100,20 @@ class TaskSaver(
             locationService.updateGeofences(task.id)
         }
         if (!task.isSuppressRefresh()) {
-            refreshBroadcaster.broadcastRefresh()
+            refreshBroadcaster.broadcastChanges(ChangeSet(tasks = setOf(task.id)))
         }
-        notifier.triggerNotifications()
-        backgroundWork.scheduleRefresh()
+        scheduler.schedule()
     }
 
     suspend fun setCollapsed(id: Long, collapsed: Boolean) {
         taskDao.setCollapsed(listOf(id), collapsed)
-        refreshBroadcaster.broadcastRefresh()
+        refreshBroadcaster.broadcastChanges(
+            ChangeSet(tasks = setOf(id), tables = setOf(Task.TABLE_NAME))
+        )
     }
 
     suspend fun setCollapsed(preferences: QueryPreferences, filter: Filter, collapsed: Boolean) {
-        taskDao.fetchTasks(TaskListQuery.getQuery(preferences, filter))
+        taskDao.fetchTasks(TaskListQuery.getParameterizedQuery(preferences, filter))
             .filter(TaskContainer::hasChildren)
             .map(TaskContainer::id)
             .eachChunk { taskDao.setCollapsed(it, collapsed) }
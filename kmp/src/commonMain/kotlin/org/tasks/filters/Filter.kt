@@ -13,6 +13,9 @@ abstract class Filter : FilterListItem, CommonParcelable {
     open val valuesForNewTasks: String?
         get() = null
     abstract val sql: String?
+    /** Values for numbered bind parameters in [sql], see [org.tasks.data.TaskListQuery.FILTER_PARAMETER] */
+    open val args: Map<Int, Any?>
+        get() = emptyMap()
     open val icon: String?
         get() = null
     abstract val title: String
@@ -0,0 +1,218 @@
+package org.tasks.filters
+
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+import org.tasks.broadcast.ChangeSet
+import org.tasks.data.CaldavFilters
+import org.tasks.data.CountedTask
+import org.tasks.data.LocationFilters
+import org.tasks.data.TagFilters
+import org.tasks.data.count
+import org.tasks.data.dao.CaldavDao
+import org.tasks.data.dao.LocationDao
+import org.tasks.data.dao.TagDataDao
+import org.tasks.data.dao.TaskDao
+import org.tasks.data.entity.CaldavAccount
+import org.tasks.data.entity.CaldavCalendar
+import org.tasks.data.entity.CaldavTask
+import org.tasks.data.entity.Geofence
+import org.tasks.data.entity.Place
+import org.tasks.data.entity.Tag
+import org.tasks.data.entity.TagData
+import org.tasks.data.entity.Task
+import org.tasks.time.DateTimeUtils2.currentTimeMillis
+import org.tasks.time.ONE_MINUTE
+
+private const val ALL = ""
+
+private val LIST_TABLES = setOf(
+    Task.TABLE_NAME,
+    CaldavTask.TABLE.name(),
+    CaldavCalendar.TABLE.name(),
+    CaldavAccount.TABLE.name(),
+)
+
+private val TAG_TABLES = setOf(Task.TABLE_NAME, Tag.TABLE.name(), TagData.TABLE_NAME)
+
+private val PLACE_TABLES = setOf(Task.TABLE_NAME, Geofence.TABLE_NAME, Place.TABLE_NAME)
+
+/**
+ * Drawer counts keyed on filter sql, list counts keyed on account, and tag and place counts.
+ * A change to some lists only drops the accounts that own them, so syncing one calendar doesn't
+ * recount every account. List, tag and place entries also keep the tasks they count, so a change
+ * to some tasks moves just those tasks between counts instead of running the grouped queries
+ * again. Filter counts are arbitrary sql, so any change drops them.
+ *
+ * Counts depend on the current time as well as the data, so entries also expire after [maxAge]
+ */
+class FilterCountCache(
+    private val taskDao: TaskDao,
+    private val caldavDao: CaldavDao,
+    private val tagDataDao: TagDataDao,
+    private val locationDao: LocationDao,
+    private val maxAge: Long = ONE_MINUTE,
+    private val now: () -> Long = { currentTimeMillis() },
+) {
+    private class Entry<T>(val value: T, val created: Long)
+
+    private class Counted<T>(
+        val filters: List<T>,
+        val tasks: Map<String, Set<Long>>,
+        private val owner: (T) -> String?,
+        private val withCount: (T, Int) -> T,
+    ) {
+        val owners: Set<String>
+            get() = tasks.keys
+
+        /** Drops [changed] from every count, then adds back the [rows] that still count them */
+        fun update(changed: Set<Long>, rows: List<CountedTask>): Counted<T> {
+            val tasks = tasks.mapValuesTo(HashMap<String, Set<Long>>()) { (_, ids) -> ids - changed }
+            rows.forEach { row -> tasks[row.owner]?.let { tasks[row.owner] = it + row.task } }
+            return Counted(filters, tasks, owner, withCount)
+        }
+
+        fun counted(): List<T> =
+            filters.map { filter ->
+                owner(filter)?.let { withCount(filter, tasks[it]?.size ?: 0) } ?: filter
+            }
+
+        companion object {
+            fun <T> of(
+                filters: List<T>,
+                rows: List<CountedTask>,
+                owner: (T) -> String?,
+                withCount: (T, Int) -> T,
+            ): Counted<T> {
+                val tasks = filters.mapNotNull(owner).associateWith { emptySet<Long>() }
+                return Counted(filters, tasks, owner, withCount).update(emptySet(), rows)
+            }
+        }
+    }
+
+    private val mutex = Mutex()
+    private val counts = HashMap<String, Entry<Int>>()
+    private val lists = HashMap<String, Entry<Counted<CaldavFilters>>>()
+    private val tags = HashMap<String, Entry<Counted<TagFilters>>>()
+    private val places = HashMap<String, Entry<Counted<LocationFilters>>>()
+    private var generation = 0L
+
+    suspend fun count(filter: Filter): Int =
+        cached(counts, filter.sql!!) { taskDao.count(filter) }
+
+    suspend fun getCaldavFilters(account: String): List<CaldavFilters> =
+        cached(lists, account) {
+            Counted.of(
+                filters = caldavDao.getCaldavFilters(account),
+                rows = caldavDao.getCountedTasks(account),
+                owner = { it.caldavCalendar.uuid },
+                withCount = { filter, count -> filter.copy(count = count) },
+            )
+        }
+            .counted()
+
+    suspend fun getTagFilters(): List<TagFilters> =
+        cached(tags, ALL) {
+            Counted.of(
+                filters = tagDataDao.getTagFilters(),
+                rows = tagDataDao.getCountedTasks(),
+                owner = { it.tagData.remoteId },
+                withCount = { filter, count -> filter.copy(count = count) },
+            )
+        }
+            .counted()
+
+    suspend fun getPlaceFilters(): List<LocationFilters> =
+        cached(places, ALL) {
+            Counted.of(
+                filters = locationDao.getPlaceFilters(),
+                rows = locationDao.getCountedTasks(),
+                owner = { it.place.uid },
+                withCount = { filter, count -> filter.copy(count = count) },
+            )
+        }
+            .counted()
+
+    suspend fun invalidate(changes: ChangeSet) {
+        if (changes.tasks.isEmpty() || changes.lists.isNotEmpty()) {
+            mutex.withLock {
+                generation++
+                counts.clear()
+                invalidateLists(changes)
+                if (changes.affectsTables(TAG_TABLES)) tags.clear()
+                if (changes.affectsTables(PLACE_TABLES)) places.clear()
+            }
+            return
+        }
+        val (hasLists, hasTags, hasPlaces) = mutex.withLock {
+            Triple(lists.isNotEmpty(), tags.isNotEmpty(), places.isNotEmpty())
+        }
+        val changed = changes.tasks.toList()
+        val listRows = if (hasLists && changes.affectsTables(LIST_TABLES)) {
+            caldavDao.getCountedTasks(changed)
+        } else null
+        val tagRows = if (hasTags && changes.affectsTables(TAG_TABLES)) {
+            tagDataDao.getCountedTasks(changed)
+        } else null
+        val placeRows = if (hasPlaces && changes.affectsTables(PLACE_TABLES)) {
+            locationDao.getCountedTasks(changed)
+        } else null
+        mutex.withLock {
+            generation++
+            counts.clear()
+            listRows?.let { lists.update(changes.tasks, it) }
+            tagRows?.let { tags.update(changes.tasks, it) }
+            placeRows?.let { places.update(changes.tasks, it) }
+        }
+    }
+
+    private fun invalidateLists(changes: ChangeSet) {
+        if (!changes.affectsTables(LIST_TABLES)) {
+            return
+        }
+        val owners = lists.filterValues { entry ->
+            entry.value.owners.any { changes.lists.contains(it) }
+        }
+        val known = owners.values.flatMap { it.value.owners }
+        if (changes.lists.isEmpty() || !known.containsAll(changes.lists)) {
+            // a list we haven't seen may be new, so every account needs a recount
+            lists.clear()
+        } else {
+            owners.keys.forEach { lists.remove(it) }
+        }
+    }
+
+    private fun <T> HashMap<String, Entry<Counted<T>>>.update(
+        changed: Set<Long>,
+        rows: List<CountedTask>,
+    ) {
+        val known = values.flatMapTo(HashSet()) { it.value.owners }
+        if (rows.any { !known.contains(it.owner) }) {
+            // the tasks are counted somewhere we haven't seen, which may be new
+            clear()
+            return
+        }
+        entries.forEach { entry ->
+            entry.setValue(Entry(entry.value.value.update(changed, rows), entry.value.created))
+        }
+    }
+
+    private suspend fun <T> cached(
+        cache: HashMap<String, Entry<T>>,
+        key: String,
+        load: suspend () -> T,
+    ): T {
+        val (entry, startGeneration) = mutex.withLock { cache[key] to generation }
+        val start = now()
+        if (entry != null && start - entry.created < maxAge) {
+            return entry.value
+        }
+        val value = load()
+        mutex.withLock {
+            // don't store a value that was loaded before an invalidation
+            if (generation == startGeneration) {
+                cache[key] = Entry(value, start)
+            }
+        }
+        return value
+    }
+}
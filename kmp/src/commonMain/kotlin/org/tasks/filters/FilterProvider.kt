@@ -68,8 +68,8 @@ class FilterProvider(
         }
     }
 
-    suspend fun drawerItems(): List<FilterListItem> =
-        getAllFilters(showCreate = true, hideUnused = true, showSignIn = true)
+    suspend fun drawerItems(counts: FilterCountCache? = null): List<FilterListItem> =
+        getAllFilters(showCreate = true, hideUnused = true, showSignIn = true, counts = counts)
 
     suspend fun allLists(): List<Filter> =
         caldavFilters(showCreate = false, forceExpand = true)
@@ -151,12 +151,13 @@ class FilterProvider(
         showCreate: Boolean,
         hideUnused: Boolean,
         forceExpand: Boolean,
+        counts: FilterCountCache? = null,
     ): List<FilterListItem> =
             if (!configuration.tagsEnabled) {
                 emptyList()
             } else {
                 val collapsed = !forceExpand && tasksPreferences.get(collapseTags, false)
-                val children = tagDataDao.getTagFilters()
+                val children = (counts?.getTagFilters() ?: tagDataDao.getTagFilters())
                     .filterIf(hideUnused && configuration.hideUnusedTags) {
                         it.count > 0
                     }
@@ -182,12 +183,13 @@ class FilterProvider(
         showCreate: Boolean,
         hideUnused: Boolean,
         forceExpand: Boolean,
+        counts: FilterCountCache? = null,
     ): List<FilterListItem> =
             if (!configuration.placesEnabled) {
                 emptyList()
             } else {
                 val collapsed = !forceExpand && tasksPreferences.get(collapsePlaces, false)
-                val children = locationDao.getPlaceFilters()
+                val children = (counts?.getPlaceFilters() ?: locationDao.getPlaceFilters())
                     .filterIf(hideUnused && configuration.hideUnusedPlaces) {
                         it.count > 0
                     }
@@ -216,6 +218,7 @@ class FilterProvider(
         forceExpand: Boolean = false,
         showCreateList: Boolean = showCreate,
         showSignIn: Boolean = false,
+        counts: FilterCountCache? = null,
     ): List<FilterListItem> =
             if (showBuiltIn) {
                 arrayListOf(MyTasksFilter.create())
@@ -224,9 +227,9 @@ class FilterProvider(
             }
                     .asSequence()
                     .plus(addFilters(showCreate, showBuiltIn, forceExpand))
-                    .plus(addTags(showCreate, hideUnused, forceExpand))
-                    .plus(addPlaces(showCreate, hideUnused, forceExpand))
-                    .plus(caldavFilters(showCreateList, forceExpand, showSignIn))
+                    .plus(addTags(showCreate, hideUnused, forceExpand, counts))
+                    .plus(addPlaces(showCreate, hideUnused, forceExpand, counts))
+                    .plus(caldavFilters(showCreateList, forceExpand, showSignIn, counts))
                     .toList()
                     .plusAllIf(TasksBuildConfig.DEBUG) { getDebugFilters() }
 
@@ -234,6 +237,7 @@ class FilterProvider(
         showCreate: Boolean,
         forceExpand: Boolean,
         showSignIn: Boolean = false,
+        counts: FilterCountCache? = null,
     ): List<FilterListItem> {
         val accounts = caldavDao.getAccounts()
         val signIn = if (showSignIn) signInAccount(accounts) else emptyList()
@@ -244,6 +248,7 @@ class FilterProvider(
                 showCreate = showCreate,
                 forceExpand = forceExpand,
                 subtitle = account.drawerSubtitle(multipleTypes),
+                counts = counts,
             )
         }
     }
@@ -266,10 +271,12 @@ class FilterProvider(
         forceExpand: Boolean,
         hideCollapse: Boolean = false,
         subtitle: StringResource? = null,
+        counts: FilterCountCache? = null,
     ): List<FilterListItem> {
         val collapsed = !forceExpand && account.isCollapsed
-        val children = caldavDao
-            .getCaldavFilters(account.uuid!!)
+        val lists = counts?.getCaldavFilters(account.uuid!!)
+            ?: caldavDao.getCaldavFilters(account.uuid!!)
+        val children = lists
             .map {
                 CaldavFilter(
                     calendar = it.caldavCalendar,
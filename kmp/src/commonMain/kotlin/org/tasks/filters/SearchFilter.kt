@@ -1,6 +1,9 @@
 package org.tasks.filters
 
 import org.tasks.CommonParcelize
+import org.tasks.data.TaskListQuery
+import org.tasks.data.db.Table
+import org.tasks.data.db.TaskSearch
 import org.tasks.data.entity.CaldavCalendar
 import org.tasks.data.entity.CaldavTask
 import org.tasks.data.entity.Geofence
@@ -9,6 +12,7 @@ import org.tasks.data.entity.Tag
 import org.tasks.data.entity.Task
 import org.tasks.data.entity.UserActivity
 import org.tasks.data.sql.Criterion
+import org.tasks.data.sql.Field
 import org.tasks.data.sql.Join
 import org.tasks.data.sql.Query
 import org.tasks.data.sql.QueryTemplate
@@ -17,55 +21,89 @@ import org.tasks.data.sql.QueryTemplate
 data class SearchFilter(
     override val title: String,
     val query: String,
+    /** Only search these tasks, the matches of a query that this query refines */
+    val within: List<Long>? = null,
+    /** Tasks already known to match [query], read directly instead of searching again */
+    val matches: List<Long>? = null,
 ) : Filter() {
     override val sql: String
         get() {
-            val matcher = "%$query%"
+            val ids = (matches ?: within)?.let {
+                Task.ID.`in`(
+                    Query.select(Field.field("value"))
+                        .from(Table("json_each(?${TaskListQuery.FILTER_PARAMETER})"))
+                )
+            }
+            val search = if (matches != null) {
+                null
+            } else {
+                TaskSearch.matchQuery(query)
+                    ?.let { match ->
+                        Task.ID.`in`(
+                            Query.select(TaskSearch.DOCID)
+                                .from(TaskSearch.TABLE)
+                                .where(Field.field(TaskSearch.TABLE_NAME).match(match))
+                        )
+                    }
+                    ?: matchSubstring()
+            }
             return QueryTemplate()
                 .where(
                     Criterion.and(
                         Task.DELETION_DATE.eq(0),
-                        Criterion.or(
-                            Task.NOTES.like(matcher),
-                            Task.TITLE.like(matcher),
-                            Task.ID.`in`(
-                                Query.select(Tag.TASK)
-                                    .from(Tag.TABLE)
-                                    .where(Tag.NAME.like(matcher))
-                            ),
-                            Task.UUID.`in`(
-                                Query.select(UserActivity.TASK)
-                                    .from(UserActivity.TABLE)
-                                    .where(UserActivity.MESSAGE.like(matcher))
-                            ),
-                            Task.ID.`in`(
-                                Query.select(Geofence.TASK)
-                                    .from(Geofence.TABLE)
-                                    .join(Join.inner(Place.TABLE, Place.UID.eq(Geofence.PLACE)))
-                                    .where(
-                                        Criterion.or(
-                                            Place.NAME.like(matcher),
-                                            Place.ADDRESS.like(matcher)
-                                        )
-                                    )
-                            ),
-                            Task.ID.`in`(
-                                Query.select(CaldavTask.TASK)
-                                    .from(CaldavTask.TABLE)
-                                    .join(
-                                        Join.inner(
-                                            CaldavCalendar.TABLE,
-                                            CaldavCalendar.UUID.eq(CaldavTask.CALENDAR)
-                                        )
-                                    )
-                                    .where(CaldavCalendar.NAME.like(matcher))
-                            ),
-                        )
+                        *listOfNotNull(ids, search).toTypedArray(),
                     )
                 )
                 .toString()
         }
 
+    /** The ids are bound as a JSON array, so the query text doesn't change with them */
+    override val args: Map<Int, Any?>
+        get() = (matches ?: within)
+            ?.let { mapOf(TaskListQuery.FILTER_PARAMETER to it.joinToString(",", "[", "]")) }
+            ?: emptyMap()
+
+    /** Queries without any words can't use the index, so fall back to a substring search */
+    private fun matchSubstring(): Criterion {
+        val matcher = "%$query%"
+        return Criterion.or(
+            Task.NOTES.like(matcher),
+            Task.TITLE.like(matcher),
+            Task.ID.`in`(
+                Query.select(Tag.TASK)
+                    .from(Tag.TABLE)
+                    .where(Tag.NAME.like(matcher))
+            ),
+            Task.UUID.`in`(
+                Query.select(UserActivity.TASK)
+                    .from(UserActivity.TABLE)
+                    .where(UserActivity.MESSAGE.like(matcher))
+            ),
+            Task.ID.`in`(
+                Query.select(Geofence.TASK)
+                    .from(Geofence.TABLE)
+                    .join(Join.inner(Place.TABLE, Place.UID.eq(Geofence.PLACE)))
+                    .where(
+                        Criterion.or(
+                            Place.NAME.like(matcher),
+                            Place.ADDRESS.like(matcher)
+                        )
+                    )
+            ),
+            Task.ID.`in`(
+                Query.select(CaldavTask.TASK)
+                    .from(CaldavTask.TABLE)
+                    .join(
+                        Join.inner(
+                            CaldavCalendar.TABLE,
+                            CaldavCalendar.UUID.eq(CaldavTask.CALENDAR)
+                        )
+                    )
+                    .where(CaldavCalendar.NAME.like(matcher))
+            ),
+        )
+    }
+
     override fun areItemsTheSame(other: FilterListItem): Boolean {
         return other is SearchFilter
     }
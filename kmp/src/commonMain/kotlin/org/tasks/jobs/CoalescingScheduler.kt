@@ -0,0 +1,105 @@
+package org.tasks.jobs
+
+import co.touchlab.kermit.Logger
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+import org.tasks.notifications.Notifier
+import org.tasks.time.DateTimeUtils2.currentTimeMillis
+import kotlin.concurrent.Volatile
+import kotlin.coroutines.CoroutineContext
+import kotlin.coroutines.cancellation.CancellationException
+
+/**
+ * Merges the notification check and list refresh requested after every task save. A burst of
+ * saves - completing a multi-selection, applying a sync - triggers notifications and schedules a
+ * refresh for its first save, and once more for the rest at the earliest time any of them asked
+ * for.
+ *
+ * The first request is passed on right away, so a save made just before the process is killed
+ * still reaches WorkManager. Requests that follow within [debounceMs] of each other are held back
+ * until the burst goes quiet, or [maxWaitMs] after it started so a long running sync can't hold
+ * notifications back
+ */
+class CoalescingScheduler(
+    private val notifier: Notifier,
+    private val backgroundWork: BackgroundWork,
+    coroutineContext: CoroutineContext,
+    private val debounceMs: Long = DEBOUNCE_MS,
+    private val maxWaitMs: Long = MAX_WAIT_MS,
+    private val now: () -> Long = { currentTimeMillis() },
+) {
+    private val scope = CoroutineScope(coroutineContext + SupervisorJob())
+    private val mutex = Mutex()
+    private var burst: Burst? = null
+
+    private class Burst(val started: Long) {
+        var refreshAt: Long? = null
+        var requests = 0
+        var close: Job? = null
+    }
+
+    /** Requests held back and merged into the end of a burst */
+    @Volatile
+    var coalesced = 0L
+        private set
+
+    /** Times notifications were triggered and a refresh scheduled */
+    @Volatile
+    var flushed = 0L
+        private set
+
+    suspend fun schedule(refreshAt: Long = now() + REFRESH_DELAY_MS) {
+        val first = mutex.withLock {
+            val time = now()
+            val current = burst
+            if (current == null) {
+                burst = Burst(started = time).also { it.close = closeLater(it, time) }
+                flushed++
+                true
+            } else {
+                coalesced++
+                current.refreshAt = minOf(current.refreshAt ?: refreshAt, refreshAt)
+                current.requests++
+                current.close?.cancel()
+                current.close = closeLater(current, time)
+                false
+            }
+        }
+        if (first) {
+            run(refreshAt, 1)
+        }
+    }
+
+    private fun closeLater(burst: Burst, time: Long) = scope.launch {
+        delay(minOf(debounceMs, burst.started + maxWaitMs - time).coerceAtLeast(0))
+        val refreshAt = mutex.withLock {
+            this@CoalescingScheduler.burst = null
+            burst.refreshAt?.also { flushed++ }
+        } ?: return@launch
+        run(refreshAt, burst.requests)
+    }
+
+    private suspend fun run(refreshAt: Long, requests: Int) {
+        Logger.d(TAG) { "Flushing $requests requests, refresh at $refreshAt" }
+        try {
+            notifier.triggerNotifications()
+            backgroundWork.scheduleRefresh(refreshAt)
+        } catch (e: CancellationException) {
+            throw e
+        } catch (e: Exception) {
+            Logger.e(TAG, e) { "Failed to flush $requests requests" }
+        }
+    }
+
+    companion object {
+        private const val TAG = "CoalescingScheduler"
+        private const val DEBOUNCE_MS = 1000L
+        private const val MAX_WAIT_MS = 10_000L
+        private const val REFRESH_DELAY_MS = 5_000L
+    }
+}
@@ -151,6 +151,9 @@ interface AppPreferences {
     suspend fun setDefaultLocation(value: String?)
     suspend fun setDefaultLocationReminder(value: Int)
     suspend fun setLocationUpdateIntervalMinutes(value: Int)
+    /** The default due time and time zone that the alarm timeline was calculated for */
+    suspend fun alarmSchedule(): String? = null
+    suspend fun setAlarmSchedule(value: String) {}
     suspend fun datePickerPreferences(): DatePickerPreferences = DatePickerPreferences()
     suspend fun setDatePickerInputMode(value: Boolean) {}
     suspend fun setTimePickerInputMode(value: Boolean) {}
@@ -73,6 +73,7 @@ class TasksPreferences(private val dataStore: DataStore<Preferences>) {
         val installVersion = intPreferencesKey("install_version")
         val installDate = longPreferencesKey("install_date")
         val deviceInstallVersion = intPreferencesKey("device_install_version")
+        val alarmSchedule = stringPreferencesKey("alarm_schedule")
         val currentVersion = intPreferencesKey("current_version")
         val blogLastChecked = longPreferencesKey("blog_last_checked")
         val blogFeedMode = intPreferencesKey("blog_feed_mode")
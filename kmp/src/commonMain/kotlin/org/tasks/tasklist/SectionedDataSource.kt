@@ -22,6 +22,9 @@ class SectionedDataSource(
         getSections()
     }
 
+    /** Sorted header positions, for counting the headers in front of a position */
+    private var headerPositions: List<Int> = sections.keys.toList()
+
     fun getItem(position: Int): TaskContainer = tasks[sectionedPositionToPosition(position)]
 
     fun getHeaderValue(position: Int): Long = getSection(position).value
@@ -36,14 +39,13 @@ class SectionedDataSource(
             return getSection(sectionedPosition).firstPosition
         }
 
-        var offset = 0
-        sections.forEach { (_, section) ->
-            if (section.sectionedPosition > sectionedPosition) {
-                return@forEach
-            }
-            --offset
-        }
-        return sectionedPosition + offset
+        return sectionedPosition - headersBefore(sectionedPosition)
+    }
+
+    /** Number of headers at or before [sectionedPosition] */
+    private fun headersBefore(sectionedPosition: Int): Int {
+        val index = headerPositions.binarySearch(sectionedPosition)
+        return if (index >= 0) index + 1 else -(index + 1)
     }
 
     val taskCount: Int
@@ -62,8 +64,19 @@ class SectionedDataSource(
     override fun iterator(): Iterator<UiItem> {
         return object : Iterator<UiItem> {
             private var index = 0
+            private var headers = 0
             override fun hasNext() = index < size
-            override fun next(): UiItem = get(index++)
+            override fun next(): UiItem {
+                val section = sections[index]
+                val item = if (section != null) {
+                    headers++
+                    UiItem.Header(section.value, section.collapsed)
+                } else {
+                    UiItem.Task(tasks[index - headers])
+                }
+                index++
+                return item
+            }
         }
     }
 
@@ -76,7 +89,21 @@ class SectionedDataSource(
     }
 
     override fun subList(fromIndex: Int, toIndex: Int): List<UiItem> {
-        return iterator().asSequence().drop(fromIndex).take(toIndex - fromIndex).toList()
+        if (fromIndex < 0 || toIndex > size || fromIndex > toIndex) {
+            throw IndexOutOfBoundsException("fromIndex: $fromIndex, toIndex: $toIndex, size: $size")
+        }
+        val result = ArrayList<UiItem>(toIndex - fromIndex)
+        var headers = if (fromIndex > 0) headersBefore(fromIndex - 1) else 0
+        for (index in fromIndex until toIndex) {
+            val section = sections[index]
+            if (section != null) {
+                result.add(UiItem.Header(section.value, section.collapsed))
+                headers++
+            } else {
+                result.add(UiItem.Task(tasks[index - headers]))
+            }
+        }
+        return result
     }
 
     override fun lastIndexOf(element: UiItem): Int {
@@ -198,6 +225,7 @@ class SectionedDataSource(
         val newFirstPosition = previousSection?.firstPosition ?: (old.firstPosition + offset)
         val new = AdapterSection(newFirstPosition, old.value, newSectionedPosition, old.collapsed, old.header)
         sections[new.sectionedPosition] = new
+        headerPositions = sections.keys.toList()
     }
 
     tailrec fun getNearestHeader(sectionedPosition: Int): Long =
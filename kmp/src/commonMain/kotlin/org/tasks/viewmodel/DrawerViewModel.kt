@@ -12,19 +12,31 @@ import kotlinx.coroutines.flow.Flow
 import kotlinx.coroutines.flow.MutableStateFlow
 import kotlinx.coroutines.flow.asStateFlow
 import kotlinx.coroutines.flow.emptyFlow
+import kotlinx.coroutines.flow.filter
 import kotlinx.coroutines.flow.launchIn
 import kotlinx.coroutines.flow.onEach
 import kotlinx.coroutines.flow.update
 import kotlinx.coroutines.launch
 import org.tasks.billing.PurchaseState
+import org.tasks.broadcast.ChangeSet
 import org.tasks.compose.drawer.DrawerItem
 import org.tasks.compose.throttleLatest
 import org.tasks.data.NO_COUNT
-import org.tasks.data.count
 import org.tasks.data.dao.CaldavDao
+import org.tasks.data.dao.LocationDao
+import org.tasks.data.dao.TagDataDao
 import org.tasks.data.dao.TaskDao
+import org.tasks.data.entity.CaldavAccount
+import org.tasks.data.entity.CaldavCalendar
+import org.tasks.data.entity.CaldavTask
+import org.tasks.data.entity.Geofence
+import org.tasks.data.entity.Place
+import org.tasks.data.entity.Tag
+import org.tasks.data.entity.TagData
+import org.tasks.data.entity.Task
 import org.tasks.filters.CaldavFilter
 import org.tasks.filters.Filter
+import org.tasks.filters.FilterCountCache
 import org.tasks.filters.FilterProvider
 import org.tasks.filters.NavigationDrawerSubheader
 import org.tasks.filters.SignInPrompt
@@ -33,13 +45,27 @@ import org.tasks.kmp.org.tasks.themes.ColorProvider
 
 private const val TAG = "DrawerViewModel"
 
+private val DRAWER_TABLES = setOf(
+    Task.TABLE_NAME,
+    CaldavTask.TABLE.name(),
+    CaldavCalendar.TABLE.name(),
+    CaldavAccount.TABLE.name(),
+    Tag.TABLE.name(),
+    TagData.TABLE_NAME,
+    Geofence.TABLE_NAME,
+    Place.TABLE_NAME,
+    org.tasks.data.entity.Filter.TABLE_NAME,
+)
+
 open class DrawerViewModel(
     private val filterProvider: FilterProvider,
     private val taskDao: TaskDao,
     private val caldavDao: CaldavDao,
+    tagDataDao: TagDataDao,
+    locationDao: LocationDao,
     private val tasksPreferences: TasksPreferences,
     private val purchaseState: PurchaseState,
-    refreshFlow: Flow<Unit> = emptyFlow(),
+    changes: Flow<ChangeSet> = emptyFlow(),
 ) : ViewModel() {
 
     data class State(
@@ -51,11 +77,14 @@ open class DrawerViewModel(
 
     private val _state = MutableStateFlow(State())
     val state = _state.asStateFlow()
+    private val counts = FilterCountCache(taskDao, caldavDao, tagDataDao, locationDao)
 
     init {
         updateFilters()
 
-        refreshFlow
+        changes
+            .filter { it.affectsTables(DRAWER_TABLES) }
+            .onEach { counts.invalidate(it) }
             .throttleLatest(1000)
             .onEach { updateFilters() }
             .launchIn(viewModelScope)
@@ -74,7 +103,7 @@ open class DrawerViewModel(
             try {
                 val selectedFilter = _state.value.selectedFilter
                 filterProvider
-                    .drawerItems()
+                    .drawerItems(counts)
                     .map { item -> item.toDrawerItem(selectedFilter) }
                     .let { filters ->
                         _state.update { it.copy(drawerItems = filters.toPersistentList()) }
@@ -113,7 +142,7 @@ open class DrawerViewModel(
                     color = if (purchaseState.purchasedThemes() || ColorProvider.isFreeColor(item.tint)) item.tint else 0,
                     adjustColor = item.tint != 0,
                     count = item.count.takeIf { it != NO_COUNT } ?: try {
-                        taskDao.count(item)
+                        counts.count(item)
                     } catch (e: CancellationException) {
                         throw e
                     } catch (e: Exception) {
@@ -146,7 +175,7 @@ open class DrawerViewModel(
             color = if (purchaseState.purchasedThemes() || ColorProvider.isFreeColor(tint)) tint else 0,
             adjustColor = tint != 0,
             count = count.takeIf { it != NO_COUNT } ?: try {
-                taskDao.count(this)
+                counts.count(this)
             } catch (e: Exception) {
                 Logger.e(e, tag = TAG) { "Failed to count tasks" }
                 0
@@ -0,0 +1,58 @@
+package org.tasks.watch
+
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+import org.tasks.time.DateTimeUtils2.currentTimeMillis
+import org.tasks.time.ONE_MINUTE
+
+/**
+ * The last few lists built for a watch, so paging through a list slices every page after the
+ * first out of memory instead of running the whole query again.
+ *
+ * Entries are dropped on [invalidate], and expire after [maxAge] since lists depend on the current
+ * time as well as the data. Every load gets a new [Snapshot.version], a watch that sees the
+ * version change between pages knows the list changed underneath it
+ */
+class SnapshotCache<K, V>(
+    private val maxSize: Int = 4,
+    private val maxAge: Long = ONE_MINUTE,
+    private val now: () -> Long = { currentTimeMillis() },
+) {
+    class Snapshot<V>(val version: Long, val value: V, internal val created: Long)
+
+    private val mutex = Mutex()
+    private val snapshots = LinkedHashMap<K, Snapshot<V>>()
+    private var generation = 0L
+    private var version = 0L
+
+    suspend fun get(key: K, load: suspend () -> V): Snapshot<V> {
+        val start = now()
+        val (cached, startGeneration) = mutex.withLock {
+            // re-insert so the most recently used list is evicted last
+            val cached = snapshots.remove(key)
+                ?.takeIf { start - it.created < maxAge }
+                ?.also { snapshots[key] = it }
+            cached to generation
+        }
+        if (cached != null) {
+            return cached
+        }
+        val value = load()
+        return mutex.withLock {
+            val snapshot = Snapshot(++version, value, start)
+            // don't store a value that was loaded before an invalidation
+            if (generation == startGeneration) {
+                snapshots[key] = snapshot
+                while (snapshots.size > maxSize) {
+                    snapshots.remove(snapshots.keys.first())
+                }
+            }
+            snapshot
+        }
+    }
+
+    suspend fun invalidate() = mutex.withLock {
+        generation++
+        snapshots.clear()
+    }
+}
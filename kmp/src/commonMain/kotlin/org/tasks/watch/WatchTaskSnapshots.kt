@@ -0,0 +1,56 @@
+package org.tasks.watch
+
+import org.tasks.data.TaskListQuery
+import org.tasks.data.dao.TaskDao
+import org.tasks.data.fetchTasks
+import org.tasks.filters.AstridOrderingFilter
+import org.tasks.filters.Filter
+import org.tasks.filters.key
+import org.tasks.preferences.QueryPreferences
+import org.tasks.tasklist.SectionedDataSource
+
+typealias WatchTaskSnapshots = SnapshotCache<WatchTaskListKey, SectionedDataSource>
+
+/**
+ * Everything a watch task list depends on besides the data and the current time. Lists share
+ * their sql and only differ in bind arguments, so the [filter] key is part of it too
+ */
+data class WatchTaskListKey(
+    val filter: String,
+    val sql: String,
+    val disableHeaders: Boolean,
+    val groupMode: Int,
+    val subtaskMode: Int,
+    val completedAtBottom: Boolean,
+    val collapsed: Set<Long>,
+)
+
+suspend fun WatchTaskSnapshots.getTaskList(
+    taskDao: TaskDao,
+    preferences: QueryPreferences,
+    filter: Filter,
+    collapsed: Set<Long>,
+): SnapshotCache.Snapshot<SectionedDataSource> {
+    val query = TaskListQuery.getParameterizedQuery(preferences, filter)
+    val key = WatchTaskListKey(
+        filter = filter.key(),
+        sql = query.sql,
+        disableHeaders = filter.disableHeaders()
+                || (filter.supportsManualSort() && preferences.isManualSort)
+                || (filter is AstridOrderingFilter && preferences.isAstridSort),
+        groupMode = preferences.groupMode,
+        subtaskMode = preferences.subtaskMode,
+        completedAtBottom = preferences.completedTasksAtBottom,
+        collapsed = collapsed,
+    )
+    return get(key) {
+        SectionedDataSource(
+            tasks = taskDao.fetchTasks(query),
+            disableHeaders = key.disableHeaders,
+            groupMode = key.groupMode,
+            subtaskMode = key.subtaskMode,
+            completedAtBottom = key.completedAtBottom,
+            collapsed = key.collapsed,
+        )
+    }
+}
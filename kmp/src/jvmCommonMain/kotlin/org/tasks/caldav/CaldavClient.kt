@@ -417,6 +417,7 @@ open class CaldavClient(
             CalDAV.GetCTag,
             CalDAV.CalendarColor,
             WebDAV.SyncToken,
+            WebDAV.SupportedReportSet,
             ShareAccess.NAME,
             Invite.NAME,
             OCOwnerPrincipal.NAME,
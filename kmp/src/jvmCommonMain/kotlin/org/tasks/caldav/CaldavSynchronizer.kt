@@ -20,8 +20,14 @@ import at.bitfire.dav4jvm.property.webdav.DisplayName
 import at.bitfire.dav4jvm.property.webdav.GetETag
 import at.bitfire.dav4jvm.property.webdav.GetETag.Companion.fromResponse
 import at.bitfire.dav4jvm.property.webdav.SyncToken
+import at.bitfire.dav4jvm.property.webdav.WebDAV
+import org.tasks.broadcast.ChangeSet
 import org.tasks.service.TaskDeleter
 import org.tasks.data.dao.DirtyDao
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.launch
 import kotlinx.coroutines.runBlocking
 import net.fortuna.ical4j.model.property.ProdId
 import okhttp3.Headers
@@ -92,6 +98,14 @@ import java.security.NoSuchAlgorithmException
 
 private const val TAG = "CaldavSync"
 
+const val DEFAULT_CALENDAR_CONCURRENCY = 4
+
+private const val MULTIGET_INITIAL_CHUNK = 30
+private const val MULTIGET_MIN_CHUNK = 10
+private const val MULTIGET_MAX_CHUNK = 200
+private const val MULTIGET_TARGET_BYTES = 256 * 1024
+private const val MULTIGET_BUFFER = 1
+
 class CaldavSynchronizer(
     private val caldavDao: CaldavDao,
     private val dirtyDao: DirtyDao,
@@ -104,7 +118,10 @@ class CaldavSynchronizer(
     private val vtodoCache: VtodoCache,
     private val accountDataRepository: TasksAccountDataRepository,
     private val tagMetadataSync: TagMetadataSync,
+    private val calendarConcurrency: Int = DEFAULT_CALENDAR_CONCURRENCY,
 ) {
+    private val runner = CalendarSyncRunner(calendarConcurrency)
+
     suspend fun sync(account: CaldavAccount, hasPro: Boolean) {
         Logger.d(TAG) { "Synchronizing $account" }
         if (!hasPro && !account.isTasksOrg) {
@@ -189,7 +206,7 @@ class CaldavSynchronizer(
         } else {
             null
         }
-        for (resource in resources) {
+        val calendars = resources.map { resource ->
             val url = resource.href.toString()
             var calendar = caldavDao.getCalendarByUrl(account.uuid!!, url)
             val remoteName = resource[DisplayName::class.java]!!.displayName
@@ -229,11 +246,14 @@ class CaldavSynchronizer(
                     icon = icon ?: calendar.icon,
                 )
                 caldavDao.update(calendar)
-                refreshBroadcaster.broadcastRefresh()
+                refreshBroadcaster.broadcastChanges(ChangeSet.lists(calendar.uuid))
             }
             resource
                 .principals(account, calendar)
                 .let { principalDao.deleteRemoved(calendar.id, it.map(PrincipalAccess::id)) }
+            Triple(resource, calendar, guestOwned)
+        }
+        runner.forEach(calendars) { (resource, calendar, guestOwned) ->
             fetchChanges(account, calendar, resource, caldavClient.httpClient)
             when {
                 guestOwned -> pushLocalChanges(
@@ -264,6 +284,8 @@ class CaldavSynchronizer(
         else -> SERVER_UNKNOWN
     }
 
+    private suspend fun <T> write(block: suspend () -> T): T = runner.write(block)
+
     private suspend fun setError(account: CaldavAccount, throwable: Throwable) {
         Logger.e(throwable) { "$account: ${throwable.message}" }
         setError(account, throwable.message)
@@ -275,7 +297,7 @@ class CaldavSynchronizer(
         }
         account.error = message
         caldavDao.update(account)
-        refreshBroadcaster.broadcastRefresh()
+        refreshBroadcaster.broadcastChanges(ChangeSet.tables(CaldavAccount.TABLE.name()))
         if (!message.isNullOrBlank()) {
             Logger.e(TAG) { message.orEmpty() }
         }
@@ -295,28 +317,165 @@ class CaldavSynchronizer(
         }
         Logger.d(TAG) { "updating $caldavCalendar" }
         val davCalendar = DavCalendar(httpClient, httpUrl)
+        val complete = caldavCalendar.syncToken
+            ?.takeIf { it.isNotBlank() && resource.supportsSyncCollection }
+            ?.let { fetchChangesSince(account, caldavCalendar, davCalendar, it) }
+            ?: fetchAllChanges(account, caldavCalendar, davCalendar, resource)
+        if (!complete) {
+            return
+        }
+        caldavCalendar.ctag = remoteCtag
+        Logger.d(TAG) { "UPDATE $caldavCalendar" }
+        write {
+            caldavDao.update(caldavCalendar)
+            Logger.d(TAG) { "Updating parents for ${caldavCalendar.uuid}" }
+            caldavDao.updateParents(caldavCalendar.uuid!!)
+        }
+        refreshBroadcaster.broadcastChanges(ChangeSet.lists(caldavCalendar.uuid))
+    }
+
+    private suspend fun fetchAllChanges(
+        account: CaldavAccount,
+        caldavCalendar: CaldavCalendar,
+        davCalendar: DavCalendar,
+        resource: Response,
+    ): Boolean {
         val members = ArrayList<Response>()
         davCalendar.calendarQuery("VTODO", null, null) { response, relation ->
             if (relation == HrefRelation.MEMBER) {
                 members.add(response)
             }
         }
+        val local = caldavDao.getObjects(caldavCalendar.uuid!!).associateBy { it.obj }
+        val remoteObjects = HashSet<String>(members.size)
         val changed = members.filter { vCard: Response ->
+            val fileName = vCard.hrefName()
+            remoteObjects.add(fileName)
             val eTag = vCard[GetETag::class.java]?.eTag
-            if (eTag.isNullOrBlank()) {
-                return@filter false
+            !eTag.isNullOrBlank() && eTag != local[fileName]?.etag
+        }
+        if (!fetchObjects(account, caldavCalendar, davCalendar, changed.map { it.href })) {
+            return false
+        }
+        local.values
+                .filter { it.synced && !it.deleted && !remoteObjects.contains(it.obj) }
+                .map { it.obj }
+                .takeIf { it.isNotEmpty() }
+                ?.let {
+                    Logger.d(TAG) { "DELETED $it" }
+                    val tasks = caldavDao.getTasks(caldavCalendar.uuid!!, it)
+                    write { taskDeleter.delete(tasks.map { it.task }) }
+                }
+        caldavCalendar.syncToken = resource
+            .takeIf { it.supportsSyncCollection }
+            ?.get(SyncToken::class.java)
+            ?.token
+        return true
+    }
+
+    /**
+     * Incremental fetch using an RFC 6578 sync-collection REPORT.
+     *
+     * @return null if the server rejected the stored sync-token and a full fetch is required
+     */
+    private suspend fun fetchChangesSince(
+        account: CaldavAccount,
+        caldavCalendar: CaldavCalendar,
+        davCalendar: DavCalendar,
+        syncToken: String,
+    ): Boolean? {
+        val changed = LinkedHashMap<String, Response>()
+        val removed = HashSet<String>()
+        var token = syncToken
+        try {
+            do {
+                var truncated = false
+                val properties = davCalendar.reportChanges(token, false, null, WebDAV.GetETag) { response, relation ->
+                    when (relation) {
+                        HrefRelation.SELF ->
+                            if (response.status?.code == 507) {
+                                truncated = true
+                            }
+                        HrefRelation.MEMBER -> {
+                            val name = response.hrefName()
+                            if (response.status?.code == 404) {
+                                changed.remove(name)
+                                removed.add(name)
+                            } else {
+                                removed.remove(name)
+                                changed[name] = response
+                            }
+                        }
+                        else -> {}
+                    }
+                }
+                token = properties.filterIsInstance<SyncToken>().firstOrNull()?.token ?: token
+            } while (truncated)
+        } catch (e: HttpException) {
+            if (e.statusCode == 403 || e.statusCode == 409) {
+                Logger.w(TAG) { "$caldavCalendar: sync-token rejected (${e.statusCode}), fetching all changes" }
+                caldavCalendar.syncToken = null
+                return null
             }
-            eTag != caldavDao.getTask(caldavCalendar.uuid!!, vCard.hrefName())?.etag
-        }
-        for (items in changed.chunked(30)) {
-            val urls = items.map { it.href }
-            val responses = ArrayList<Response>()
-            davCalendar.multiget(urls) { response, relation ->
-                if (relation == HrefRelation.MEMBER) {
-                    responses.add(response)
+            throw e
+        }
+        Logger.d(TAG) { "sync-collection $caldavCalendar: ${changed.size} changed, ${removed.size} removed" }
+        val etags = caldavDao
+            .getTasks(caldavCalendar.uuid!!, changed.keys.toList())
+            .associate { it.obj to it.etag }
+        val updates = changed.filter { (name, response) ->
+            val eTag = response[GetETag::class.java]?.eTag
+            !eTag.isNullOrBlank() && eTag != etags[name]
+        }
+        if (!fetchObjects(account, caldavCalendar, davCalendar, updates.values.map { it.href })) {
+            return false
+        }
+        removed
+            .takeIf { it.isNotEmpty() }
+            ?.let { caldavDao.getTasks(caldavCalendar.uuid!!, it.toList()) }
+            ?.takeIf { it.isNotEmpty() }
+            ?.let { tasks ->
+                Logger.d(TAG) { "DELETED ${tasks.map { it.obj }}" }
+                write { taskDeleter.delete(tasks.map { it.task }) }
+            }
+        caldavCalendar.syncToken = token
+        return true
+    }
+
+    private suspend fun fetchObjects(
+        account: CaldavAccount,
+        caldavCalendar: CaldavCalendar,
+        davCalendar: DavCalendar,
+        hrefs: List<HttpUrl>,
+    ): Boolean = coroutineScope {
+        if (hrefs.isEmpty()) {
+            return@coroutineScope true
+        }
+        // the next multiget is in flight while the previous chunk is being applied
+        val chunks = Channel<List<Response>>(capacity = MULTIGET_BUFFER)
+        val producer = launch(Dispatchers.IO) {
+            try {
+                var offset = 0
+                var chunkSize = MULTIGET_INITIAL_CHUNK
+                while (offset < hrefs.size) {
+                    val urls = hrefs.subList(offset, minOf(offset + chunkSize, hrefs.size))
+                    offset += urls.size
+                    val responses = ArrayList<Response>()
+                    davCalendar.multiget(urls) { response, relation ->
+                        if (relation == HrefRelation.MEMBER) {
+                            responses.add(response)
+                        }
+                    }
+                    Logger.d(TAG) { "MULTI $urls" }
+                    chunkSize = nextChunkSize(chunkSize, urls.size, responses)
+                    chunks.send(responses)
                 }
+            } finally {
+                chunks.close()
             }
-            Logger.d(TAG) { "MULTI $urls" }
+        }
+        for (responses in chunks) {
+            val items = ArrayList<iCalendar.RemoteVtodo>()
             for (vCard in responses) {
                 val eTag = vCard[GetETag::class.java]?.eTag
                 val url = vCard.href
@@ -328,30 +487,36 @@ class CaldavSynchronizer(
                     throw DavException("Received CalDAV GET response without CalendarData for $url")
                 }
                 val fileName = vCard.hrefName()
+                if (!vtodo.contains("BEGIN:VTODO", ignoreCase = true)) {
+                    // sync-collection reports every member, including events in mixed calendars
+                    Logger.d(TAG) { "Skipping non-VTODO: $fileName" }
+                    continue
+                }
                 val remote = fromVtodo(vtodo)
                 if (remote == null) {
                     Logger.e(TAG) { "Invalid VCALENDAR: $fileName" }
-                    return
+                    write { iCal.fromVtodos(account, caldavCalendar, items) }
+                    producer.cancel()
+                    return@coroutineScope false
                 }
-                val caldavTask = caldavDao.getTask(caldavCalendar.uuid!!, fileName)
-                iCal.fromVtodo(account, caldavCalendar, caldavTask, remote, vtodo, fileName, eTag)
+                items.add(iCalendar.RemoteVtodo(fileName, eTag, vtodo, remote))
             }
+            write { iCal.fromVtodos(account, caldavCalendar, items) }
         }
-        caldavDao
-                .getRemoteObjects(caldavCalendar.uuid!!)
-                .subtract(members.map { it.hrefName() })
-                .takeIf { it.isNotEmpty() }
-                ?.let {
-                    Logger.d(TAG) { "DELETED $it" }
-                    val tasks = caldavDao.getTasks(caldavCalendar.uuid!!, it.toList())
-                    taskDeleter.delete(tasks.map { it.task })
-                }
-        caldavCalendar.ctag = remoteCtag
-        Logger.d(TAG) { "UPDATE $caldavCalendar" }
-        caldavDao.update(caldavCalendar)
-        Logger.d(TAG) { "Updating parents for ${caldavCalendar.uuid}" }
-        caldavDao.updateParents(caldavCalendar.uuid!!)
-        refreshBroadcaster.broadcastRefresh()
+        true
+    }
+
+    /**
+     * Size the next multiget so that each response is roughly [MULTIGET_TARGET_BYTES]
+     */
+    private fun nextChunkSize(current: Int, requested: Int, responses: List<Response>): Int {
+        val bytes = responses.sumOf { it[CalendarData::class.java]?.iCalendar?.length ?: 0 }
+        if (bytes == 0 || requested < current) {
+            return current
+        }
+        val bytesPerObject = bytes / responses.size
+        return (MULTIGET_TARGET_BYTES / bytesPerObject.coerceAtLeast(1))
+            .coerceIn(MULTIGET_MIN_CHUNK, MULTIGET_MAX_CHUNK)
     }
 
     private suspend fun pushLocalChanges(
@@ -399,7 +564,7 @@ class CaldavSynchronizer(
             Logger.e(e) { e.message.orEmpty() }
             return false
         }
-        caldavDao.delete(caldavTask)
+        write { caldavDao.delete(caldavTask) }
         return true
     }
 
@@ -416,41 +581,43 @@ class CaldavSynchronizer(
         Logger.d(TAG) { "pushing caldavTask=$caldavTask task=$task" }
         if (task.isDeleted) {
             if (deleteRemoteResource(httpClient, httpUrl, calendar, caldavTask)) {
-                taskDeleter.delete(task)
+                write { taskDeleter.delete(task) }
             }
             return
         }
-        dirtyDao.withDirtyVersion(caldavTaskId, dirtyVersion) {
-            val data = iCal.toVtodo(account, calendar, caldavTask, task)
-            val requestBody = data.toRequestBody(contentType = MIME_ICALENDAR)
-            val objPath = caldavTask.obj
-                ?: run {
-                    Logger.e(TAG) { "null obj for caldavTask.id=${caldavTask.id} task.id=${task.id}" }
-                    caldavTask.obj = caldavTask.remoteId?.let { CaldavTask.objectName(it) }
-                    caldavTask.obj
-                }
-                ?: throw IllegalStateException("Push failed - missing UUID")
+        val data = iCal.toVtodo(account, calendar, caldavTask, task)
+        val requestBody = data.toRequestBody(contentType = MIME_ICALENDAR)
+        val objPath = caldavTask.obj
+            ?: run {
+                Logger.e(TAG) { "null obj for caldavTask.id=${caldavTask.id} task.id=${task.id}" }
+                caldavTask.obj = caldavTask.remoteId?.let { CaldavTask.objectName(it) }
+                caldavTask.obj
+            }
+            ?: throw IllegalStateException("Push failed - missing UUID")
 
-            try {
-                val remote = DavResource(
-                    httpClient = httpClient,
-                    location = httpUrl.newBuilder().addPathSegment(objPath).build(),
-                )
-                remote.put(requestBody) {
-                    if (it.isSuccessful) {
-                        fromResponse(it)?.eTag?.takeIf(String::isNotBlank)?.let { etag ->
-                            caldavTask.etag = etag
-                        }
-                        runBlocking {
-                            vtodoCache.putVtodo(calendar, caldavTask, String(data))
-                        }
+        try {
+            val remote = DavResource(
+                httpClient = httpClient,
+                location = httpUrl.newBuilder().addPathSegment(objPath).build(),
+            )
+            remote.put(requestBody) {
+                if (it.isSuccessful) {
+                    fromResponse(it)?.eTag?.takeIf(String::isNotBlank)?.let { etag ->
+                        caldavTask.etag = etag
+                    }
+                    runBlocking {
+                        vtodoCache.putVtodo(calendar, caldavTask, String(data))
                     }
                 }
-            } catch (e: HttpException) {
-                Logger.e(e) { e.message.orEmpty() }
-                throw e
             }
-            caldavDao.update(caldavTask)
+        } catch (e: HttpException) {
+            Logger.e(e) { e.message.orEmpty() }
+            throw e
+        }
+        write {
+            dirtyDao.withDirtyVersion(caldavTaskId, dirtyVersion) {
+                caldavDao.update(caldavTask)
+            }
         }
         Logger.d(TAG) { "SENT $caldavTask" }
     }
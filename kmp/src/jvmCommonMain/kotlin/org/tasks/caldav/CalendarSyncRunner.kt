@@ -0,0 +1,29 @@
+package org.tasks.caldav
+
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.sync.withLock
+import kotlinx.coroutines.sync.withPermit
+
+/**
+ * Syncs up to [concurrency] calendars at once. Network requests overlap, but writes go through a
+ * single writer so that transactions and dirty version bookkeeping from different calendars don't
+ * interleave
+ */
+internal class CalendarSyncRunner(private val concurrency: Int) {
+    private val writer = Mutex()
+
+    suspend fun <C> forEach(calendars: List<C>, block: suspend (C) -> Unit) {
+        val permits = Semaphore(concurrency)
+        coroutineScope {
+            calendars
+                .map { calendar -> async { permits.withPermit { block(calendar) } } }
+                .awaitAll()
+        }
+    }
+
+    suspend fun <T> write(block: suspend () -> T): T = writer.withLock { block() }
+}
@@ -1,5 +1,7 @@
 package org.tasks.caldav
 
+import at.bitfire.dav4jvm.okhttp.Response
+import at.bitfire.dav4jvm.property.webdav.SupportedReportSet
 import kotlinx.serialization.json.Json
 import kotlinx.serialization.json.JsonObject
 import kotlinx.serialization.json.buildJsonObject
@@ -24,6 +26,13 @@ suspend fun CaldavClient.supportsDeadProperties(principal: HttpUrl): Boolean {
     return version == rev && revOf(readBack) == rev
 }
 
+/**
+ * RFC 6578: a collection advertises `DAV:sync-collection` in its `supported-report-set` when it
+ * can answer incremental REPORTs against a previously issued sync-token.
+ */
+val Response.supportsSyncCollection: Boolean
+    get() = this[SupportedReportSet::class.java]?.reports?.contains(SupportedReportSet.SYNC_COLLECTION) == true
+
 private fun revOf(raw: String?): String? {
     if (raw.isNullOrBlank()) return null
     return try {
@@ -2,6 +2,8 @@ package org.tasks.caldav
 
 import co.touchlab.kermit.Logger
 import com.todoroo.astrid.alarms.AlarmService
+import kotlinx.coroutines.NonCancellable
+import kotlinx.coroutines.withContext
 import net.fortuna.ical4j.model.DateTime
 import net.fortuna.ical4j.model.Parameter
 import net.fortuna.ical4j.model.Property
@@ -23,6 +25,7 @@ import org.tasks.caldav.GeoUtils.toGeo
 import org.tasks.caldav.GeoUtils.toLikeString
 import org.tasks.caldav.extensions.toAlarms
 import org.tasks.caldav.extensions.toVAlarms
+import org.tasks.data.Location
 import org.tasks.data.TaskSaver
 import org.tasks.data.createDueDate
 import org.tasks.data.createGeofence
@@ -40,6 +43,7 @@ import org.tasks.data.entity.CaldavAccount
 import org.tasks.data.entity.CaldavCalendar
 import org.tasks.data.entity.CaldavTask
 import org.tasks.data.entity.Place
+import org.tasks.data.entity.TagData
 import org.tasks.data.entity.Task.Companion.HIDE_UNTIL_SPECIFIC_DAY
 import org.tasks.data.entity.Task.Companion.HIDE_UNTIL_SPECIFIC_DAY_TIME
 import org.tasks.data.entity.Task.Companion.URGENCY_SPECIFIC_DAY
@@ -86,42 +90,37 @@ class iCalendar(
 ) {
 
     suspend fun setPlace(taskId: Long, geo: Geo?) {
+        val afterCommit = AfterCommit()
+        setPlace(taskId, geo, locationDao.getGeofences(taskId), afterCommit)
+        afterCommit.run()
+    }
+
+    private suspend fun setPlace(
+        taskId: Long,
+        geo: Geo?,
+        existing: Location?,
+        afterCommit: AfterCommit,
+    ) {
         if (geo == null) {
-            locationDao.getActiveGeofences(taskId).forEach {
-                locationDao.delete(it.geofence)
-                locationService.updateGeofences(it.place)
+            if (existing != null) {
+                locationDao.getActiveGeofences(taskId).forEach {
+                    locationDao.delete(it.geofence)
+                    afterCommit.updateGeofences(it.place)
+                }
             }
             return
         }
-        var place: Place? = locationDao.findPlace(
+        val place = locationDao.findPlace(
                 geo.latitude.toLikeString(),
                 geo.longitude.toLikeString()
-        )
-        if (place == null) {
-            place = Place(
-                latitude = geo.latitude.toDouble(),
-                longitude = geo.longitude.toDouble(),
-            ).let {
-                it.copy(id = locationDao.insert(it))
-            }
-            try {
-                geocoder.reverseGeocode(
-                    MapPosition(place.latitude, place.longitude)
-                )?.takeIf { place.distanceTo(it) <= 100 }
-                ?.let { result ->
-                    place = place.copy(
-                        name = result.name,
-                        address = result.address,
-                        phone = result.phone,
-                        url = result.url,
-                    )
-                    locationDao.update(place)
-                }
-            } catch (e: Exception) {
-                Logger.e(e) { e.message.orEmpty() }
-            }
+        ) ?: Place(
+            latitude = geo.latitude.toDouble(),
+            longitude = geo.longitude.toDouble(),
+        ).let {
+            it.copy(id = locationDao.insert(it))
+        }.also {
+            afterCommit.placeCreated(it)
         }
-        val existing = locationDao.getGeofences(taskId)
         if (existing == null) {
             locationDao.insert(
                 createGeofence(
@@ -132,9 +131,29 @@ class iCalendar(
         } else if (place != existing.place) {
             val geofence = existing.geofence.copy(place = place.uid)
             locationDao.update(geofence)
-            locationService.updateGeofences(existing.place)
+            afterCommit.updateGeofences(existing.place)
+        }
+        afterCommit.updateGeofences(place)
+    }
+
+    private suspend fun reverseGeocode(place: Place) {
+        try {
+            geocoder.reverseGeocode(
+                MapPosition(place.latitude, place.longitude)
+            )?.takeIf { place.distanceTo(it) <= 100 }
+            ?.let { result ->
+                locationDao.update(
+                    place.copy(
+                        name = result.name,
+                        address = result.address,
+                        phone = result.phone,
+                        url = result.url,
+                    )
+                )
+            }
+        } catch (e: Exception) {
+            Logger.e(e) { e.message.orEmpty() }
         }
-        locationService.updateGeofences(place)
     }
 
     suspend fun toVtodo(
@@ -210,8 +229,94 @@ class iCalendar(
         if (existing?.isDeleted() == true) {
             return
         }
+        val local = loadLocalState(listOfNotNull(existing))
+        applyAndCommit { afterCommit ->
+            applyRemote(account, calendar, existing, remote, vtodo, obj, eTag, local, afterCommit)
+        }
+    }
+
+    /**
+     * Apply a chunk of remote changes in a single transaction, loading local state for the whole
+     * chunk up front instead of once per task. Task and alarm side effects, notifications,
+     * geofences and reverse geocoding run after commit.
+     */
+    suspend fun fromVtodos(
+        account: CaldavAccount,
+        calendar: CaldavCalendar,
+        items: List<RemoteVtodo>,
+    ) {
+        if (items.isEmpty()) {
+            return
+        }
+        applyAndCommit { afterCommit ->
+            taskDao.inTransaction {
+                val existing = caldavDao
+                    .getTasks(calendar.uuid!!, items.map { it.obj })
+                    .associateBy { it.obj }
+                val local = loadLocalState(existing.values.filterNot { it.isDeleted() })
+                items.forEach { item ->
+                    val caldavTask = existing[item.obj]
+                    if (caldavTask?.isDeleted() == true) {
+                        return@forEach
+                    }
+                    applyRemote(
+                        account,
+                        calendar,
+                        caldavTask,
+                        item.remote,
+                        item.vtodo,
+                        item.obj,
+                        item.eTag,
+                        local,
+                        afterCommit,
+                    )
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs [block] and then its [AfterCommit] work. If [block] fails, the vtodo cache writes it
+     * made are undone, so the cache never gets ahead of the etag in the database
+     */
+    private suspend fun applyAndCommit(block: suspend (AfterCommit) -> Unit) {
+        val afterCommit = AfterCommit()
+        try {
+            block(afterCommit)
+        } catch (e: Exception) {
+            withContext(NonCancellable) { afterCommit.rollback() }
+            throw e
+        }
+        afterCommit.run()
+    }
+
+    private suspend fun loadLocalState(existing: List<CaldavTask>): LocalState {
+        val taskIds = existing.map { it.task }
+        return LocalState(
+            tasks = taskDao.fetch(taskIds).associateBy { it.id },
+            dirty = dirtyDao.getDirty(existing.map { it.id }),
+            locations = locationDao
+                .getGeofences(taskIds)
+                .groupBy { it.task }
+                .mapValues { (_, locations) -> locations.first() },
+            tags = tagDataDao.getTagDataForTasks(taskIds).groupBy({ it.task }, { it.tagData }),
+            alarms = alarmDao.getAlarms(taskIds).groupBy { it.task },
+        )
+    }
+
+    private suspend fun applyRemote(
+        account: CaldavAccount,
+        calendar: CaldavCalendar,
+        existing: CaldavTask?,
+        remote: VTodoTask,
+        vtodo: String?,
+        obj: String?,
+        eTag: String?,
+        state: LocalState,
+        afterCommit: AfterCommit,
+    ) {
         val task = existing?.task
-            ?.let { taskDao.fetch(it) }
+            ?.let { state.tasks[it] }
             ?: org.tasks.data.entity.Task(
                 readOnly = calendar.readOnly(),
                 priority = preferences.defaultPriority(),
@@ -228,14 +333,11 @@ class iCalendar(
                     obj = obj,
                 )
         val isNew = caldavTask.id == org.tasks.data.entity.Task.NO_ID
-        val dirty = !isNew && dirtyDao.isDirty(caldavTask.id) == true
-        val local = if (account.isOpenTasks) {
-            null
-        } else {
-            vtodoCache.getVtodo(calendar, caldavTask)?.let { fromVtodo(it) }
-        }
+        val dirty = !isNew && state.dirty.contains(caldavTask.id)
+        val cached = if (account.isOpenTasks) null else vtodoCache.getVtodo(calendar, caldavTask)
+        val local = cached?.let { fromVtodo(it) }
         if (dirty && local == null) {
-            if (!account.isOpenTasks) vtodoCache.putVtodo(calendar, caldavTask, vtodo)
+            if (!account.isOpenTasks) afterCommit.putVtodo(calendar, caldavTask, vtodo, cached)
             caldavTask.etag = eTag
             caldavDao.update(caldavTask)
             return
@@ -246,24 +348,20 @@ class iCalendar(
         val remoteModificationDate = task.modificationDate
 
         if (task.isCompleted) {
-            notifier.cancel(task.id, CancelReason.REMOTE_COMPLETION)
+            afterCommit.cancel(task.id, CancelReason.REMOTE_COMPLETION)
         } else if (task.isDeleted) {
-            notifier.cancel(task.id, CancelReason.REMOTE_DELETION)
+            afterCommit.cancel(task.id, CancelReason.REMOTE_DELETION)
         } else if ((remote.lastAck ?: 0) > task.reminderLast) {
-            notifier.cancel(task.id, CancelReason.REMOTE_CLEAR)
+            afterCommit.cancel(task.id, CancelReason.REMOTE_CLEAR)
         }
 
-        if (local != null) {
-            val place = locationDao.getPlaceForTask(task.id)
-            if (place?.toGeo() == local.geoPosition) {
-                setPlace(task.id, remote.geoPosition)
-            }
-        } else {
-            setPlace(task.id, remote.geoPosition)
+        val location = state.locations[task.id]
+        if (local == null || location?.place?.toGeo() == local.geoPosition) {
+            setPlace(task.id, remote.geoPosition, location, afterCommit)
         }
 
         if (local != null) {
-            val current = tagDataDao.getTagDataForTask(task.id).mapNotNull { it.name }
+            val current = state.tags[task.id].orEmpty().mapNotNull { it.name }
             tagDao.applyTags(
                 task,
                 mergeCategories(base = local.categories, local = current, remote = remote.categories),
@@ -279,15 +377,19 @@ class iCalendar(
             vtodo?.prodId()?.supportsReminders() != true // other client doesn't support reminder sync
         ) {
             task.setDefaultReminders(preferences)
-            alarmService.synchronizeAlarms(task.id, task.getDefaultAlarms(preferences.isDefaultDueTimeEnabled()).toMutableSet())
+            afterCommit.alarmsSaved(
+                alarmService.saveAlarms(task.id, task.getDefaultAlarms(preferences.isDefaultDueTimeEnabled()).toMutableSet())
+            )
         } else if (account.reminderSync) {
-            val localAlarms = alarmDao.getAlarms(task.id).map { it.copy(id = 0, task = 0) }
+            val localAlarms = state.alarms[task.id].orEmpty().map { it.copy(id = 0, task = 0) }
             if (account.isOpenTasks) {
                 val randomReminders = localAlarms.filter { it.type == Alarm.TYPE_RANDOM }
                 if (localAlarms.toSet() == randomReminders.toSet()) {
-                    alarmService.synchronizeAlarms(
-                        caldavTask.task,
-                        remote.reminders.plus(randomReminders).toMutableSet(),
+                    afterCommit.alarmsSaved(
+                        alarmService.saveAlarms(
+                            caldavTask.task,
+                            remote.reminders.plus(randomReminders).toMutableSet(),
+                        )
                     )
                 }
             } else {
@@ -296,7 +398,9 @@ class iCalendar(
                     local = localAlarms,
                     remote = remote.reminders,
                 )
-                alarmService.synchronizeAlarms(caldavTask.task, merged.toMutableSet())
+                afterCommit.alarmsSaved(
+                    alarmService.saveAlarms(caldavTask.task, merged.toMutableSet())
+                )
             }
         }
 
@@ -305,8 +409,10 @@ class iCalendar(
         if (!dirty) {
             task.modificationDate = remoteModificationDate
         }
-        taskSaver.save(task, original, dirty = false)
-        if (!account.isOpenTasks) vtodoCache.putVtodo(calendar, caldavTask, vtodo)
+        if (taskSaver.update(task, original, dirty = false)) {
+            afterCommit.taskSaved(task, original)
+        }
+        if (!account.isOpenTasks) afterCommit.putVtodo(calendar, caldavTask, vtodo, cached)
         caldavTask.etag = eTag
         if (dirty) {
             // Keep the task dirty so the merged result is pushed next sync; do NOT markSynced (it
@@ -318,6 +424,84 @@ class iCalendar(
         }
     }
 
+    class RemoteVtodo(
+        val obj: String,
+        val eTag: String,
+        val vtodo: String,
+        val remote: VTodoTask,
+    )
+
+    /**
+     * Work outside the database that results from applying remote changes. It is collected while
+     * the transaction is open and run once it has committed. The vtodo cache is the exception, it
+     * is written right away and restored by [rollback] if the transaction fails
+     */
+    private inner class AfterCommit {
+        private val cancellations = LinkedHashMap<CancelReason, MutableList<Long>>()
+        private val alarms = ArrayList<AlarmService.SavedAlarms>()
+        private val saved = ArrayList<Pair<org.tasks.data.entity.Task, org.tasks.data.entity.Task>>()
+        private val geofences = LinkedHashMap<String?, Place>()
+        private val restore = ArrayList<suspend () -> Unit>()
+        private val created = ArrayList<Place>()
+
+        fun cancel(taskId: Long, reason: CancelReason) {
+            cancellations.getOrPut(reason) { ArrayList() }.add(taskId)
+        }
+
+        fun alarmsSaved(result: AlarmService.SavedAlarms) {
+            alarms.add(result)
+        }
+
+        fun taskSaved(task: org.tasks.data.entity.Task, original: org.tasks.data.entity.Task) {
+            saved.add(task to original)
+        }
+
+        fun updateGeofences(place: Place) {
+            geofences[place.uid] = place
+        }
+
+        suspend fun putVtodo(
+            calendar: CaldavCalendar,
+            caldavTask: CaldavTask,
+            vtodo: String?,
+            previous: String?,
+        ) {
+            vtodoCache.putVtodo(calendar, caldavTask, vtodo)
+            val copy = caldavTask.copy()
+            restore.add {
+                if (previous == null) {
+                    vtodoCache.delete(calendar, copy)
+                } else {
+                    vtodoCache.putVtodo(calendar, copy, previous)
+                }
+            }
+        }
+
+        fun placeCreated(place: Place) {
+            created.add(place)
+        }
+
+        suspend fun rollback() {
+            restore.asReversed().forEach { it() }
+        }
+
+        suspend fun run() {
+            cancellations.forEach { (reason, ids) -> notifier.cancel(ids, reason) }
+            alarms.forEach { alarmService.afterSaveAlarms(it) }
+            saved.forEach { (task, original) -> taskSaver.afterSave(task, original) }
+            geofences.values.forEach { locationService.updateGeofences(it) }
+            created.forEach { reverseGeocode(it) }
+        }
+    }
+
+    private class LocalState(
+        val tasks: Map<Long, org.tasks.data.entity.Task>,
+        val dirty: Set<Long>,
+        val locations: Map<Long, Location>,
+        val tags: Map<Long, List<TagData>>,
+        val alarms: Map<Long, List<Alarm>>,
+    )
+
     companion object {
         private const val APPLE_SORT_ORDER = "X-APPLE-SORT-ORDER"
         private const val OC_HIDESUBTASKS = "X-OC-HIDESUBTASKS"
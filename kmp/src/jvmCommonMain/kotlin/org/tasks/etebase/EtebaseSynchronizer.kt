@@ -15,6 +15,7 @@ import org.tasks.analytics.AnalyticsEvents.PARAM_TASK_COUNT
 import org.tasks.analytics.AnalyticsEvents.PARAM_TYPE
 import org.tasks.analytics.Constants
 import org.tasks.analytics.Reporting
+import org.tasks.broadcast.ChangeSet
 import org.tasks.broadcast.RefreshBroadcaster
 import org.tasks.caldav.Task.Companion.prodId
 import org.tasks.caldav.VtodoCache
@@ -119,7 +120,7 @@ class EtebaseSynchronizer(
                 calendar.name = meta.name
                 calendar.color = color
                 caldavDao.update(calendar)
-                refreshBroadcaster.broadcastRefresh()
+                refreshBroadcaster.broadcastChanges(ChangeSet.lists(calendar.uuid))
             }
             fetchChanges(account, client, calendar, collection)
             pushLocalChanges(account, client, calendar, collection)
@@ -132,7 +133,7 @@ class EtebaseSynchronizer(
     private suspend fun setError(account: CaldavAccount, message: String?) {
         account.error = message
         caldavDao.update(account)
-        refreshBroadcaster.broadcastRefresh()
+        refreshBroadcaster.broadcastChanges(ChangeSet.tables(CaldavAccount.TABLE.name()))
         if (!message.isNullOrEmpty()) {
             Logger.e("EtebaseSynchronizer") { message }
         }
@@ -157,7 +158,7 @@ class EtebaseSynchronizer(
         caldavDao.update(caldavCalendar)
         Logger.d("EtebaseSynchronizer") { "Updating parents for ${caldavCalendar.uuid}" }
         caldavDao.updateParents(caldavCalendar.uuid!!)
-        refreshBroadcaster.broadcastRefresh()
+        refreshBroadcaster.broadcastChanges(ChangeSet.lists(caldavCalendar.uuid))
     }
 
     private suspend fun pushLocalChanges(
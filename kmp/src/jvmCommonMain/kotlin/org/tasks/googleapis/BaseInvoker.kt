@@ -1,7 +1,12 @@
 package org.tasks.googleapis
 
 import co.touchlab.kermit.Logger
+import com.google.api.client.googleapis.batch.BatchRequest
+import com.google.api.client.googleapis.batch.json.JsonBatchCallback
+import com.google.api.client.googleapis.json.GoogleJsonError
+import com.google.api.client.googleapis.json.GoogleJsonResponseException
 import com.google.api.client.googleapis.services.json.AbstractGoogleJsonClientRequest
+import com.google.api.client.http.HttpHeaders
 import com.google.api.client.http.HttpResponseException
 import com.google.api.client.json.GenericJson
 import kotlinx.coroutines.Dispatchers
@@ -42,6 +47,58 @@ abstract class BaseInvoker(
         response
     }
 
+    /**
+     * Execute [requests] in HTTP batches of up to [MAX_BATCH_SIZE]. Requests that fail with a 401
+     * are retried once after invalidating the token.
+     *
+     * @return the response or failure for each request, in order
+     */
+    @Throws(IOException::class)
+    protected suspend fun <T> executeBatch(
+        requests: List<AbstractGoogleJsonClientRequest<T>>,
+        newBatch: () -> BatchRequest,
+    ): List<Result<T?>> = withContext(Dispatchers.IO) {
+        val results = MutableList<Result<T?>?>(requests.size) { null }
+        var pending = requests.indices.toList()
+        var retry = false
+        while (pending.isNotEmpty()) {
+            credentialsAdapter.checkToken()
+            val unauthorized = ArrayList<Int>()
+            pending.chunked(MAX_BATCH_SIZE).forEach { chunk ->
+                val batch = newBatch()
+                chunk.forEach { index ->
+                    requests[index].queue(batch, object : JsonBatchCallback<T>() {
+                        override fun onSuccess(t: T, responseHeaders: HttpHeaders) {
+                            results[index] = Result.success(t)
+                        }
+
+                        override fun onFailure(e: GoogleJsonError, responseHeaders: HttpHeaders) {
+                            if (e.code == 401 && !retry) {
+                                unauthorized.add(index)
+                            } else {
+                                results[index] = Result.failure(e.toException(responseHeaders))
+                            }
+                        }
+                    })
+                }
+                Logger.d(TAG) { "batch: ${chunk.joinToString { describeRequest(requests[it]) }}" }
+                batch.execute()
+            }
+            if (unauthorized.isEmpty()) {
+                break
+            }
+            credentialsAdapter.invalidateToken()
+            retry = true
+            pending = unauthorized
+        }
+        results.map { it!! }
+    }
+
+    private fun GoogleJsonError.toException(headers: HttpHeaders): IOException {
+        val e = GoogleJsonResponseException(HttpResponseException.Builder(code, message, headers), this)
+        return if (code == 404) HttpNotFoundException(e) else e
+    }
+
     private fun <T> prettyPrint(`object`: T?): Any? {
         if (TasksBuildConfig.DEBUG) {
             if (`object` is GenericJson) {
@@ -58,6 +115,7 @@ abstract class BaseInvoker(
 
     companion object {
         private const val TAG = "BaseInvoker"
+        private const val MAX_BATCH_SIZE = 50
         val APP_NAME = "Tasks/${TasksBuildConfig.VERSION_NAME}"
     }
 }
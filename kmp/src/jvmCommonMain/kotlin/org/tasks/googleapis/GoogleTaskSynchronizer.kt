@@ -17,6 +17,7 @@ import org.tasks.data.dao.AlarmDao
 import org.tasks.data.dao.CaldavDao
 import org.tasks.data.dao.DirtyDao
 import org.tasks.data.dao.GoogleTaskDao
+import org.tasks.data.dao.RemotePosition
 import org.tasks.data.dao.TaskDao
 import org.tasks.data.entity.CaldavAccount
 import org.tasks.data.entity.CaldavCalendar
@@ -162,20 +163,29 @@ class GoogleTaskSynchronizer(
             }
             val lastSync = fetchAndApplyRemoteChanges(gtasksInvoker, list) ?: continue
             if (!positionsUnchanged) {
-                gtasksInvoker.updatePositions(listId)
+                if (list.lastSync == 0L) {
+                    // the initial download already applied the position of every task
+                    googleTaskDao.reposition(caldavDao, listId)
+                } else {
+                    gtasksInvoker.updatePositions(listId)
+                }
             }
             caldavDao.insertOrReplace(list.copy(lastSync = lastSync, ctag = remoteEtag))
         }
         account.error = ""
     }
 
+    /**
+     * Positions for the whole list are fetched. Moving a task renumbers its siblings without
+     * changing their updated timestamp, so they wouldn't show up in an incremental fetch
+     */
     @Throws(IOException::class)
     private suspend fun GtasksInvoker.updatePositions(list: String) {
         Logger.d(TAG) { "updatePositions(list=$list)" }
-        fetchPositions(list).forEach { task ->
-            googleTaskDao.updatePosition(task.id, task.parent, task.position)
+        val positions = fetchPositions(list).map { task ->
+            RemotePosition(id = task.id, parent = task.parent, position = task.position)
         }
-        googleTaskDao.reposition(caldavDao, list)
+        googleTaskDao.updatePositions(caldavDao, list, positions)
     }
 
     @Throws(IOException::class)
@@ -216,84 +226,155 @@ class GoogleTaskSynchronizer(
         val tasks = calendars.flatMap { calendar ->
             dirtyDao.getTasksToPush(calendar.uuid!!).onEach { pushedTo.add(calendar.uuid!!) }
         }
+        // creates and moves depend on the remote ids of parents and siblings, so they are sent
+        // one at a time in order. Plain updates are independent and are batched.
+        val updates = ArrayList<PendingUpdate>()
         for (toPush in tasks) {
             try {
                 pushTask(toPush.task, toPush.caldavTaskId, toPush.dirtyVersion, gtasksInvoker)
+                    ?.let { updates.add(it) }
             } catch (e: RetryTaskException) {
                 return e.taskId
             } catch (e: HttpNotFoundException) {
-                val caldavTask = caldavDao.getCaldavTaskById(toPush.caldavTaskId)
-                when {
-                    caldavTask == null ->
-                        Logger.w(TAG, e) { "Task ${toPush.task.id} has no caldav task" }
+                onNotFound(toPush.task, toPush.caldavTaskId, e)
+            }
+        }
+        return pushUpdates(updates, gtasksInvoker)
+    }
 
-                    caldavTask.remoteId.isNullOrEmpty() ->
-                        Logger.w(TAG, e) {
-                            "Failed to create task ${toPush.task.id}, list ${caldavTask.calendar} not found"
-                        }
+    private suspend fun onNotFound(
+        task: org.tasks.data.entity.Task,
+        caldavTaskId: Long,
+        e: HttpNotFoundException,
+    ) {
+        val caldavTask = caldavDao.getCaldavTaskById(caldavTaskId)
+        when {
+            caldavTask == null ->
+                Logger.w(TAG, e) { "Task ${task.id} has no caldav task" }
 
-                    else -> {
-                        Logger.w(TAG, e) { "Task ${toPush.task.id} deleted remotely, deleting local copy" }
-                        taskDeleter.delete(toPush.task)
-                    }
+            caldavTask.remoteId.isNullOrEmpty() ->
+                Logger.w(TAG, e) {
+                    "Failed to create task ${task.id}, list ${caldavTask.calendar} not found"
                 }
+
+            else -> {
+                Logger.w(TAG, e) { "Task ${task.id} deleted remotely, deleting local copy" }
+                taskDeleter.delete(task)
             }
         }
-        return null
     }
 
+    /**
+     * @return the id of a task that needs to be retried because its remote id was stale
+     */
+    @Throws(IOException::class)
+    private suspend fun pushUpdates(
+        updates: List<PendingUpdate>,
+        gtasksInvoker: GtasksInvoker,
+    ): Long? {
+        if (updates.isEmpty()) {
+            return null
+        }
+        var retryTaskId: Long? = null
+        var error: Exception? = null
+        val results = gtasksInvoker.updateGtasks(updates.map { it.listId to it.remoteModel })
+        updates.zip(results).forEach { (update, result) ->
+            val task = update.task
+            when (val e = result.exceptionOrNull()) {
+                null -> dirtyDao.withDirtyVersion(update.caldavTaskId, update.dirtyVersion) {
+                    update.gtasksMetadata.isMoved = false
+                    write(task, update.gtasksMetadata)
+                }
+                is HttpNotFoundException -> {
+                    Logger.w(TAG) { "HTTP 404 for ${update.gtasksMetadata}" }
+                    onNotFound(task, update.caldavTaskId, e)
+                }
+                is GoogleJsonResponseException ->
+                    if (e.isInvalidTaskId) {
+                        clearInvalidTaskId(update.gtasksMetadata, e)
+                        retryTaskId = retryTaskId ?: task.id
+                    } else {
+                        error = error ?: e
+                    }
+                else -> error = error ?: e
+            }
+        }
+        error?.let { throw it }
+        return retryTaskId
+    }
+
+    private val GoogleJsonResponseException.isInvalidTaskId: Boolean
+        get() = statusCode == 400 && details?.message == "Invalid task ID"
+
+    private suspend fun clearInvalidTaskId(gtasksMetadata: CaldavTask, e: GoogleJsonResponseException) {
+        Logger.w(TAG) { "HTTP 400: Invalid task ID for ${gtasksMetadata.remoteId}, clearing to recreate on next sync" }
+        reporting.reportException(e)
+        googleTaskDao.update(
+            gtasksMetadata.copy(
+                remoteId = "",
+                isMoved = false,
+            )
+        )
+    }
+
+    /**
+     * @return an update to send in a batch, or null if the task was pushed on its own
+     */
     @Throws(IOException::class)
     private suspend fun pushTask(
         task: org.tasks.data.entity.Task,
         caldavTaskId: Long,
         dirtyVersion: Long?,
         gtasksInvoker: GtasksInvoker,
-    ) {
-        val gtasksMetadata = caldavDao.getCaldavTaskById(caldavTaskId) ?: return
+    ): PendingUpdate? {
+        val gtasksMetadata = caldavDao.getCaldavTaskById(caldavTaskId) ?: return null
         val newlyCreated = gtasksMetadata.remoteId.isNullOrEmpty()
         if (newlyCreated && task.deletionDate > 0) {
             taskDeleter.delete(task.id)
-            return
+            return null
         }
         if (newlyCreated && task.title.isNullOrEmpty()) {
             dirtyVersion?.let { dirtyDao.markPushed(caldavTaskId, it) }
-            return
+            return null
         }
-        dirtyDao.withDirtyVersion(caldavTaskId, dirtyVersion) {
-            val remoteModel = Task()
-            val remoteId: String?
-            val defaultRemoteList = defaultListProvider.getDefaultList()
-            var listId =
-                if (defaultRemoteList.isGoogleTasks) defaultRemoteList.uuid else DEFAULT_LIST
-            if (newlyCreated) { // Create case
-                gtasksMetadata.calendar?.takeIf { it.isNotBlank() }?.let {
-                    listId = it
-                }
-            } else { // update case
-                remoteId = gtasksMetadata.remoteId
-                listId = gtasksMetadata.calendar!!
-                remoteModel.id = remoteId
+        val remoteModel = Task()
+        val remoteId: String?
+        val defaultRemoteList = defaultListProvider.getDefaultList()
+        var listId =
+            if (defaultRemoteList.isGoogleTasks) defaultRemoteList.uuid else DEFAULT_LIST
+        if (newlyCreated) { // Create case
+            gtasksMetadata.calendar?.takeIf { it.isNotBlank() }?.let {
+                listId = it
             }
+        } else { // update case
+            remoteId = gtasksMetadata.remoteId
+            listId = gtasksMetadata.calendar!!
+            remoteModel.id = remoteId
+        }
 
-            // Update the remote model's changed properties
-            if (task.isDeleted) {
-                remoteModel.deleted = true
-            }
-            remoteModel.title = truncate(task.title, MAX_TITLE_LENGTH)
-            remoteModel.notes = truncate(task.notes, MAX_DESCRIPTION_LENGTH)
-            if (task.hasDueDate()) {
-                remoteModel.due =
-                    GtasksApiUtilities.unixTimeToGtasksDueDate(task.dueDate)?.toStringRfc3339()
-            }
-            if (task.isCompleted) {
-                remoteModel.completed =
-                    GtasksApiUtilities.unixTimeToGtasksCompletionTime(task.completionDate)
-                        ?.toStringRfc3339()
-                remoteModel.status = "completed"
-            } else {
-                remoteModel.completed = null
-                remoteModel.status = "needsAction"
-            }
+        // Update the remote model's changed properties
+        if (task.isDeleted) {
+            remoteModel.deleted = true
+        }
+        remoteModel.title = truncate(task.title, MAX_TITLE_LENGTH)
+        remoteModel.notes = truncate(task.notes, MAX_DESCRIPTION_LENGTH)
+        if (task.hasDueDate()) {
+            remoteModel.due =
+                GtasksApiUtilities.unixTimeToGtasksDueDate(task.dueDate)?.toStringRfc3339()
+        }
+        if (task.isCompleted) {
+            remoteModel.completed =
+                GtasksApiUtilities.unixTimeToGtasksCompletionTime(task.completionDate)
+                    ?.toStringRfc3339()
+            remoteModel.status = "completed"
+        } else {
+            remoteModel.completed = null
+            remoteModel.status = "needsAction"
+        }
+        if (!newlyCreated && (task.isDeleted || !gtasksMetadata.isMoved)) {
+            return PendingUpdate(task, caldavTaskId, dirtyVersion, gtasksMetadata, listId, remoteModel)
+        }
+        dirtyDao.withDirtyVersion(caldavTaskId, dirtyVersion) {
             if (newlyCreated) {
                 val parent = task.parent
                 val localParent =
@@ -357,15 +438,8 @@ class GoogleTaskSynchronizer(
                     try {
                         gtasksInvoker.updateGtask(listId, remoteModel)
                     } catch (e: GoogleJsonResponseException) {
-                        if (e.statusCode == 400 && e.details?.message == "Invalid task ID") {
-                            Logger.w(TAG) { "HTTP 400: Invalid task ID for ${remoteModel.id}, clearing to recreate on next sync" }
-                            reporting.reportException(e)
-                            googleTaskDao.update(
-                                gtasksMetadata.copy(
-                                    remoteId = "",
-                                    isMoved = false,
-                                )
-                            )
+                        if (e.isInvalidTaskId) {
+                            clearInvalidTaskId(gtasksMetadata, e)
                             throw RetryTaskException(task.id)
                         } else {
                             throw e
@@ -379,6 +453,7 @@ class GoogleTaskSynchronizer(
             gtasksMetadata.isMoved = false
             write(task, gtasksMetadata)
         }
+        return null
     }
 
     @Throws(IOException::class)
@@ -531,6 +606,15 @@ class GoogleTaskSynchronizer(
 
     private class RetryTaskException(val taskId: Long) : Exception()
 
+    private class PendingUpdate(
+        val task: org.tasks.data.entity.Task,
+        val caldavTaskId: Long,
+        val dirtyVersion: Long?,
+        val gtasksMetadata: CaldavTask,
+        val listId: String?,
+        val remoteModel: Task,
+    )
+
     companion object {
         private const val TAG = "GoogleTaskSynchronizer"
         private const val DEFAULT_LIST = "@default"
@@ -10,7 +10,7 @@ import com.google.api.services.tasks.model.TaskLists
 import java.io.IOException
 
 class GtasksInvoker(
-    credentials: CredentialsAdapter,
+    private val credentials: CredentialsAdapter,
 ) : BaseInvoker(credentials) {
     private val service =
         Tasks.Builder(NetHttpTransport(), GsonFactory(), credentials)
@@ -70,6 +70,16 @@ class GtasksInvoker(
     suspend fun updateGtask(listId: String?, task: Task) =
         execute(service.tasks().update(listId, task.id, task))
 
+    /**
+     * Update each (listId, task) pair using HTTP batch requests
+     */
+    @Throws(IOException::class)
+    suspend fun updateGtasks(tasks: List<Pair<String?, Task>>): List<Result<Task?>> =
+        executeBatch(
+            requests = tasks.map { (listId, task) -> service.tasks().update(listId, task.id, task) },
+            newBatch = { service.batch(credentials) },
+        )
+
     @Throws(IOException::class)
     suspend fun moveGtask(
         listId: String?,
@@ -3,7 +3,9 @@ package org.tasks.http
 import okhttp3.OkHttpClient
 import org.tasks.TasksBuildConfig
 
-class DefaultOkHttpClientFactory : OkHttpClientFactory {
+class DefaultOkHttpClientFactory(
+    private val sharedClient: SharedOkHttpClient = SharedOkHttpClient.default,
+) : OkHttpClientFactory {
     private val userAgent = "org.tasks/${TasksBuildConfig.VERSION_NAME} (desktop) ${System.getProperty("os.name")}/${System.getProperty("os.version")}"
 
     override suspend fun newClient(
@@ -11,9 +13,7 @@ class DefaultOkHttpClientFactory : OkHttpClientFactory {
         cookieKey: String?,
         block: (OkHttpClient.Builder) -> Unit,
     ): OkHttpClient {
-        val builder = OkHttpClient.Builder()
-            .followRedirects(false)
-            .followSslRedirects(true)
+        val builder = sharedClient.base.newBuilder()
             .addInterceptor(UserAgentInterceptor(userAgent))
         block(builder)
         return builder.build()
@@ -0,0 +1,30 @@
+package org.tasks.http
+
+import okhttp3.ConnectionPool
+import okhttp3.OkHttpClient
+import java.util.concurrent.TimeUnit
+
+/**
+ * Every [OkHttpClientFactory] derives its clients from [base] with [OkHttpClient.newBuilder], so
+ * they share one connection pool and dispatcher. Syncing several accounts against the same host
+ * can then reuse connections instead of doing a new TLS handshake per client.
+ *
+ * Factories use [default] unless they are given their own pool size and keep-alive.
+ */
+class SharedOkHttpClient(
+    maxIdleConnections: Int = DEFAULT_MAX_IDLE_CONNECTIONS,
+    keepAliveMinutes: Long = DEFAULT_KEEP_ALIVE_MINUTES,
+) {
+    val base: OkHttpClient = OkHttpClient.Builder()
+        .connectionPool(ConnectionPool(maxIdleConnections, keepAliveMinutes, TimeUnit.MINUTES))
+        .followRedirects(false)
+        .followSslRedirects(true)
+        .build()
+
+    companion object {
+        const val DEFAULT_MAX_IDLE_CONNECTIONS = 5
+        const val DEFAULT_KEEP_ALIVE_MINUTES = 5L
+
+        val default: SharedOkHttpClient by lazy { SharedOkHttpClient() }
+    }
+}
@@ -0,0 +1,82 @@
+package org.tasks.sync.microsoft
+
+import kotlinx.serialization.Serializable
+import kotlinx.serialization.json.JsonElement
+import kotlinx.serialization.json.decodeFromJsonElement
+import org.tasks.http.GraphErrorResponse
+import org.tasks.http.HttpException
+import org.tasks.http.NetworkException
+import org.tasks.http.NotFoundException
+import org.tasks.http.ServiceUnavailableException
+import org.tasks.http.UnauthorizedException
+
+@Serializable
+data class BatchRequests(
+    val requests: List<BatchRequest>,
+)
+
+@Serializable
+data class BatchRequest(
+    val id: String = "",
+    val method: String,
+    val url: String,
+    val headers: Map<String, String>? = null,
+    val body: JsonElement? = null,
+)
+
+@Serializable
+data class BatchResponses(
+    val responses: List<BatchResponse>,
+)
+
+@Serializable
+data class BatchResponse(
+    val id: String,
+    val status: Int,
+    val headers: Map<String, String>? = null,
+    val body: JsonElement? = null,
+) {
+    val isSuccess: Boolean
+        get() = status in 200..299
+
+    val retryAfter: Long?
+        get() = headers
+            ?.entries
+            ?.firstOrNull { it.key.equals("Retry-After", ignoreCase = true) }
+            ?.value
+            ?.toLongOrNull()
+
+    /**
+     * The exception [org.tasks.http.HttpErrorHandler] would have thrown for the same response
+     */
+    fun toException(): NetworkException? {
+        if (isSuccess) {
+            return null
+        }
+        val error = try {
+            body?.let { MicrosoftService.json.decodeFromJsonElement<GraphErrorResponse>(it) }?.error
+        } catch (e: Exception) {
+            null
+        }
+        val message = buildString {
+            append("HTTP $status")
+            error?.let {
+                append(" - ${it.code}")
+                if (it.message.isNotBlank()) {
+                    append(": ${it.message}")
+                }
+            }
+        }
+        return when {
+            error?.isTokenError() == true -> UnauthorizedException(message, graphCode = error.code)
+            status == 404 -> NotFoundException(message, graphCode = error?.code)
+            status in 500..599 -> ServiceUnavailableException(message, graphCode = error?.code)
+            else -> HttpException(status, message, graphCode = error?.code)
+        }
+    }
+
+    inline fun <reified T> decode(): T {
+        toException()?.let { throw it }
+        return MicrosoftService.json.decodeFromJsonElement(body!!)
+    }
+}
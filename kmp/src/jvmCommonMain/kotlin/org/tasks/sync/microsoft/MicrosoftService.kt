@@ -9,11 +9,15 @@ import io.ktor.client.request.post
 import io.ktor.client.request.setBody
 import io.ktor.http.ContentType
 import io.ktor.http.contentType
+import kotlinx.coroutines.delay
+import kotlinx.serialization.json.Json
+import kotlinx.serialization.json.JsonElement
+import kotlinx.serialization.json.encodeToJsonElement
 
 class MicrosoftService(
     private val client: HttpClient
 ) {
-    private val baseUrl: String = "https://graph.microsoft.com/v1.0/me/todo"
+    private val baseUrl: String = "$GRAPH_URL/me/todo"
 
     suspend fun getLists(): TaskLists = client.get("$baseUrl/lists").body()
 
@@ -85,4 +89,77 @@ class MicrosoftService(
                 contentType(ContentType.Application.Json)
             }
             .body()
+
+    fun createTaskRequest(listId: String, body: Tasks.Task) =
+        request("POST", "/lists/$listId/tasks", json.encodeToJsonElement(body))
+
+    fun updateTaskRequest(listId: String, taskId: String, body: Tasks.Task) =
+        request("PATCH", "/lists/$listId/tasks/$taskId", json.encodeToJsonElement(body))
+
+    fun deleteTaskRequest(listId: String, taskId: String) =
+        request("DELETE", "/lists/$listId/tasks/$taskId")
+
+    fun createChecklistItemRequest(listId: String, taskId: String, body: Tasks.Task.ChecklistItem) =
+        request("POST", "/lists/$listId/tasks/$taskId/checklistItems", json.encodeToJsonElement(body))
+
+    fun updateChecklistItemRequest(listId: String, taskId: String, body: Tasks.Task.ChecklistItem) =
+        request(
+            "PATCH",
+            "/lists/$listId/tasks/$taskId/checklistItems/${body.id}",
+            json.encodeToJsonElement(body.copy(id = null, createdDateTime = null)),
+        )
+
+    fun deleteChecklistItemRequest(listId: String, taskId: String, checklistItemId: String) =
+        request("DELETE", "/lists/$listId/tasks/$taskId/checklistItems/$checklistItemId")
+
+    /**
+     * Send up to [MAX_BATCH_SIZE] [requests] as a single JSON batch. Throttled sub-requests are
+     * retried after their Retry-After delay.
+     *
+     * @return one response per request, in the same order
+     */
+    suspend fun batch(requests: List<BatchRequest>): List<BatchResponse> {
+        require(requests.size <= MAX_BATCH_SIZE) { "${requests.size} requests in one batch" }
+        val indexed = requests.mapIndexed { index, request -> request.copy(id = index.toString()) }
+        val responses = HashMap<String, BatchResponse>()
+        var pending = indexed
+        var attempt = 0
+        while (pending.isNotEmpty()) {
+            client
+                .post("$GRAPH_URL/\$batch") {
+                    contentType(ContentType.Application.Json)
+                    setBody(BatchRequests(pending))
+                }
+                .body<BatchResponses>()
+                .responses
+                .forEach { responses[it.id] = it }
+            val throttled = pending.filter { responses[it.id]?.status == 429 }
+            if (throttled.isEmpty() || ++attempt > MAX_BATCH_RETRIES) {
+                break
+            }
+            val retryAfter = throttled.maxOf { responses[it.id]?.retryAfter ?: 1L }
+            delay(retryAfter.coerceAtMost(MAX_RETRY_AFTER_SECONDS) * 1000)
+            pending = throttled
+        }
+        return indexed.map { responses[it.id] ?: error("Missing batch response for ${it.method} ${it.url}") }
+    }
+
+    private fun request(method: String, path: String, body: JsonElement? = null) =
+        BatchRequest(
+            method = method,
+            url = "/me/todo$path",
+            headers = body?.let { mapOf("Content-Type" to "application/json") },
+            body = body,
+        )
+
+    companion object {
+        const val MAX_BATCH_SIZE = 20
+        private const val MAX_BATCH_RETRIES = 3
+        private const val MAX_RETRY_AFTER_SECONDS = 30L
+        private const val GRAPH_URL = "https://graph.microsoft.com/v1.0"
+
+        val json = Json {
+            ignoreUnknownKeys = true
+        }
+    }
 }
@@ -9,6 +9,7 @@ import org.tasks.analytics.AnalyticsEvents.PARAM_TASK_COUNT
 import org.tasks.analytics.AnalyticsEvents.PARAM_TYPE
 import org.tasks.analytics.Constants
 import org.tasks.analytics.Reporting
+import org.tasks.broadcast.ChangeSet
 import org.tasks.broadcast.RefreshBroadcaster
 import org.tasks.caldav.VtodoCache
 import org.tasks.data.TaskSaver
@@ -148,7 +149,7 @@ class MicrosoftSynchronizer(
             } else if (local.name != remoteName || local.access != access) {
                 remote.applyTo(local)
                 caldavDao.update(local)
-                refreshBroadcaster.broadcastRefresh()
+                refreshBroadcaster.broadcastChanges(ChangeSet.lists(local.uuid))
             }
             syncList(local, remote, microsoft)
             caldavDao.updateParents(local.uuid!!)
@@ -183,160 +184,198 @@ class MicrosoftSynchronizer(
         microsoft: MicrosoftService,
     ): Boolean {
         val moved = caldavDao.getMoved(local.uuid!!)
-        for (task in moved) {
-            deleteRemoteResource(microsoft, local, task)
+        microsoft.sendBatch(
+            moved.mapNotNull { task -> microsoft.deleteRequest(local, task)?.let { task to it } }
+        ) { task, response ->
+            checkDeleted(task, response)
+            caldavDao.delete(task)
         }
         val toPush = dirtyDao.getTasksToPush(local.uuid!!)
-        for (taskToPush in toPush) {
-            val task = taskToPush.task
-            try {
-                pushTask(local, taskToPush, microsoft)
-            } catch (e: NotFoundException) {
-                Logger.w(TAG, e) { "Task ${task.id} gone remotely, deleting locally" }
-                taskDeleter.delete(taskDao.getChildren(task.id) + task.id)
-            }
-        }
+        // checklist items need the remote id of their parent, so send them in a second pass
+        val (subtasks, tasks) = toPush.partition { !it.task.isDeleted && it.task.parent > 0L }
+        pushTasks(local, tasks, microsoft)
+        pushTasks(local, subtasks, microsoft)
         return moved.isNotEmpty() || toPush.isNotEmpty()
     }
 
-    private suspend fun deleteRemoteResource(
-        microsoft: MicrosoftService,
+    private suspend fun pushTasks(
         list: CaldavCalendar,
-        task: CaldavTask,
-        syncedVersion: Long? = null,
-    ): Boolean {
-        val listId = list.uuid
-        val parentId = task.remoteParent
-        val taskId = task.remoteId
-        val success = when {
-            syncedVersion == 0L -> true
-            listId.isNullOrBlank() -> false
-            taskId.isNullOrBlank() -> false
-            parentId.isNullOrBlank() -> {
+        toPush: List<TaskToPush>,
+        microsoft: MicrosoftService,
+    ) {
+        val pending = toPush.mapNotNull { preparePush(list, it, microsoft) }
+        microsoft.sendBatch(pending.map { it to it.request }) { push, response ->
+            val task = push.taskToPush.task
+            if (task.isDeleted) {
+                checkDeleted(push.caldavTask, response)
+                caldavDao.delete(push.caldavTask)
+                taskDeleter.delete(taskDao.getChildren(task.id) + task.id)
+            } else {
                 try {
-                    microsoft.deleteTask(listId, taskId)
-                } catch (e: NotFoundException) {
-                    Logger.w(TAG, e) { "task=$task" }
-                } catch (e: org.tasks.http.HttpException) {
-                    when (e.code) {
-                        400 -> Logger.w(TAG, e) { "task=$task" }
-                        else -> {
-                            throw e
-                        }
+                    dirtyDao.withDirtyVersion(push.taskToPush.caldavTaskId, push.taskToPush.dirtyVersion) {
+                        applyPushResult(list, push, response)
                     }
+                } catch (e: NotFoundException) {
+                    Logger.w(TAG, e) { "Task ${task.id} gone remotely, deleting locally" }
+                    taskDeleter.delete(taskDao.getChildren(task.id) + task.id)
                 }
-                true
             }
-            else -> {
+        }
+    }
+
+    /**
+     * Send [requests] in JSON batches and hand each response to [onResponse] as soon as its batch
+     * returns, so a later batch failing doesn't lose the results of earlier ones. A failure for
+     * one item doesn't stop the rest from being applied, the first failure is rethrown after every
+     * batch has been handled.
+     */
+    private suspend fun <T> MicrosoftService.sendBatch(
+        requests: List<Pair<T, BatchRequest>>,
+        onResponse: suspend (T, BatchResponse) -> Unit,
+    ) {
+        var error: Exception? = null
+        requests.chunked(MicrosoftService.MAX_BATCH_SIZE).forEach { chunk ->
+            chunk.zip(batch(chunk.map { it.second })).forEach { (request, response) ->
                 try {
-                    microsoft.deleteChecklistItem(listId, parentId, taskId)
-                } catch (e: NotFoundException) {
-                    Logger.w(TAG, e) { "task=$task" }
-                } catch (e: org.tasks.http.HttpException) {
-                    when (e.code) {
-                        400 -> Logger.w(TAG, e) { "task=$task" }
-                        else -> {
-                            throw e
-                        }
-                    }
+                    onResponse(request.first, response)
+                } catch (e: NetworkException) {
+                    error = error ?: e
                 }
-                true
             }
         }
-        if (success) {
-            caldavDao.delete(task)
+        error?.let { throw it }
+    }
+
+    private fun MicrosoftService.deleteRequest(list: CaldavCalendar, task: CaldavTask): BatchRequest? {
+        val listId = list.uuid?.takeIf { it.isNotBlank() } ?: return null
+        val taskId = task.remoteId?.takeIf { it.isNotBlank() } ?: return null
+        val parentId = task.remoteParent
+        return if (parentId.isNullOrBlank()) {
+            deleteTaskRequest(listId, taskId)
+        } else {
+            deleteChecklistItemRequest(listId, parentId, taskId)
+        }
+    }
+
+    private fun checkDeleted(task: CaldavTask, response: BatchResponse) {
+        when (val e = response.toException()) {
+            null -> {}
+            is NotFoundException -> Logger.w(TAG, e) { "task=$task" }
+            is HttpException -> if (e.code == 400) Logger.w(TAG, e) { "task=$task" } else throw e
+            else -> throw e
         }
-        return success
     }
 
-    private suspend fun pushTask(
+    /**
+     * @return the request that pushes [taskToPush], or null if there is nothing to send
+     */
+    private suspend fun preparePush(
         list: CaldavCalendar,
         taskToPush: TaskToPush,
         microsoft: MicrosoftService,
-    ) {
+    ): PendingPush? {
         val task = taskToPush.task
-        val caldavTask = caldavDao.getCaldavTaskById(taskToPush.caldavTaskId) ?: return
+        val caldavTask = caldavDao.getCaldavTaskById(taskToPush.caldavTaskId) ?: return null
         if (task.isDeleted) {
             Logger.d(TAG) { "Deleting $task" }
-            if (deleteRemoteResource(microsoft, list, caldavTask, taskToPush.syncedVersion)) {
+            if (taskToPush.syncedVersion == 0L) {
+                caldavDao.delete(caldavTask)
                 taskDeleter.delete(taskDao.getChildren(task.id) + task.id)
+                return null
             }
-            return
+            return microsoft.deleteRequest(list, caldavTask)?.let { PendingPush(taskToPush, caldavTask, it) }
         }
-        dirtyDao.withDirtyVersion(taskToPush.caldavTaskId, taskToPush.dirtyVersion) {
-            var isNew = taskToPush.syncedVersion == 0L
-            val isSubtask = task.parent > 0L
-            val newParentRemoteId = if (isSubtask) {
-                caldavDao.getTask(task.parent)?.remoteId
-                    ?: error("Missing parent remote ID for task ${task.id}")
-            } else null
-            // Detect hierarchy changes by comparing the current local parent with
-            // the last-synced remoteParent. The adapter preserves remoteParent for
-            // Microsoft tasks so it reflects the last-synced state, not the pending state.
-            if (!isNew) {
-                val wasSubtask = !caldavTask.remoteParent.isNullOrBlank()
-                val hierarchyChanged = isSubtask != wasSubtask ||
-                        (isSubtask && newParentRemoteId != caldavTask.remoteParent)
-                if (hierarchyChanged) {
-                    Logger.d(TAG) { "Hierarchy changed for $task (wasSubtask=$wasSubtask, isSubtask=$isSubtask)" }
-                    try {
-                        if (wasSubtask) {
-                            microsoft.deleteChecklistItem(
-                                list.uuid!!, caldavTask.remoteParent!!, caldavTask.remoteId!!
-                            )
-                        } else {
-                            microsoft.deleteTask(list.uuid!!, caldavTask.remoteId!!)
-                        }
-                    } catch (e: NotFoundException) {
-                        Logger.w(TAG, e) { "Old remote object already deleted" }
-                    } catch (e: org.tasks.http.HttpException) {
-                        when (e.code) {
-                            400 -> Logger.w(TAG, e) { "Failed to delete old remote object" }
-                            else -> throw e
-                        }
+        var isNew = taskToPush.syncedVersion == 0L
+        val isSubtask = task.parent > 0L
+        val newParentRemoteId = if (isSubtask) {
+            caldavDao.getTask(task.parent)?.remoteId
+                ?: error("Missing parent remote ID for task ${task.id}")
+        } else null
+        // Detect hierarchy changes by comparing the current local parent with
+        // the last-synced remoteParent. The adapter preserves remoteParent for
+        // Microsoft tasks so it reflects the last-synced state, not the pending state.
+        if (!isNew) {
+            val wasSubtask = !caldavTask.remoteParent.isNullOrBlank()
+            val hierarchyChanged = isSubtask != wasSubtask ||
+                    (isSubtask && newParentRemoteId != caldavTask.remoteParent)
+            if (hierarchyChanged) {
+                Logger.d(TAG) { "Hierarchy changed for $task (wasSubtask=$wasSubtask, isSubtask=$isSubtask)" }
+                try {
+                    if (wasSubtask) {
+                        microsoft.deleteChecklistItem(
+                            list.uuid!!, caldavTask.remoteParent!!, caldavTask.remoteId!!
+                        )
+                    } else {
+                        microsoft.deleteTask(list.uuid!!, caldavTask.remoteId!!)
+                    }
+                } catch (e: NotFoundException) {
+                    Logger.w(TAG, e) { "Old remote object already deleted" }
+                } catch (e: org.tasks.http.HttpException) {
+                    when (e.code) {
+                        400 -> Logger.w(TAG, e) { "Failed to delete old remote object" }
+                        else -> throw e
                     }
-                    vtodoCache.delete(list, caldavTask)
-                    caldavTask.remoteId = null
-                    isNew = true
                 }
+                vtodoCache.delete(list, caldavTask)
+                caldavTask.remoteId = null
+                isNew = true
             }
-            if (!isSubtask) {
-                val remoteTask = task.toRemote(
-                    caldavTask = caldavTask,
-                    tags = tagDataDao.getTagDataForTask(task.id),
-                )
-                val result: Tasks.Task = if (isNew) {
-                    Logger.d(TAG) { "Uploading new task: $task" }
-                    microsoft.createTask(list.uuid!!, remoteTask)
-                } else {
-                    Logger.d(TAG) { "Updating existing task: $task" }
-                    microsoft.updateTask(list.uuid!!, caldavTask.remoteId!!, remoteTask)
-                }
-                caldavTask.remoteId = result.id
-                caldavTask.remoteParent = ""
-                caldavTask.obj = "${result.id}.json"
-                caldavTask.etag = result.etag
-                vtodoCache.putVtodo(list, caldavTask, json.encodeToString(result))
+        }
+        val request = if (!isSubtask) {
+            val remoteTask = task.toRemote(
+                caldavTask = caldavTask,
+                tags = tagDataDao.getTagDataForTask(task.id),
+            )
+            if (isNew) {
+                Logger.d(TAG) { "Uploading new task: $task" }
+                microsoft.createTaskRequest(list.uuid!!, remoteTask)
             } else {
-                val caldavParent = newParentRemoteId!!
-                val remoteTask = task.toChecklistItem(caldavTask.remoteId)
-                val result: Tasks.Task.ChecklistItem = if (isNew) {
-                    Logger.d(TAG) { "Uploading new checklist item: $task" }
-                    microsoft.createChecklistItem(list.uuid!!, caldavParent, remoteTask)
-                } else {
-                    Logger.d(TAG) { "Updating existing checklist item: $task" }
-                    microsoft.updateChecklistItem(list.uuid!!, caldavParent, remoteTask)
-                }
-                caldavTask.remoteId = result.id
-                caldavTask.remoteParent = caldavParent
-                caldavTask.obj = "${result.id}.json"
-                vtodoCache.putVtodo(list, caldavTask, json.encodeToString(result))
+                Logger.d(TAG) { "Updating existing task: $task" }
+                microsoft.updateTaskRequest(list.uuid!!, caldavTask.remoteId!!, remoteTask)
+            }
+        } else {
+            val remoteTask = task.toChecklistItem(caldavTask.remoteId)
+            if (isNew) {
+                Logger.d(TAG) { "Uploading new checklist item: $task" }
+                microsoft.createChecklistItemRequest(list.uuid!!, newParentRemoteId!!, remoteTask)
+            } else {
+                Logger.d(TAG) { "Updating existing checklist item: $task" }
+                microsoft.updateChecklistItemRequest(list.uuid!!, newParentRemoteId!!, remoteTask)
             }
+        }
+        return PendingPush(taskToPush, caldavTask, request, newParentRemoteId)
+    }
 
-            caldavDao.update(caldavTask)
+    private suspend fun applyPushResult(
+        list: CaldavCalendar,
+        push: PendingPush,
+        response: BatchResponse,
+    ) {
+        val caldavTask = push.caldavTask
+        if (push.parentRemoteId == null) {
+            val result: Tasks.Task = response.decode()
+            caldavTask.remoteId = result.id
+            caldavTask.remoteParent = ""
+            caldavTask.obj = "${result.id}.json"
+            caldavTask.etag = result.etag
+            vtodoCache.putVtodo(list, caldavTask, json.encodeToString(result))
+        } else {
+            val result: Tasks.Task.ChecklistItem = response.decode()
+            caldavTask.remoteId = result.id
+            caldavTask.remoteParent = push.parentRemoteId
+            caldavTask.obj = "${result.id}.json"
+            vtodoCache.putVtodo(list, caldavTask, json.encodeToString(result))
         }
+        caldavDao.update(caldavTask)
     }
 
+    private class PendingPush(
+        val taskToPush: TaskToPush,
+        val caldavTask: CaldavTask,
+        val request: BatchRequest,
+        val parentRemoteId: String? = null,
+    )
+
     private suspend fun deltaSync(
         list: CaldavCalendar,
         remoteList: TaskLists.TaskList,
@@ -356,7 +395,7 @@ class MicrosoftSynchronizer(
         }
         Logger.d(TAG) { "UPDATE $list" }
         caldavDao.update(list)
-        refreshBroadcaster.broadcastRefresh()
+        refreshBroadcaster.broadcastChanges(ChangeSet.lists(list.uuid))
     }
 
     private suspend fun getTaskLists(
@@ -433,7 +472,7 @@ class MicrosoftSynchronizer(
             }
         Logger.d(TAG) { "UPDATE $list" }
         caldavDao.update(list)
-        refreshBroadcaster.broadcastRefresh()
+        refreshBroadcaster.broadcastChanges(ChangeSet.lists(list.uuid))
     }
 
     private suspend fun updateTask(list: CaldavCalendar, remote: Tasks.Task) {
@@ -539,7 +578,7 @@ class MicrosoftSynchronizer(
     private suspend fun setError(account: CaldavAccount, message: String?) {
         account.error = message
         caldavDao.setError(account.id, message)
-        refreshBroadcaster.broadcastRefresh()
+        refreshBroadcaster.broadcastChanges(ChangeSet.tables(CaldavAccount.TABLE.name()))
         if (!message.isNullOrEmpty()) {
             Logger.e(TAG) { message }
         }
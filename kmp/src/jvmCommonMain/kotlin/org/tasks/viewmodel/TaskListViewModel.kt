@@ -5,27 +5,43 @@ import androidx.lifecycle.viewModelScope
 import co.touchlab.kermit.Logger
 import kotlinx.coroutines.CancellationException
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.ExperimentalCoroutinesApi
 import kotlinx.coroutines.flow.Flow
 import kotlinx.coroutines.flow.MutableStateFlow
 import kotlinx.coroutines.flow.asStateFlow
 import kotlinx.coroutines.flow.distinctUntilChanged
 import kotlinx.coroutines.flow.emptyFlow
+import kotlinx.coroutines.flow.filter
 import kotlinx.coroutines.flow.flowOn
 import kotlinx.coroutines.flow.launchIn
 import kotlinx.coroutines.flow.map
+import kotlinx.coroutines.flow.mapLatest
 import kotlinx.coroutines.flow.onEach
 import kotlinx.coroutines.flow.update
 import kotlinx.coroutines.launch
+import org.tasks.broadcast.ChangeSet
 import org.tasks.compose.throttleLatest
 import org.tasks.data.TaskContainer
-import org.tasks.data.TaskListQuery.getQuery
+import org.tasks.data.TaskListQuery.Page
+import org.tasks.data.TaskListQuery.getPagedQuery
+import org.tasks.data.TaskListQuery.getParameterizedQuery
 import org.tasks.data.TaskSaver
 import org.tasks.data.dao.DeletionDao
 import org.tasks.data.dao.TaskDao
+import org.tasks.data.db.TaskSearch
+import org.tasks.data.entity.Alarm
+import org.tasks.data.entity.CaldavCalendar
+import org.tasks.data.entity.CaldavTask
+import org.tasks.data.entity.Geofence
+import org.tasks.data.entity.Place
+import org.tasks.data.entity.Tag
+import org.tasks.data.entity.TagData
 import org.tasks.data.entity.Task
+import org.tasks.data.fetchFilteredIds
 import org.tasks.data.fetchTasks
 import org.tasks.db.QueryUtils
 import org.tasks.filters.AstridOrderingFilter
+import org.tasks.filters.CaldavFilter
 import org.tasks.filters.EmptyFilter
 import org.tasks.filters.Filter
 import org.tasks.filters.FilterImpl
@@ -45,6 +61,7 @@ import org.tasks.tasklist.SectionedDataSource
 import org.tasks.tasklist.TasksResults
 import org.tasks.time.DateTimeUtils2.currentTimeMillis
 
+@OptIn(ExperimentalCoroutinesApi::class)
 open class TaskListViewModel(
     private val taskDao: TaskDao,
     private val taskDeleter: TaskDeleter,
@@ -58,7 +75,7 @@ open class TaskListViewModel(
     private val createSearchFilter: (String) -> Filter = { query ->
         SearchFilter(title = query, query = query)
     },
-    refreshFlow: Flow<Unit> = emptyFlow(),
+    changes: Flow<ChangeSet> = emptyFlow(),
 ) : ViewModel() {
 
     data class State(
@@ -68,23 +85,68 @@ open class TaskListViewModel(
         val tasks: TasksResults = TasksResults.Loading,
         val syncOngoing: Boolean = false,
         val collapsed: Set<Long> = setOf(SectionedDataSource.HEADER_COMPLETED),
+        val limit: Int? = PAGE_SIZE,
+        val hasMore: Boolean = false,
     )
 
+    private class LoadedTasks(val state: State, val filter: Filter, val tasks: List<TaskContainer>)
+
     private val _state = MutableStateFlow(State())
     val state = _state.asStateFlow()
 
-    fun setFilter(filter: Filter) {
-        _state.update { it.copy(filter = filter) }
+    /**
+     * @param limit number of tasks in the first page, or null to load every task at once
+     */
+    fun setFilter(filter: Filter, limit: Int? = PAGE_SIZE) {
+        _state.update {
+            if (it.filter == filter && it.limit != null && limit != null) {
+                it
+            } else {
+                it.copy(filter = filter, limit = limit)
+            }
+        }
     }
 
     fun setSearchQuery(query: String?) {
-        _state.update { it.copy(searchQuery = query?.trim()) }
+        _state.update {
+            val searchQuery = query?.trim()
+            if (it.searchQuery == searchQuery) {
+                it
+            } else {
+                it.copy(searchQuery = searchQuery, limit = it.limit?.let { PAGE_SIZE })
+            }
+        }
+    }
+
+    /**
+     * Load the next page once [position] is within [PREFETCH] items of the end of the list
+     */
+    fun onScrolled(position: Int) {
+        _state.update {
+            val tasks = (it.tasks as? TasksResults.Results)?.tasks
+            if (it.hasMore && it.limit != null && tasks != null && position >= tasks.size - PREFETCH) {
+                it.copy(limit = it.limit + PAGE_SIZE, hasMore = false)
+            } else {
+                it
+            }
+        }
     }
 
     fun invalidate() {
         _state.update { it.copy(now = currentTimeMillis()) }
     }
 
+    private fun affectsState(changes: ChangeSet): Boolean {
+        if (!changes.affectsTables(TASK_LIST_TABLES)) {
+            return false
+        }
+        val state = _state.value
+        val filter = state.filter
+        return state.searchQuery != null ||
+                filter !is CaldavFilter ||
+                changes.affectsList(filter.uuid)
+    }
+
     suspend fun getTasksToClear(): List<Long> {
         val filter = _state.value.filter
         val deleteFilter = FilterImpl(
@@ -140,7 +202,8 @@ open class TaskListViewModel(
     }
 
     init {
-        refreshFlow
+        changes
+            .filter { affectsState(it) }
             .onEach { invalidate() }
             .launchIn(viewModelScope)
 
@@ -151,22 +214,49 @@ open class TaskListViewModel(
             .onEach { syncOngoing -> _state.update { it.copy(syncOngoing = syncOngoing) } }
             .launchIn(viewModelScope)
 
+        var loaded: LoadedTasks? = null
         _state
-            .map { it.copy(tasks = TasksResults.Loading) }
+            .map { it.copy(tasks = TasksResults.Loading, hasMore = false) }
             .distinctUntilChanged()
             .throttleLatest(333)
-            .map { queriedState ->
+            // cancels a query that is still running when the filter or search text changes
+            .mapLatest { queriedState ->
+                val previous = loaded
                 val filter = when {
                     queriedState.searchQuery == null -> queriedState.filter
                     queriedState.searchQuery.isBlank() -> MyTasksFilter(title = "My Tasks")
-                    else -> createSearchFilter(queriedState.searchQuery)
+                    else -> createSearchFilter(queriedState.searchQuery).search(previous, queriedState)
                 }
                 val prefs = if (isPerListSortEnabled) {
                     FilterPreferences(queryPreferences, tasksPreferences, filter.key())
                 } else {
                     queryPreferences
                 }
-                Triple(taskDao.fetchTasks(getQuery(prefs, filter)), prefs, queriedState)
+                val limit = queriedState.limit
+                val tasks = when {
+                    limit == null ->
+                        taskDao.fetchTasks(getParameterizedQuery(prefs, filter))
+                    previous != null &&
+                            previous.state.limit != null &&
+                            previous.state == queriedState.copy(limit = previous.state.limit) &&
+                            previous.tasks.size == previous.state.limit &&
+                            limit > previous.tasks.size ->
+                        previous.tasks + taskDao.fetchTasks(
+                            getPagedQuery(
+                                preferences = prefs,
+                                filter = filter,
+                                page = Page(
+                                    size = limit - previous.tasks.size,
+                                    after = previous.tasks.lastOrNull(),
+                                    offset = previous.tasks.size,
+                                ),
+                            )
+                        )
+                    else ->
+                        taskDao.fetchTasks(getPagedQuery(prefs, filter, Page(size = limit)))
+                }
+                loaded = LoadedTasks(queriedState, filter, tasks)
+                Triple(tasks, prefs, queriedState)
             }
             .onEach { (tasks, prefs, queriedState) ->
                 val dataSource = SectionedDataSource(
@@ -199,7 +289,12 @@ open class TaskListViewModel(
                         it.searchQuery == queriedState.searchQuery &&
                         it.collapsed == queriedState.collapsed
                     ) {
-                        it.copy(tasks = TasksResults.Results(dataSource))
+                        it.copy(
+                            tasks = TasksResults.Results(dataSource),
+                            hasMore = queriedState.limit != null &&
+                                    it.limit == queriedState.limit &&
+                                    tasks.size >= queriedState.limit,
+                        )
                     } else {
                         it
                     }
@@ -209,7 +304,45 @@ open class TaskListViewModel(
             .launchIn(viewModelScope)
     }
 
+    /**
+     * Find the tasks that match this search once and page through them by id. When this search
+     * can only narrow the previous one, only the previous matches are searched. Those include
+     * subtasks hidden under collapsed parents, which the loaded tasks don't
+     */
+    private suspend fun Filter.search(previous: LoadedTasks?, state: State): Filter {
+        if (this !is SearchFilter) {
+            return this
+        }
+        val previousSearch = previous
+            ?.takeIf {
+                it.state == state.copy(searchQuery = it.state.searchQuery, limit = it.state.limit)
+            }
+            ?.filter as? SearchFilter
+        if (previousSearch?.query == query) {
+            return previousSearch
+        }
+        val within = previousSearch
+            ?.takeIf { TaskSearch.isRefinement(it.query, query) }
+            ?.matches
+        val matches = taskDao.fetchFilteredIds(copy(within = within), limit = MAX_MATCHES + 1)
+        return if (matches.size > MAX_MATCHES) this else copy(matches = matches)
+    }
+
     companion object {
+        const val PAGE_SIZE = 100
+        const val PREFETCH = 30
+        private const val MAX_MATCHES = 1000
+        private val TASK_LIST_TABLES = setOf(
+            Task.TABLE_NAME,
+            CaldavTask.TABLE.name(),
+            CaldavCalendar.TABLE.name(),
+            Tag.TABLE.name(),
+            TagData.TABLE_NAME,
+            Alarm.TABLE_NAME,
+            Geofence.TABLE_NAME,
+            Place.TABLE_NAME,
+            org.tasks.data.entity.Filter.TABLE_NAME,
+        )
         private val log = Logger.withTag("TaskListViewModel")
     }
 }
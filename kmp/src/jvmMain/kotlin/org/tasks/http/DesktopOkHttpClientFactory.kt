@@ -18,28 +18,34 @@ class DesktopOkHttpClientFactory(
     private val certStore: CertStore,
     private val encryption: KeyStoreEncryption,
     private val cookieDir: File,
+    private val sharedClient: SharedOkHttpClient = SharedOkHttpClient.default,
 ) : OkHttpClientFactory {
     private val userAgent = "org.tasks/${TasksBuildConfig.VERSION_NAME} (desktop) ${System.getProperty("os.name")}/${System.getProperty("os.version")}"
 
-    override suspend fun newClient(
-        foreground: Boolean,
-        cookieKey: String?,
-        block: (OkHttpClient.Builder) -> Unit,
-    ): OkHttpClient {
-        val customCertManager = CustomCertManager(
+    // pooled connections are only reused when the socket factory and verifier are the same instances
+    private val customCertManager by lazy {
+        CustomCertManager(
             certStore = certStore,
             settings = object : SettingsProvider {
                 override val appInForeground = true
                 override val trustSystemCerts = true
             }
         )
-        val hostnameVerifier = customCertManager.HostnameVerifier(OkHostnameVerifier)
-        val sslContext = SSLContext.getInstance("TLS")
-        sslContext.init(null, arrayOf(customCertManager), null)
-        val builder = OkHttpClient.Builder()
-            .followRedirects(false)
-            .followSslRedirects(true)
-            .sslSocketFactory(sslContext.socketFactory, customCertManager)
+    }
+    private val hostnameVerifier by lazy { customCertManager.HostnameVerifier(OkHostnameVerifier) }
+    private val sslSocketFactory by lazy {
+        SSLContext.getInstance("TLS")
+            .apply { init(null, arrayOf(customCertManager), null) }
+            .socketFactory
+    }
+
+    override suspend fun newClient(
+        foreground: Boolean,
+        cookieKey: String?,
+        block: (OkHttpClient.Builder) -> Unit,
+    ): OkHttpClient {
+        val builder = sharedClient.base.newBuilder()
+            .sslSocketFactory(sslSocketFactory, customCertManager)
             .hostnameVerifier(hostnameVerifier)
             .addInterceptor(UserAgentInterceptor(userAgent))
             .cookieJar(lazyCookieJar(cookieKey))
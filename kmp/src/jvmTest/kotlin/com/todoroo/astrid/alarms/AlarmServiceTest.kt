@@ -3,19 +3,27 @@ package com.todoroo.astrid.alarms
 import kotlinx.coroutines.ExperimentalCoroutinesApi
 import kotlinx.coroutines.test.UnconfinedTestDispatcher
 import kotlinx.coroutines.test.runTest
+import org.junit.Assert.assertEquals
 import org.junit.Test
 import org.mockito.kotlin.any
 import org.mockito.kotlin.eq
 import org.mockito.kotlin.mock
 import org.mockito.kotlin.never
+import org.mockito.kotlin.times
 import org.mockito.kotlin.verifyBlocking
+import org.mockito.kotlin.whenever
 import org.tasks.DatabaseTest
+import org.tasks.data.createDueDate
 import org.tasks.data.entity.Alarm
+import org.tasks.data.entity.Alarm.Companion.TYPE_DATE_TIME
 import org.tasks.data.entity.Alarm.Companion.TYPE_REL_END
 import org.tasks.data.entity.Alarm.Companion.TYPE_SNOOZE
+import org.tasks.data.entity.Notification
 import org.tasks.data.entity.Task
+import org.tasks.data.entity.Task.Companion.URGENCY_SPECIFIC_DAY_TIME
 import org.tasks.notifications.CancelReason
 import org.tasks.notifications.Notifier
+import org.tasks.preferences.AppPreferences
 import org.tasks.reminders.Random
 import org.tasks.time.DateTimeUtils2.currentTimeMillis
 import java.util.concurrent.TimeUnit
@@ -26,6 +34,7 @@ class AlarmServiceTest : DatabaseTest() {
     private val taskDao = db.taskDao()
     private val dirtyDao = db.dirtyDao()
     private val notifier: Notifier = mock()
+    private val preferences: AppPreferences = mock()
     private val testDispatcher = UnconfinedTestDispatcher()
 
     private val alarmService = AlarmService(
@@ -35,7 +44,7 @@ class AlarmServiceTest : DatabaseTest() {
         refreshBroadcaster = mock(),
         notifier = notifier,
         alarmCalculator = AlarmCalculator(Random()),
-        preferences = mock(),
+        preferences = preferences,
     )
 
     @Test
@@ -47,6 +56,19 @@ class AlarmServiceTest : DatabaseTest() {
         verifyBlocking(notifier) { cancel(listOf(task.id), CancelReason.SNOOZE) }
     }
 
+    @Test
+    fun cancelNotificationAfterSavedAlarms() = runTest(testDispatcher) {
+        val task = createTask()
+
+        val saved = alarmService.saveAlarms(task.id, mutableSetOf(futureSnooze()))
+
+        verifyBlocking(notifier, never()) { cancel(any<List<Long>>(), eq(CancelReason.SNOOZE)) }
+
+        alarmService.afterSaveAlarms(saved)
+
+        verifyBlocking(notifier) { cancel(listOf(task.id), CancelReason.SNOOZE) }
+    }
+
     @Test
     fun dontCancelNotificationForPastSnooze() = runTest(testDispatcher) {
         val task = createTask()
@@ -83,12 +105,66 @@ class AlarmServiceTest : DatabaseTest() {
         verifyBlocking(notifier) { cancel(listOf(task.id), CancelReason.SNOOZE) }
     }
 
-    private suspend fun createTask(): Task {
-        val task = Task()
+    @Test
+    fun rescheduleWhenDueDateChanges() = runTest(testDispatcher) {
+        whenever(preferences.defaultDueTime()).thenReturn(0)
+        val task = createTask(dueDate = createDueDate(URGENCY_SPECIFIC_DAY_TIME, currentTimeMillis() + HOUR))
+        alarmService.synchronizeAlarms(task.id, mutableSetOf(Alarm(type = TYPE_REL_END)))
+
+        assertEquals(emptyList<Notification>() to task.dueDate, alarmService.getAlarms())
+
+        val updated = task.copy(dueDate = createDueDate(URGENCY_SPECIFIC_DAY_TIME, currentTimeMillis() + 2 * HOUR))
+        taskDao.update(updated)
+
+        assertEquals(emptyList<Notification>() to updated.dueDate, alarmService.getAlarms())
+    }
+
+    @Test
+    fun futureSnoozeReplacesOverdueAlarm() = runTest(testDispatcher) {
+        whenever(preferences.defaultDueTime()).thenReturn(0)
+        val task = createTask()
+        val snooze = futureSnooze()
+        alarmService.synchronizeAlarms(
+            task.id,
+            mutableSetOf(Alarm(time = currentTimeMillis() - HOUR, type = TYPE_DATE_TIME), snooze)
+        )
+
+        assertEquals(emptyList<Notification>() to snooze.time, alarmService.getAlarms())
+    }
+
+    @Test
+    fun keepScheduleAcrossInstances() = runTest(testDispatcher) {
+        var schedule: String? = null
+        whenever(preferences.defaultDueTime()).thenReturn(0)
+        whenever(preferences.alarmSchedule()).thenAnswer { schedule }
+        whenever(preferences.setAlarmSchedule(any())).thenAnswer { schedule = it.getArgument(0) }
+        val task = createTask(dueDate = createDueDate(URGENCY_SPECIFIC_DAY_TIME, currentTimeMillis() + HOUR))
+        alarmService.synchronizeAlarms(task.id, mutableSetOf(Alarm(type = TYPE_REL_END)))
+        alarmService.getAlarms()
+
+        AlarmService(
+            alarmDao = alarmDao,
+            taskDao = taskDao,
+            dirtyDao = dirtyDao,
+            refreshBroadcaster = mock(),
+            notifier = notifier,
+            alarmCalculator = AlarmCalculator(Random()),
+            preferences = preferences,
+        ).getAlarms()
+
+        verifyBlocking(preferences, times(1)) { setAlarmSchedule(any()) }
+    }
+
+    private suspend fun createTask(dueDate: Long = 0): Task {
+        val task = Task(dueDate = dueDate)
         taskDao.createNew(task)
         return task
     }
 
     private fun futureSnooze() =
-        Alarm(time = currentTimeMillis() + TimeUnit.HOURS.toMillis(1), type = TYPE_SNOOZE)
+        Alarm(time = currentTimeMillis() + HOUR, type = TYPE_SNOOZE)
+
+    companion object {
+        private val HOUR = TimeUnit.HOURS.toMillis(1)
+    }
 }
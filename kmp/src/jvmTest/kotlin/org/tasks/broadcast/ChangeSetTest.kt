@@ -0,0 +1,82 @@
+package org.tasks.broadcast
+
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.CoroutineStart
+import kotlinx.coroutines.async
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.flow.first
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.withTimeout
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class ChangeSetTest {
+    @Test
+    fun mergeLists() {
+        assertEquals(
+            ChangeSet(lists = setOf("1", "2")),
+            ChangeSet.lists("1") + ChangeSet.lists("2"),
+        )
+    }
+
+    @Test
+    fun mergeWithGlobalChangeIsGlobal() {
+        assertTrue((ChangeSet.lists("1") + ChangeSet.ALL).isGlobal)
+        assertTrue((ChangeSet.tables("alarms") + ChangeSet.ALL).isGlobal)
+    }
+
+    @Test
+    fun mergeWithUnscopedChangeIsUnscoped() {
+        assertEquals(emptySet<Long>(), (ChangeSet(tasks = setOf(1)) + ChangeSet.lists("1")).tasks)
+    }
+
+    @Test
+    fun unaffectedList() {
+        assertFalse(ChangeSet.lists("1").affectsList("2"))
+        assertTrue(ChangeSet.tables("alarms").affectsList("2"))
+    }
+
+    @Test
+    fun unaffectedTables() {
+        assertFalse(ChangeSet.tables("notification").affectsTables(setOf("tasks")))
+        assertTrue(ChangeSet.lists("1").affectsTables(setOf("tasks")))
+    }
+
+    @Test
+    fun pendingChangesAreMerged() = runBlocking {
+        val broadcaster = ComposeRefreshBroadcaster()
+        val changes = async(start = CoroutineStart.UNDISPATCHED) { broadcaster.changes.first() }
+
+        broadcaster.broadcastChanges(ChangeSet(tasks = setOf(1), lists = setOf("1")))
+        broadcaster.broadcastChanges(ChangeSet(tasks = setOf(2), lists = setOf("2")))
+
+        assertEquals(
+            ChangeSet(tasks = setOf(1, 2), lists = setOf("1", "2")),
+            changes.await(),
+        )
+    }
+
+    @Test
+    fun repeatedChangeReachesBusyCollector() = runBlocking {
+        val broadcaster = ComposeRefreshBroadcaster()
+        val busy = CompletableDeferred<Unit>()
+        val received = Channel<ChangeSet>(Channel.UNLIMITED)
+        val collector = launch(start = CoroutineStart.UNDISPATCHED) {
+            broadcaster.changes.collect {
+                received.send(it)
+                busy.await()
+            }
+        }
+
+        broadcaster.broadcastRefresh()
+        assertEquals(ChangeSet.ALL, received.receive())
+        broadcaster.broadcastRefresh()
+        busy.complete(Unit)
+
+        assertEquals(ChangeSet.ALL, withTimeout(1000) { received.receive() })
+        collector.cancel()
+    }
+}
@@ -0,0 +1,54 @@
+package org.tasks.caldav
+
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.test.currentTime
+import kotlinx.coroutines.test.runTest
+import org.junit.Assert.assertEquals
+import org.junit.Test
+
+@OptIn(ExperimentalCoroutinesApi::class)
+class CalendarSyncRunnerTest {
+    private val writes = mutableListOf<String>()
+
+    private suspend fun CalendarSyncRunner.sync(calendar: String) {
+        delay(FETCH)
+        write {
+            writes += "begin $calendar"
+            delay(WRITE)
+            writes += "end $calendar"
+        }
+    }
+
+    @Test
+    fun calendarsSyncConcurrently() = runTest {
+        val runner = CalendarSyncRunner(concurrency = 2)
+
+        runner.forEach(listOf("a", "b")) { runner.sync(it) }
+
+        assertEquals(FETCH + 2 * WRITE, currentTime)
+    }
+
+    @Test
+    fun writesDontInterleave() = runTest {
+        val runner = CalendarSyncRunner(concurrency = 2)
+
+        runner.forEach(listOf("a", "b")) { runner.sync(it) }
+
+        assertEquals(listOf("begin a", "end a", "begin b", "end b"), writes)
+    }
+
+    @Test
+    fun limitConcurrentCalendars() = runTest {
+        val runner = CalendarSyncRunner(concurrency = 1)
+
+        runner.forEach(listOf("a", "b")) { runner.sync(it) }
+
+        assertEquals(2 * (FETCH + WRITE), currentTime)
+    }
+
+    companion object {
+        private const val FETCH = 1000L
+        private const val WRITE = 100L
+    }
+}
@@ -0,0 +1,89 @@
+package org.tasks.data
+
+import androidx.room.useReaderConnection
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import org.tasks.DatabaseTest
+import org.tasks.data.entity.CaldavAccount
+import org.tasks.data.entity.CaldavCalendar
+import org.tasks.data.entity.Place
+import org.tasks.data.entity.TagData
+import org.tasks.filters.CaldavFilter
+import org.tasks.filters.Filter
+import org.tasks.filters.MyTasksFilter
+import org.tasks.filters.PlaceFilter
+import org.tasks.filters.RecentlyModifiedFilter
+import org.tasks.filters.TagFilter
+import org.tasks.filters.TodayFilter
+import org.tasks.preferences.DefaultQueryPreferences
+
+/**
+ * Task list queries should look every table up by index. Sorting still needs a temp b-tree, the
+ * sort keys are expressions over the current time
+ */
+class TaskListQueryPlanTest : DatabaseTest() {
+    private val preferences = DefaultQueryPreferences()
+
+    @Test
+    fun myTasks() = assertNoScans(MyTasksFilter("My Tasks"))
+
+    @Test
+    fun today() = assertNoScans(TodayFilter("Today"))
+
+    @Test
+    fun recentlyModified() = assertNoScans(RecentlyModifiedFilter("Recently modified"))
+
+    @Test
+    fun tag() = assertNoScans(TagFilter(TagData(remoteId = "1", name = "Errands")))
+
+    @Test
+    fun place() = assertNoScans(PlaceFilter(Place(uid = "1")))
+
+    @Test
+    fun list() = assertNoScans(
+        CaldavFilter(calendar = CaldavCalendar(uuid = "1"), account = CaldavAccount())
+    )
+
+    @Test
+    fun manualList() {
+        preferences.isManualSort = true
+
+        list()
+    }
+
+    @Test
+    fun showHiddenHideCompleted() {
+        preferences.showHidden = true
+        preferences.showCompleted = false
+
+        myTasks()
+    }
+
+    private fun assertNoScans(filter: Filter) = runBlocking {
+        val sql = TaskListQuery.getParameterizedQuery(preferences, filter).sql
+        val plan = db.useReaderConnection { connection ->
+            connection.usePrepared("EXPLAIN QUERY PLAN $sql") { statement ->
+                buildList { while (statement.step()) add(statement.getText(3)) }
+            }
+        }
+
+        assertEquals(
+            plan.joinToString("\n"),
+            emptyList<String>(),
+            plan.filter { it.isFullScan() || it.isAutomaticIndex() },
+        )
+    }
+
+    private fun String.isFullScan() = startsWith("SCAN ") && !isTemporary()
+
+    private fun String.isAutomaticIndex() = contains("AUTOMATIC") && !isTemporary()
+
+    // common table expressions and subqueries are built per query, they can't have indexes
+    private fun String.isTemporary() =
+        split(" ").getOrNull(1)?.let { it in CTES || it.startsWith("(") } == true
+
+    companion object {
+        private val CTES = setOf("recursive_tasks", "max_indent", "descendants")
+    }
+}
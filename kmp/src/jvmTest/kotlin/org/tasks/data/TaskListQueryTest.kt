@@ -0,0 +1,160 @@
+package org.tasks.data
+
+import com.todoroo.astrid.api.PermaSql
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNotEquals
+import org.junit.Test
+import org.tasks.DatabaseTest
+import org.tasks.data.entity.CaldavAccount
+import org.tasks.data.entity.CaldavCalendar
+import org.tasks.data.entity.CaldavTask
+import org.tasks.data.entity.Task
+import org.tasks.filters.CaldavFilter
+import org.tasks.filters.TodayFilter
+import org.tasks.preferences.DefaultQueryPreferences
+import org.tasks.time.DateTimeUtils2.currentTimeMillis
+import org.tasks.time.ONE_DAY
+
+class TaskListQueryTest : DatabaseTest() {
+    private val taskDao = db.taskDao()
+    private val caldavDao = db.caldavDao()
+    private val preferences = DefaultQueryPreferences()
+
+    @Test
+    fun placeholdersAreBound() {
+        val query = TaskListQuery.getParameterizedQuery(preferences, TodayFilter("Today"))
+
+        assertFalse(query.sql.contains(PermaSql.VALUE_EOD))
+        assertEquals(setOf(2), query.args.keys)
+    }
+
+    @Test
+    fun repeatedQueriesShareSql() {
+        val first = TaskListQuery.getParameterizedQuery(preferences, TodayFilter("Today"))
+        val second = TaskListQuery.getParameterizedQuery(preferences, TodayFilter("Today"))
+
+        assertEquals(first.sql, second.sql)
+    }
+
+    @Test
+    fun listsShareSql() {
+        preferences.isManualSort = true
+        val first = TaskListQuery.getParameterizedQuery(preferences, caldavFilter("1"))
+        val second = TaskListQuery.getParameterizedQuery(preferences, caldavFilter("2"))
+
+        assertEquals(first.sql, second.sql)
+        assertNotEquals(first.args, second.args)
+    }
+
+    @Test
+    fun parameterizedQueryMatchesLiteralQuery() = runBlocking {
+        val now = currentTimeMillis()
+        val today = taskDao.createNew(Task(dueDate = now))
+        taskDao.createNew(Task(dueDate = now + 7 * ONE_DAY))
+        val filter = TodayFilter("Today")
+
+        assertEquals(
+            taskDao.fetchTasks(TaskListQuery.getQuery(preferences, filter)).map { it.id },
+            taskDao.fetchTasks(TaskListQuery.getParameterizedQuery(preferences, filter)).map { it.id },
+        )
+        assertEquals(
+            listOf(today),
+            taskDao.fetchTasks(TaskListQuery.getParameterizedQuery(preferences, filter)).map { it.id },
+        )
+    }
+
+    @Test
+    fun bindListUuid() = runBlocking {
+        preferences.isManualSort = true
+        caldavDao.insert(CaldavCalendar(uuid = "1"))
+        caldavDao.insert(CaldavCalendar(uuid = "2"))
+        val task = taskDao.createNew(Task())
+        caldavDao.insert(CaldavTask(task = task, calendar = "1"))
+        caldavDao.insert(CaldavTask(task = taskDao.createNew(Task()), calendar = "2"))
+
+        assertEquals(
+            listOf(task),
+            taskDao.fetchTasks(TaskListQuery.getParameterizedQuery(preferences, caldavFilter("1"))).map { it.id },
+        )
+    }
+
+    @Test
+    fun subtasksFollowTheirParent() = runBlocking {
+        preferences.isManualSort = true
+        caldavDao.insert(CaldavCalendar(uuid = "1"))
+        val parent = taskDao.createNew(Task())
+        val child = taskDao.createNew(Task(parent = parent))
+        val grandchild = taskDao.createNew(Task(parent = child))
+        listOf(parent, child, grandchild).forEach {
+            caldavDao.insert(CaldavTask(task = it, calendar = "1"))
+        }
+
+        val tasks = taskDao.fetchTasks(TaskListQuery.getQuery(preferences, caldavFilter("1")))
+
+        assertEquals(listOf(parent, child, grandchild), tasks.map { it.id })
+        assertEquals(listOf(0, 1, 2), tasks.map { it.indent })
+        assertEquals(listOf(2, 1, 0), tasks.map { it.children })
+    }
+
+    @Test
+    fun hiddenSubtasksAreNotCounted() = runBlocking {
+        preferences.isManualSort = true
+        caldavDao.insert(CaldavCalendar(uuid = "1"))
+        val parent = taskDao.createNew(Task())
+        taskDao.createNew(Task(parent = parent))
+        taskDao.createNew(Task(parent = parent, hideUntil = currentTimeMillis() + ONE_DAY))
+        caldavDao.insert(CaldavTask(task = parent, calendar = "1"))
+
+        assertEquals(1, children(parent))
+
+        preferences.showHidden = true
+
+        assertEquals(2, children(parent))
+    }
+
+    @Test
+    fun keysetPagesMatchFullQuery() = runBlocking {
+        repeat(5) { taskDao.createNew(Task(dueDate = currentTimeMillis() - it * ONE_DAY)) }
+
+        assertPagesMatchFullQuery()
+    }
+
+    @Test
+    fun offsetPagesMatchFullQuery() = runBlocking {
+        preferences.isAstridSort = true
+        repeat(5) { taskDao.createNew(Task(dueDate = currentTimeMillis() - it * ONE_DAY)) }
+
+        assertPagesMatchFullQuery()
+    }
+
+    private suspend fun assertPagesMatchFullQuery() {
+        val filter = TodayFilter("Today")
+        val first = taskDao.fetchTasks(
+            TaskListQuery.getPagedQuery(preferences, filter, TaskListQuery.Page(size = 2))
+        )
+        val second = taskDao.fetchTasks(
+            TaskListQuery.getPagedQuery(
+                preferences,
+                filter,
+                TaskListQuery.Page(size = 10, after = first.last(), offset = first.size),
+            )
+        )
+
+        assertEquals(2, first.size)
+        assertEquals(
+            taskDao.fetchTasks(TaskListQuery.getQuery(preferences, filter)).map { it.id },
+            (first + second).map { it.id },
+        )
+    }
+
+    private suspend fun children(task: Long) =
+        taskDao
+            .fetchTasks(TaskListQuery.getQuery(preferences, caldavFilter("1")))
+            .first { it.id == task }
+            .children
+
+    private fun caldavFilter(uuid: String) =
+        CaldavFilter(calendar = CaldavCalendar(uuid = uuid), account = CaldavAccount())
+}
@@ -0,0 +1,150 @@
+package org.tasks.filters
+
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import org.tasks.DatabaseTest
+import org.tasks.broadcast.ChangeSet
+import org.tasks.data.entity.CaldavCalendar
+import org.tasks.data.entity.CaldavTask
+import org.tasks.data.entity.Geofence
+import org.tasks.data.entity.Place
+import org.tasks.data.entity.Tag
+import org.tasks.data.entity.TagData
+import org.tasks.data.entity.Task
+import org.tasks.time.DateTimeUtils2.currentTimeMillis
+import org.tasks.time.ONE_MINUTE
+
+class FilterCountCacheTest : DatabaseTest() {
+    private val taskDao = db.taskDao()
+    private val caldavDao = db.caldavDao()
+    private val tagDataDao = db.tagDataDao()
+    private val tagDao = db.tagDao()
+    private val locationDao = db.locationDao()
+    private var now = currentTimeMillis()
+    private val cache = FilterCountCache(taskDao, caldavDao, tagDataDao, locationDao, now = { now })
+    private val filter = FilterImpl(sql = "WHERE tasks.deleted = 0")
+
+    @Test
+    fun countIsCached() = runBlocking {
+        assertEquals(0, cache.count(filter))
+        taskDao.createNew(Task())
+
+        assertEquals(0, cache.count(filter))
+    }
+
+    @Test
+    fun changeDropsCount() = runBlocking {
+        assertEquals(0, cache.count(filter))
+        taskDao.createNew(Task())
+        cache.invalidate(ChangeSet.lists("1"))
+
+        assertEquals(1, cache.count(filter))
+    }
+
+    @Test
+    fun countExpires() = runBlocking {
+        assertEquals(0, cache.count(filter))
+        taskDao.createNew(Task())
+        now += ONE_MINUTE
+
+        assertEquals(1, cache.count(filter))
+    }
+
+    @Test
+    fun listChangeOnlyDropsOwningAccount() = runBlocking {
+        caldavDao.insert(CaldavCalendar(uuid = "1", account = "a"))
+        caldavDao.insert(CaldavCalendar(uuid = "2", account = "b"))
+        assertEquals(0, cache.getCaldavFilters("a").single().count)
+        assertEquals(0, cache.getCaldavFilters("b").single().count)
+        addTask("1")
+        addTask("2")
+
+        cache.invalidate(ChangeSet.lists("1"))
+
+        assertEquals(1, cache.getCaldavFilters("a").single().count)
+        assertEquals(0, cache.getCaldavFilters("b").single().count)
+    }
+
+    @Test
+    fun unknownListDropsAllAccounts() = runBlocking {
+        caldavDao.insert(CaldavCalendar(uuid = "1", account = "a"))
+        assertEquals(0, cache.getCaldavFilters("a").single().count)
+        addTask("1")
+
+        cache.invalidate(ChangeSet.lists("2"))
+
+        assertEquals(1, cache.getCaldavFilters("a").single().count)
+    }
+
+    @Test
+    fun taskChangeUpdatesListCount() = runBlocking {
+        caldavDao.insert(CaldavCalendar(uuid = "1", account = "a"))
+        val task = addTask("1")
+        assertEquals(1, cache.getCaldavFilters("a").single().count)
+        taskDao.update(taskDao.fetch(task)!!.copy(completionDate = now))
+
+        cache.invalidate(ChangeSet(tasks = setOf(task)))
+
+        assertEquals(0, cache.getCaldavFilters("a").single().count)
+    }
+
+    @Test
+    fun taskChangeKeepsOtherListCounts() = runBlocking {
+        caldavDao.insert(CaldavCalendar(uuid = "1", account = "a"))
+        caldavDao.insert(CaldavCalendar(uuid = "2", account = "b"))
+        val task = addTask("1")
+        assertEquals(0, cache.getCaldavFilters("b").single().count)
+        addTask("2")
+
+        cache.invalidate(ChangeSet(tasks = setOf(task)))
+
+        assertEquals(1, cache.getCaldavFilters("a").single().count)
+        assertEquals(0, cache.getCaldavFilters("b").single().count)
+    }
+
+    @Test
+    fun taskChangeUpdatesTagCount() = runBlocking {
+        val tag = TagData(name = "tag")
+        tagDataDao.insert(tag)
+        assertEquals(0, cache.getTagFilters().single().count)
+        val task = taskDao.createNew(Task())
+        tagDao.insert(Tag(task = task, taskUid = null, tagUid = tag.remoteId, name = tag.name))
+
+        cache.invalidate(ChangeSet(tasks = setOf(task)))
+
+        assertEquals(1, cache.getTagFilters().single().count)
+    }
+
+    @Test
+    fun taskChangeUpdatesPlaceCount() = runBlocking {
+        val place = Place(name = "place")
+        locationDao.insert(place)
+        val task = taskDao.createNew(Task())
+        locationDao.insert(Geofence(task = task, place = place.uid))
+        assertEquals(1, cache.getPlaceFilters().single().count)
+        taskDao.update(taskDao.fetch(task)!!.copy(deletionDate = now))
+
+        cache.invalidate(ChangeSet(tasks = setOf(task)))
+
+        assertEquals(0, cache.getPlaceFilters().single().count)
+    }
+
+    @Test
+    fun taskInUnknownListDropsAllAccounts() = runBlocking {
+        caldavDao.insert(CaldavCalendar(uuid = "1", account = "a"))
+        assertEquals(0, cache.getCaldavFilters("a").single().count)
+        caldavDao.insert(CaldavCalendar(uuid = "2", account = "a"))
+        val task = addTask("2")
+
+        cache.invalidate(ChangeSet(tasks = setOf(task)))
+
+        assertEquals(1, cache.getCaldavFilters("a").sumOf { it.count })
+    }
+
+    private suspend fun addTask(calendar: String): Long {
+        val task = taskDao.createNew(Task())
+        caldavDao.insert(CaldavTask(task = task, calendar = calendar))
+        return task
+    }
+}
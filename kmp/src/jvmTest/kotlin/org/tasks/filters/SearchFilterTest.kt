@@ -0,0 +1,147 @@
+package org.tasks.filters
+
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import org.tasks.DatabaseTest
+import org.tasks.data.entity.CaldavCalendar
+import org.tasks.data.entity.CaldavTask
+import org.tasks.data.entity.Tag
+import org.tasks.data.entity.Task
+import org.tasks.data.entity.UserActivity
+import org.tasks.data.fetchFiltered
+import org.tasks.data.fetchFilteredIds
+
+class SearchFilterTest : DatabaseTest() {
+    private val taskDao = db.taskDao()
+    private val tagDao = db.tagDao()
+    private val caldavDao = db.caldavDao()
+    private val userActivityDao = db.userActivityDao()
+
+    @Test
+    fun matchTitlePrefix() = runBlocking {
+        val task = newTask("Buy groceries")
+
+        assertEquals(listOf(task.id), search("groc"))
+        assertEquals(emptyList<Long>(), search("ceries"))
+    }
+
+    @Test
+    fun matchAllWords() = runBlocking {
+        val task = newTask("Buy groceries")
+        newTask("Buy a new laptop")
+
+        assertEquals(listOf(task.id), search("groceries buy"))
+    }
+
+    @Test
+    fun matchEditedTitle() = runBlocking {
+        val task = newTask("Buy groceries")
+        taskDao.update(task.copy(title = "Call mom"))
+
+        assertEquals(emptyList<Long>(), search("groceries"))
+        assertEquals(listOf(task.id), search("mom"))
+    }
+
+    @Test
+    fun matchTag() = runBlocking {
+        val task = newTask("Buy groceries")
+        tagDao.insert(Tag(task = task.id, name = "Errands", tagUid = "1"))
+
+        assertEquals(listOf(task.id), search("errand"))
+    }
+
+    @Test
+    fun matchComment() = runBlocking {
+        val task = newTask("Fix sink")
+        userActivityDao.createNew(UserActivity(message = "call the plumber", targetId = task.remoteId))
+
+        assertEquals(listOf(task.id), search("plumb"))
+    }
+
+    @Test
+    fun matchRenamedList() = runBlocking {
+        val task = newTask("Buy groceries")
+        caldavDao.insert(CaldavCalendar(uuid = "1", name = "Personal"))
+        caldavDao.insert(CaldavTask(task = task.id, calendar = "1"))
+        caldavDao.update(caldavDao.getCalendar("1")!!.copy(name = "Household"))
+
+        assertEquals(emptyList<Long>(), search("personal"))
+        assertEquals(listOf(task.id), search("house"))
+    }
+
+    @Test
+    fun ignoreDeletedTasks() = runBlocking {
+        val task = newTask("Buy groceries")
+        taskDao.update(task.copy(deletionDate = 1))
+
+        assertEquals(emptyList<Long>(), search("groceries"))
+    }
+
+    @Test
+    fun fallBackToSubstringWithoutWords() = runBlocking {
+        val task = newTask("#1")
+        newTask("2")
+
+        assertEquals(listOf(task.id), search("#"))
+    }
+
+    @Test
+    fun searchWithinPreviousResults() = runBlocking {
+        val first = newTask("Meeting notes")
+        newTask("Meeting agenda")
+
+        assertEquals(
+            listOf(first.id),
+            taskDao
+                .fetchFiltered(SearchFilter(title = "", query = "meeti", within = listOf(first.id)))
+                .map { it.id },
+        )
+    }
+
+    @Test
+    fun refineWithinCollapsedSubtasks() = runBlocking {
+        val parent = Task(title = "meet", isCollapsed = true).also { taskDao.createNew(it) }
+        val child = Task(title = "meeting", parent = parent.id).also { taskDao.createNew(it) }
+
+        val matches = taskDao.fetchFilteredIds(SearchFilter(title = "meet", query = "meet"))
+
+        assertEquals(setOf(parent.id, child.id), matches.toSet())
+        assertEquals(
+            listOf(child.id),
+            taskDao
+                .fetchFiltered(SearchFilter(title = "meeti", query = "meeti", within = matches))
+                .map { it.id },
+        )
+    }
+
+    @Test
+    fun readKnownMatchesWithoutSearching() = runBlocking {
+        val task = newTask("Buy groceries")
+        newTask("Buy a new laptop")
+
+        assertEquals(
+            listOf(task.id),
+            taskDao
+                .fetchFiltered(SearchFilter(title = "", query = "laptop", matches = listOf(task.id)))
+                .map { it.id },
+        )
+    }
+
+    @Test
+    fun bindIds() {
+        assertEquals(
+            SearchFilter(title = "", query = "meet", within = listOf(1)).sql,
+            SearchFilter(title = "", query = "meet", within = listOf(2, 3)).sql,
+        )
+        assertEquals(
+            SearchFilter(title = "", query = "meet", matches = listOf(1)).sql,
+            SearchFilter(title = "", query = "meeting", matches = listOf(2, 3)).sql,
+        )
+    }
+
+    private suspend fun newTask(title: String) = Task(title = title).also { taskDao.createNew(it) }
+
+    private suspend fun search(query: String): List<Long> =
+        taskDao.fetchFiltered(SearchFilter(title = query, query = query)).map { it.id }
+}
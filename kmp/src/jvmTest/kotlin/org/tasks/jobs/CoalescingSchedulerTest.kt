@@ -0,0 +1,121 @@
+package org.tasks.jobs
+
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.test.StandardTestDispatcher
+import kotlinx.coroutines.test.TestScope
+import kotlinx.coroutines.test.advanceTimeBy
+import kotlinx.coroutines.test.advanceUntilIdle
+import kotlinx.coroutines.test.currentTime
+import kotlinx.coroutines.test.runTest
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import org.tasks.data.entity.Task
+import org.tasks.notifications.CancelReason
+import org.tasks.notifications.Notifier
+import org.tasks.sync.SyncSource
+
+@OptIn(ExperimentalCoroutinesApi::class)
+class CoalescingSchedulerTest {
+    private var triggered = 0
+    private val refreshes = mutableListOf<Long>()
+
+    private val notifier = object : Notifier {
+        override suspend fun cancel(id: Long, reason: CancelReason) {}
+        override suspend fun cancel(ids: List<Long>, reason: CancelReason) {}
+        override fun triggerNotifications() {
+            triggered++
+        }
+        override suspend fun updateTimerNotification() {}
+    }
+
+    private val backgroundWork = object : BackgroundWork {
+        override fun updateCalendar(task: Task) {}
+        override suspend fun scheduleRefresh(timestamp: Long) {
+            refreshes += timestamp
+        }
+        override suspend fun sync(source: SyncSource) {}
+        override suspend fun scheduleBlogFeedCheck() {}
+    }
+
+    private fun TestScope.scheduler() = CoalescingScheduler(
+        notifier = notifier,
+        backgroundWork = backgroundWork,
+        coroutineContext = StandardTestDispatcher(testScheduler),
+        debounceMs = DEBOUNCE,
+        maxWaitMs = MAX_WAIT,
+        now = { currentTime },
+    )
+
+    @Test
+    fun firstRequestFlushesImmediately() = runTest {
+        val scheduler = scheduler()
+
+        scheduler.schedule(refreshAt = 1000)
+
+        assertEquals(1, triggered)
+        assertEquals(listOf(1000L), refreshes)
+        assertEquals(0L, currentTime)
+    }
+
+    @Test
+    fun burstFlushesFirstAndRest() = runTest {
+        val scheduler = scheduler()
+
+        repeat(500) { scheduler.schedule(refreshAt = 1000L + it) }
+        advanceUntilIdle()
+
+        assertEquals(2, triggered)
+        assertEquals(listOf(1000L, 1001L), refreshes)
+        assertEquals(499L, scheduler.coalesced)
+        assertEquals(2L, scheduler.flushed)
+    }
+
+    @Test
+    fun refreshAtEarliestRequest() = runTest {
+        val scheduler = scheduler()
+
+        scheduler.schedule(refreshAt = 3000)
+        scheduler.schedule(refreshAt = 1000)
+        scheduler.schedule(refreshAt = 2000)
+        advanceUntilIdle()
+
+        assertEquals(listOf(3000L, 1000L), refreshes)
+    }
+
+    @Test
+    fun quietPeriodFlushesEachRequest() = runTest {
+        val scheduler = scheduler()
+
+        scheduler.schedule(refreshAt = 1000)
+        advanceTimeBy(DEBOUNCE * 2)
+        scheduler.schedule(refreshAt = 2000)
+        advanceUntilIdle()
+
+        assertEquals(2, triggered)
+        assertEquals(listOf(1000L, 2000L), refreshes)
+        assertEquals(0L, scheduler.coalesced)
+    }
+
+    @Test
+    fun longBurstFlushesAfterMaxWait() = runTest {
+        val scheduler = scheduler()
+
+        // requests at 0, 50, ..., 950. The first burst is cut off at 525, the second one goes
+        // quiet at 1050
+        repeat(20) {
+            scheduler.schedule()
+            delay(DEBOUNCE / 2)
+        }
+        advanceUntilIdle()
+
+        assertEquals(4L, scheduler.flushed)
+        assertEquals(18L, scheduler.coalesced)
+        assertEquals(4, triggered)
+    }
+
+    companion object {
+        private const val DEBOUNCE = 100L
+        private const val MAX_WAIT = 525L
+    }
+}
@@ -21,6 +21,7 @@ class TaskCompleterTest : DatabaseTest() {
         timerPlugin = mock(),
         backgroundWork = mock(),
         caldavDao = db.caldavDao(),
+        scheduler = mock(),
     )
 
     private val completer = TaskCompleter(
@@ -48,6 +48,7 @@ class SyncAdaptersTest {
         timerPlugin = mock(),
         backgroundWork = mock(),
         caldavDao = caldavDao,
+        scheduler = mock(),
     )
 
     @After
@@ -0,0 +1,122 @@
+package org.tasks.sync.microsoft
+
+import io.ktor.client.HttpClient
+import io.ktor.client.engine.mock.MockEngine
+import kotlinx.serialization.json.JsonObject
+import kotlinx.serialization.json.jsonArray
+import kotlinx.serialization.json.jsonObject
+import kotlinx.serialization.json.jsonPrimitive
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.tasks.http.HttpException
+import org.tasks.http.NotFoundException
+import org.tasks.http.ServiceUnavailableException
+import org.tasks.http.UnauthorizedException
+
+class BatchTest {
+    private val service = MicrosoftService(HttpClient(MockEngine { error("unexpected request") }))
+
+    @Test
+    fun serializeUpdate() {
+        val request = service
+            .updateTaskRequest("list", "task", Tasks.Task(title = "title"))
+            .copy(id = "0")
+
+        val json = encode(request)
+
+        assertEquals("0", json["id"]!!.jsonPrimitive.content)
+        assertEquals("PATCH", json["method"]!!.jsonPrimitive.content)
+        assertEquals("/me/todo/lists/list/tasks/task", json["url"]!!.jsonPrimitive.content)
+        assertEquals(
+            "application/json",
+            json["headers"]!!.jsonObject["Content-Type"]!!.jsonPrimitive.content
+        )
+        assertEquals("title", json["body"]!!.jsonObject["title"]!!.jsonPrimitive.content)
+    }
+
+    @Test
+    fun serializeDeleteWithoutBody() {
+        val json = encode(service.deleteChecklistItemRequest("list", "task", "item").copy(id = "1"))
+
+        assertEquals("DELETE", json["method"]!!.jsonPrimitive.content)
+        assertEquals(
+            "/me/todo/lists/list/tasks/task/checklistItems/item",
+            json["url"]!!.jsonPrimitive.content
+        )
+        assertFalse(json.containsKey("headers"))
+        assertFalse(json.containsKey("body"))
+    }
+
+    @Test
+    fun decodeSuccess() {
+        val response = response(201, body = """{"id":"remote","title":"title"}""")
+
+        assertTrue(response.isSuccess)
+        assertNull(response.toException())
+        assertEquals("remote", response.decode<Tasks.Task>().id)
+    }
+
+    @Test
+    fun notFound() {
+        val e = response(404, body = graphError("ErrorItemNotFound")).toException()
+
+        assertTrue(e is NotFoundException)
+        assertEquals("ErrorItemNotFound", e!!.graphCode)
+    }
+
+    @Test
+    fun tokenError() {
+        val e = response(401, body = graphError("InvalidAuthenticationToken")).toException()
+
+        assertTrue(e is UnauthorizedException)
+    }
+
+    @Test
+    fun serverError() {
+        assertTrue(response(503).toException() is ServiceUnavailableException)
+    }
+
+    @Test
+    fun badRequest() {
+        val e = response(400, body = graphError("invalidRequest")).toException()
+
+        assertEquals(400, (e as HttpException).code)
+        assertEquals("HTTP 400 - invalidRequest: message", e.message)
+    }
+
+    @Test
+    fun retryAfterIgnoresCase() {
+        val response = response(429, headers = mapOf("retry-after" to "5"))
+
+        assertEquals(5L, response.retryAfter)
+    }
+
+    @Test
+    fun noRetryAfter() {
+        assertNull(response(429).retryAfter)
+    }
+
+    private fun encode(request: BatchRequest): JsonObject =
+        MicrosoftService.json
+            .parseToJsonElement(MicrosoftService.json.encodeToString(BatchRequests(listOf(request))))
+            .jsonObject["requests"]!!
+            .jsonArray
+            .single()
+            .jsonObject
+
+    private fun response(
+        status: Int,
+        headers: Map<String, String>? = null,
+        body: String? = null,
+    ) = BatchResponse(
+        id = "0",
+        status = status,
+        headers = headers,
+        body = body?.let { MicrosoftService.json.parseToJsonElement(it) },
+    )
+
+    private fun graphError(code: String) = """{"error":{"code":"$code","message":"message"}}"""
+}
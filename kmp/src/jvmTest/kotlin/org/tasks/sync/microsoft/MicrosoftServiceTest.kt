@@ -0,0 +1,93 @@
+package org.tasks.sync.microsoft
+
+import io.ktor.client.HttpClient
+import io.ktor.client.engine.mock.MockEngine
+import io.ktor.client.engine.mock.respond
+import io.ktor.client.engine.mock.toByteArray
+import io.ktor.client.plugins.contentnegotiation.ContentNegotiation
+import io.ktor.http.HttpHeaders
+import io.ktor.http.headersOf
+import io.ktor.serialization.kotlinx.json.json
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.test.currentTime
+import kotlinx.coroutines.test.runTest
+import org.junit.Assert.assertEquals
+import org.junit.Test
+
+@OptIn(ExperimentalCoroutinesApi::class)
+class MicrosoftServiceTest {
+    private val sent = ArrayList<List<String>>()
+
+    private fun service(handler: (attempt: Int, BatchRequests) -> List<BatchResponse>) =
+        MicrosoftService(
+            HttpClient(
+                MockEngine { request ->
+                    val batch = MicrosoftService.json.decodeFromString<BatchRequests>(
+                        request.body.toByteArray().decodeToString()
+                    )
+                    sent.add(batch.requests.map { it.id })
+                    respond(
+                        content = MicrosoftService.json.encodeToString(
+                            BatchResponses(handler(sent.size, batch))
+                        ),
+                        headers = headersOf(HttpHeaders.ContentType, "application/json"),
+                    )
+                }
+            ) {
+                install(ContentNegotiation) {
+                    json(MicrosoftService.json)
+                }
+            }
+        )
+
+    @Test
+    fun responsesInRequestOrder() = runTest {
+        val service = service { _, batch ->
+            batch.requests.reversed().map { BatchResponse(id = it.id, status = 200 + it.id.toInt()) }
+        }
+
+        val responses = service.batch(requests(3))
+
+        assertEquals(listOf(listOf("0", "1", "2")), sent)
+        assertEquals(listOf(200, 201, 202), responses.map { it.status })
+    }
+
+    @Test
+    fun retryThrottledRequests() = runTest {
+        val service = service { attempt, batch ->
+            batch.requests.map {
+                if (attempt == 1 && it.id == "1") {
+                    BatchResponse(id = it.id, status = 429, headers = mapOf("Retry-After" to "5"))
+                } else {
+                    BatchResponse(id = it.id, status = 200)
+                }
+            }
+        }
+
+        val responses = service.batch(requests(3))
+
+        assertEquals(listOf(listOf("0", "1", "2"), listOf("1")), sent)
+        assertEquals(listOf(200, 200, 200), responses.map { it.status })
+        assertEquals(5000L, currentTime)
+    }
+
+    @Test
+    fun giveUpOnThrottledRequests() = runTest {
+        val service = service { _, batch ->
+            batch.requests.map { BatchResponse(id = it.id, status = 429) }
+        }
+
+        val responses = service.batch(requests(1))
+
+        assertEquals(4, sent.size)
+        assertEquals(listOf(429), responses.map { it.status })
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun rejectOversizedBatch() = runTest {
+        service { _, _ -> emptyList() }.batch(requests(MicrosoftService.MAX_BATCH_SIZE + 1))
+    }
+
+    private fun requests(count: Int) =
+        (0 until count).map { BatchRequest(method = "DELETE", url = "/me/todo/lists/list/tasks/$it") }
+}
@@ -0,0 +1,61 @@
+package org.tasks.tasklist
+
+import com.todoroo.astrid.core.SortHelper
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.tasks.data.TaskContainer
+import org.tasks.data.entity.Task
+
+class SectionedDataSourceTest {
+    private val dataSource = SectionedDataSource(
+        tasks = listOf(
+            task(1, Task.Priority.HIGH),
+            task(2, Task.Priority.HIGH),
+            task(3, Task.Priority.MEDIUM),
+            task(4, Task.Priority.LOW),
+            task(5, Task.Priority.LOW),
+        ),
+        groupMode = SortHelper.SORT_IMPORTANCE,
+    )
+
+    @Test
+    fun sectionedPositions() {
+        assertEquals(8, dataSource.size)
+        assertTrue(dataSource.isHeader(0))
+        assertEquals(1L, dataSource.getItem(1).id)
+        assertEquals(2L, dataSource.getItem(2).id)
+        assertTrue(dataSource.isHeader(3))
+        assertEquals(3L, dataSource.getItem(4).id)
+        assertTrue(dataSource.isHeader(5))
+        assertEquals(4L, dataSource.getItem(6).id)
+        assertEquals(5L, dataSource.getItem(7).id)
+    }
+
+    @Test
+    fun iteratorMatchesGet() {
+        assertEquals(dataSource.indices.map { dataSource[it] }, dataSource.iterator().asSequence().toList())
+    }
+
+    @Test
+    fun subListMatchesGet() {
+        for (from in 0..dataSource.size) {
+            for (to in from..dataSource.size) {
+                assertEquals((from until to).map { dataSource[it] }, dataSource.subList(from, to))
+            }
+        }
+    }
+
+    @Test
+    fun moveSectionUpdatesPositions() {
+        dataSource.moveSection(3, -1)
+
+        assertTrue(dataSource.isHeader(2))
+        assertEquals(2L, dataSource.getItem(3).id)
+    }
+
+    private fun task(id: Long, priority: Int) = TaskContainer(
+        task = Task(id = id, priority = priority),
+        sortGroup = priority.toLong(),
+    )
+}
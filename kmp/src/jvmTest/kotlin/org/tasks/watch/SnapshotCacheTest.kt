@@ -0,0 +1,70 @@
+package org.tasks.watch
+
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotEquals
+import org.junit.Test
+import org.tasks.time.DateTimeUtils2.currentTimeMillis
+import org.tasks.time.ONE_MINUTE
+
+class SnapshotCacheTest {
+    private var now = currentTimeMillis()
+    private var loads = 0
+    private val cache = SnapshotCache<String, Int>(maxSize = 2, now = { now })
+
+    private suspend fun get(key: String) = cache.get(key) { ++loads }
+
+    @Test
+    fun pagesShareSnapshot() = runBlocking {
+        val first = get("a")
+        val second = get("a")
+
+        assertEquals(1, loads)
+        assertEquals(first.version, second.version)
+    }
+
+    @Test
+    fun invalidateDropsSnapshot() = runBlocking {
+        val first = get("a")
+        cache.invalidate()
+        val second = get("a")
+
+        assertEquals(2, loads)
+        assertNotEquals(first.version, second.version)
+    }
+
+    @Test
+    fun snapshotExpires() = runBlocking {
+        get("a")
+        now += ONE_MINUTE
+
+        get("a")
+
+        assertEquals(2, loads)
+    }
+
+    @Test
+    fun evictLeastRecentlyUsed() = runBlocking {
+        get("a")
+        get("b")
+        get("a")
+        get("c")
+
+        get("a")
+        assertEquals(3, loads)
+        get("b")
+        assertEquals(4, loads)
+    }
+
+    @Test
+    fun dontStoreSnapshotLoadedBeforeInvalidation() = runBlocking {
+        cache.get("a") {
+            cache.invalidate()
+            ++loads
+        }
+
+        get("a")
+
+        assertEquals(2, loads)
+    }
+}
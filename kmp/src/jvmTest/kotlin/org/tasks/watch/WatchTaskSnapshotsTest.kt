@@ -0,0 +1,50 @@
+package org.tasks.watch
+
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import org.tasks.DatabaseTest
+import org.tasks.data.entity.CaldavAccount
+import org.tasks.data.entity.CaldavCalendar
+import org.tasks.data.entity.CaldavTask
+import org.tasks.data.entity.Task
+import org.tasks.filters.CaldavFilter
+import org.tasks.preferences.DefaultQueryPreferences
+import org.tasks.tasklist.UiItem
+
+class WatchTaskSnapshotsTest : DatabaseTest() {
+    private val taskDao = db.taskDao()
+    private val caldavDao = db.caldavDao()
+    private val preferences = DefaultQueryPreferences()
+    private val snapshots: WatchTaskSnapshots = SnapshotCache()
+
+    @Test
+    fun listsWithSameSqlGetTheirOwnSnapshot() = runBlocking {
+        val a = list("a")
+        val b = list("b")
+        val taskA = addTask("a")
+        val taskB = addTask("b")
+
+        assertEquals(listOf(taskA), tasks(a))
+        assertEquals(listOf(taskB), tasks(b))
+    }
+
+    private suspend fun tasks(filter: CaldavFilter) =
+        snapshots.getTaskList(taskDao, preferences, filter, emptySet())
+            .value
+            .filterIsInstance<UiItem.Task>()
+            .map { it.task.id }
+
+    private suspend fun list(uuid: String): CaldavFilter {
+        val account = CaldavAccount(uuid = "account")
+        val calendar = CaldavCalendar(account = account.uuid, uuid = uuid)
+        caldavDao.insert(calendar)
+        return CaldavFilter(calendar = calendar, account = account)
+    }
+
+    private suspend fun addTask(calendar: String): Long {
+        val task = taskDao.createNew(Task())
+        caldavDao.insert(CaldavTask(task = task, calendar = calendar))
+        return task
+    }
+}
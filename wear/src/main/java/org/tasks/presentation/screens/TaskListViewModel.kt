@@ -44,6 +44,7 @@ class TaskListViewModel(
     val uiItems: Flow<PagingData<UiItem>> = Pager(
         config = PagingConfig(pageSize = 20),
         pagingSourceFactory = {
+            var version: Long? = null
             MyPagingSource { position, limit ->
                 val settings = wearSettings.stateFlow.value
                 wearService
@@ -65,6 +66,14 @@ class TaskListViewModel(
                             }
                             .build()
                     )
+                    .also {
+                        // the phone rebuilt the list since the first page, reload from scratch
+                        if (version == null) {
+                            version = it.version
+                        } else if (version != it.version) {
+                            invalidate()
+                        }
+                    }
                     .let { Pair(it.totalItems, it.itemsList) }
             }
                 .also { pagingSource = it }